@@ -0,0 +1,63 @@
+package com.github.boemma.benchmark;
+
+import java.util.Random;
+
+import com.github.boemma.genetic.algorithm.gene.Color;
+import com.github.boemma.genetic.algorithm.gene.Shape;
+import com.github.boemma.image.PixelImage;
+
+/**
+ * Synthetic, reproducible input data for the benchmarks. Everything is
+ * generated from fixed seeds, so that every run measures the same work.
+ * 
+ * @author BoEmma
+ *
+ */
+public class BenchmarkImages {
+
+	/** Seed used for all generated data */
+	public static final long SEED = 20170903L;
+	
+	/**
+	 * Creates a reference image of the given size, with smooth gradients and
+	 * some noise, loosely resembling a photo.
+	 * @param size - width and height in pixels
+	 * @return reference image
+	 */
+	public static PixelImage createReferenceImage(int size) {
+		Random random = new Random(SEED);
+		int[] pixels = new int[size * size];
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				int r = clamp(x * 255 / size + random.nextInt(32) - 16);
+				int g = clamp(y * 255 / size + random.nextInt(32) - 16);
+				int b = clamp((x + y) * 127 / size + random.nextInt(32) - 16);
+				pixels[y * size + x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+			}
+		}
+		return new PixelImage(size, size, pixels);
+	}
+	
+	/**
+	 * Creates random triangles within an image of the given size, 
+	 * the same way as a new shape image does.
+	 * @param numberOfGenes - number of triangles
+	 * @param size - width and height of the image in pixels
+	 * @param seed - seed of the random triangles
+	 * @return triangles
+	 */
+	public static Shape[] createShapes(int numberOfGenes, int size, long seed) {
+		Random random = new Random(seed);
+		Shape[] shapes = new Shape[numberOfGenes];
+		for (int i = 0; i < numberOfGenes; i++) {
+			Color color = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256), random.nextDouble());
+			shapes[i] = new Shape(new double[]{random.nextInt(size), random.nextInt(size), random.nextInt(size)}, 
+								new double[]{random.nextInt(size), random.nextInt(size), random.nextInt(size)}, color);
+		}
+		return shapes;
+	}
+	
+	private static int clamp(int value) {
+		return Math.max(0, Math.min(255, value));
+	}
+}
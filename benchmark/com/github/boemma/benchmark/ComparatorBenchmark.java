@@ -0,0 +1,65 @@
+package com.github.boemma.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.boemma.image.FitnessFunctions;
+import com.github.boemma.image.FitnessReference;
+import com.github.boemma.image.PixelImage;
+import com.github.boemma.image.PixelImageComparator;
+import com.github.boemma.image.ShapeRasterizer;
+
+/**
+ * Measures comparing a painted shape image with the reference image, 
+ * directly and with each of the fitness functions.
+ * 
+ * @author BoEmma
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComparatorBenchmark {
+
+	@Param({"64", "256", "1024"})
+	private int size;
+	
+	@Param({"l1", "l2", "luma", "ssim"})
+	private String fitnessFunction;
+	
+	private PixelImage referenceImage;
+	private FitnessReference reference;
+	private int[] pixels;
+	
+	@Setup
+	public void setUp() {
+		referenceImage = BenchmarkImages.createReferenceImage(size);
+		reference = FitnessFunctions.forName(fitnessFunction).prepare(referenceImage);
+		ShapeRasterizer rasterizer = new ShapeRasterizer(size, size);
+		pixels = rasterizer.paint(BenchmarkImages.createShapes(70, size, BenchmarkImages.SEED)).clone();
+	}
+	
+	@Benchmark
+	public double compare() {
+		return PixelImageComparator.compare(pixels, referenceImage);
+	}
+	
+	@Benchmark
+	public double compareFitness() {
+		return reference.compare(pixels);
+	}
+}
@@ -0,0 +1,83 @@
+package com.github.boemma.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.boemma.genetic.algorithm.EvolutionSettings;
+import com.github.boemma.genetic.algorithm.FlatGeneticAlgorithm;
+import com.github.boemma.genetic.algorithm.GeneticAlgorithm;
+
+/**
+ * Compares running a generation on a {@link com.github.boemma.genetic.algorithm.population.Population}
+ * of shape image objects with running it on a flat population of primitive arrays.
+ * Run with -prof gc to compare the bytes allocated per generation (gc.alloc.rate.norm).
+ *
+ * @author BoEmma
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FlatPopulationBenchmark {
+
+	@Param({"objects", "flat"})
+	private String backend;
+
+	@Param({"64"})
+	private int size;
+
+	@Param({"70", "500"})
+	private int numberOfGenes;
+
+	@Param({"50", "500"})
+	private int populationSize;
+
+	private GeneticAlgorithm geneticAlgorithm;
+	private FlatGeneticAlgorithm flatGeneticAlgorithm;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		EvolutionSettings settings = new EvolutionSettings().setPopulationSize(populationSize).setNumberOfGenes(numberOfGenes)
+											.setMutationRate(0.03).setThreadCount(1).setSeed(BenchmarkImages.SEED);
+		if(backend.equals("flat")) {
+			flatGeneticAlgorithm = new FlatGeneticAlgorithm(BenchmarkImages.createReferenceImage(size), settings);
+		}
+		else {
+			geneticAlgorithm = new GeneticAlgorithm(BenchmarkImages.createReferenceImage(size), settings);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if(flatGeneticAlgorithm != null) {
+			flatGeneticAlgorithm.shutdown();
+		}
+		if(geneticAlgorithm != null) {
+			geneticAlgorithm.shutdown();
+		}
+	}
+
+	@Benchmark
+	public double runOneGeneration() {
+		if(flatGeneticAlgorithm != null) {
+			return flatGeneticAlgorithm.runOneGeneration();
+		}
+		return geneticAlgorithm.runOneGeneration().getFitness();
+	}
+}
@@ -0,0 +1,88 @@
+package com.github.boemma.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.boemma.genetic.algorithm.EvolutionSettings;
+import com.github.boemma.genetic.algorithm.GeneticAlgorithm;
+import com.github.boemma.genetic.algorithm.population.FitnessCache;
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+import com.github.boemma.image.CompositeCache;
+
+/**
+ * Measures running a whole generation of the genetic algorithm. The thread count 
+ * can be changed with -p threadCount=N to measure scaling, and the evaluation
+ * shortcuts can be compared with their parameters.
+ * 
+ * @author BoEmma
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GenerationBenchmark {
+
+	@Param({"64", "256", "1024"})
+	private int size;
+	
+	@Param({"30", "70", "500"})
+	private int numberOfGenes;
+	
+	@Param({"50"})
+	private int populationSize;
+	
+	@Param({"1"})
+	private int threadCount;
+	
+	/** Evaluation shortcut: none, incremental evaluation, a fitness cache of 10000 entries or a composite cache of 64 MB */
+	@Param({"full", "incremental", "fitness-cache", "composite-cache"})
+	private String evaluation;
+	
+	private GeneticAlgorithm geneticAlgorithm;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		EvolutionSettings settings = new EvolutionSettings().setPopulationSize(populationSize).setNumberOfGenes(numberOfGenes)
+											.setMutationRate(0.03).setThreadCount(threadCount).setSeed(BenchmarkImages.SEED);
+		geneticAlgorithm = new GeneticAlgorithm(BenchmarkImages.createReferenceImage(size), settings);
+		switch (evaluation) {
+		case "incremental":
+			geneticAlgorithm.setIncrementalEvaluation(true);
+			break;
+		case "fitness-cache":
+			geneticAlgorithm.setFitnessCache(new FitnessCache(10000));
+			break;
+		case "composite-cache":
+			geneticAlgorithm.setCompositeCache(new CompositeCache(8, 64L * 1024 * 1024));
+			break;
+		default:
+			break;
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		geneticAlgorithm.shutdown();
+	}
+	
+	@Benchmark
+	public ShapeImage runOneGeneration() {
+		return geneticAlgorithm.runOneGeneration();
+	}
+}
@@ -0,0 +1,67 @@
+package com.github.boemma.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.boemma.image.PixelImage;
+import com.github.boemma.image.PixelKernel;
+import com.github.boemma.image.PixelKernels;
+import com.github.boemma.image.ShapeRasterizer;
+
+/**
+ * Measures the scalar pixel kernel against the fastest one available, which is
+ * the vectorized kernel when it has been compiled and the Vector API is available.
+ * 
+ * @author BoEmma
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PixelKernelBenchmark {
+
+	@Param({"64", "256", "1024"})
+	private int size;
+	
+	@Param({"scalar", "fastest"})
+	private String kernelName;
+	
+	private PixelKernel kernel;
+	private PixelImage referenceImage;
+	private int[] pixels;
+	
+	@Setup
+	public void setUp() {
+		kernel = kernelName.equals("scalar") ? PixelKernels.scalar() : PixelKernels.get();
+		referenceImage = BenchmarkImages.createReferenceImage(size);
+		ShapeRasterizer rasterizer = new ShapeRasterizer(size, size);
+		pixels = rasterizer.paint(BenchmarkImages.createShapes(70, size, BenchmarkImages.SEED)).clone();
+	}
+	
+	@Benchmark
+	public long difference() {
+		return kernel.difference(pixels, referenceImage.getPixels(), 0, pixels.length);
+	}
+	
+	@Benchmark
+	public int[] blendRows() {
+		for (int y = 0; y < size; y++) {
+			kernel.blendSpan(pixels, y * size + y / 2, (y + 1) * size - y / 2, 0x3366CC, 128);
+		}
+		return pixels;
+	}
+}
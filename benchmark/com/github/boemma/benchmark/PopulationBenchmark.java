@@ -0,0 +1,83 @@
+package com.github.boemma.benchmark;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.boemma.genetic.algorithm.population.Population;
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+import com.github.boemma.image.FitnessFunctions;
+import com.github.boemma.image.FitnessReference;
+
+/**
+ * Measures finding the fittest individuals of a population and selecting
+ * parents, on individuals with random fitness.
+ *
+ * @author BoEmma
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PopulationBenchmark {
+
+	@Param({"50", "1000", "10000"})
+	private int populationSize;
+
+	private Population population;
+	private ShapeImage[] individuals;
+	private SplittableRandom random;
+
+	@Setup
+	public void setUp() {
+		FitnessReference reference = FitnessFunctions.getDefault().prepare(BenchmarkImages.createReferenceImage(64));
+		random = new SplittableRandom(BenchmarkImages.SEED);
+		individuals = new ShapeImage[populationSize];
+		population = new Population(populationSize);
+		for (int i = 0; i < populationSize; i++) {
+			individuals[i] = new ShapeImage(BenchmarkImages.createShapes(1, 64, i), 100 * random.nextDouble(), reference);
+			population.setShapeImage(i, individuals[i]);
+		}
+	}
+
+	@Benchmark
+	public ShapeImage fittest() {
+		return population.getFittest();
+	}
+
+	/**
+	 * Sets every individual, as a generation does, and then ranks them like
+	 * the end of a generation with sampled evaluation does.
+	 */
+	@Benchmark
+	public double rankGeneration() {
+		for (int i = 0; i < populationSize; i++) {
+			population.setShapeImage(i, individuals[i]);
+		}
+		return population.getFittest().getFitness() + population.getRankedFitness(populationSize / 2);
+	}
+
+	@Benchmark
+	public ShapeImage tournamentSelection() {
+		return population.selectByTournament(random, 10);
+	}
+
+	@Benchmark
+	public ShapeImage rankSelection() {
+		return population.selectByRank(random, 1.5);
+	}
+}
@@ -0,0 +1,53 @@
+package com.github.boemma.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.boemma.genetic.algorithm.gene.Shape;
+import com.github.boemma.image.ShapeRasterizer;
+
+/**
+ * Measures painting a whole shape image with the software rasterizer.
+ * 
+ * @author BoEmma
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RasterizerBenchmark {
+
+	@Param({"64", "256", "1024"})
+	private int size;
+	
+	@Param({"30", "70", "500"})
+	private int numberOfGenes;
+	
+	private ShapeRasterizer rasterizer;
+	private Shape[] shapes;
+	
+	@Setup
+	public void setUp() {
+		rasterizer = new ShapeRasterizer(size, size);
+		shapes = BenchmarkImages.createShapes(numberOfGenes, size, BenchmarkImages.SEED);
+	}
+	
+	@Benchmark
+	public int[] paint() {
+		return rasterizer.paint(shapes);
+	}
+}
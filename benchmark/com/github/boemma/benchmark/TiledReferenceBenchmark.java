@@ -0,0 +1,70 @@
+package com.github.boemma.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.boemma.genetic.algorithm.gene.Shape;
+import com.github.boemma.image.FitnessFunctions;
+import com.github.boemma.image.FitnessReference;
+import com.github.boemma.image.ImageSource;
+import com.github.boemma.image.PixelImage;
+import com.github.boemma.image.ShapeRasterizer;
+import com.github.boemma.image.TiledPixelImage;
+
+/**
+ * Measures painting and comparing a whole shape image with a reference image
+ * kept on the heap, and with the same reference image kept off the heap and
+ * compared tile by tile.
+ *
+ * @author BoEmma
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TiledReferenceBenchmark {
+
+	@Param({"256", "1024", "4096"})
+	private int size;
+
+	@Param({"false", "true"})
+	private boolean tiled;
+
+	private FitnessReference reference;
+	private ShapeRasterizer rasterizer;
+	private Shape[] shapes;
+
+	@Setup
+	public void setUp() throws IOException {
+		PixelImage pixelImage = BenchmarkImages.createReferenceImage(size);
+		ImageSource referenceImage = pixelImage;
+		if(tiled) {
+			TiledPixelImage tiledImage = new TiledPixelImage(size, size);
+			tiledImage.setRows(0, size, pixelImage.getPixels());
+			referenceImage = tiledImage;
+		}
+		reference = FitnessFunctions.getDefault().prepare(referenceImage);
+		rasterizer = new ShapeRasterizer(size, size);
+		shapes = BenchmarkImages.createShapes(70, size, BenchmarkImages.SEED);
+	}
+
+	@Benchmark
+	public double evaluate() {
+		return reference.compare(shapes, rasterizer, 0).getSimilarity();
+	}
+}
@@ -0,0 +1,81 @@
+package com.github.boemma.genetic.algorithm;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.boemma.benchmark.BenchmarkImages;
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+import com.github.boemma.image.FitnessFunctions;
+import com.github.boemma.image.PixelImage;
+
+/**
+ * Measures recombination and mutation of shape images. In the same package as 
+ * the genetic algorithm, to reach its package-private operators.
+ * 
+ * @author BoEmma
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneticOperatorsBenchmark {
+
+	@Param({"30", "70", "500"})
+	private int numberOfGenes;
+	
+	private PixelImage referenceImage;
+	private GeneticAlgorithm geneticAlgorithm;
+	private ShapeImage parent1;
+	private ShapeImage parent2;
+	private SplittableRandom random;
+	
+	@Setup
+	public void setUp() {
+		referenceImage = BenchmarkImages.createReferenceImage(256);
+		EvolutionSettings settings = new EvolutionSettings().setPopulationSize(2).setNumberOfGenes(numberOfGenes)
+											.setMutationRate(0.03).setThreadCount(1).setSeed(BenchmarkImages.SEED);
+		geneticAlgorithm = new GeneticAlgorithm(referenceImage, settings);
+		parent1 = createShapeImage(BenchmarkImages.SEED);
+		parent2 = createShapeImage(BenchmarkImages.SEED + 1);
+		random = new SplittableRandom(BenchmarkImages.SEED);
+	}
+	
+	private ShapeImage createShapeImage(long seed) {
+		ShapeImage shapeImage = new ShapeImage(numberOfGenes, FitnessFunctions.getDefault().prepare(referenceImage));
+		System.arraycopy(BenchmarkImages.createShapes(numberOfGenes, 256, seed), 0, shapeImage.getShapes(), 0, numberOfGenes);
+		return shapeImage;
+	}
+	
+	@TearDown
+	public void tearDown() {
+		geneticAlgorithm.shutdown();
+	}
+	
+	@Benchmark
+	public ShapeImage recombine() {
+		return geneticAlgorithm.recombine(parent1, parent2, random);
+	}
+	
+	@Benchmark
+	public ShapeImage recombineAndMutate() {
+		ShapeImage newImage = geneticAlgorithm.recombine(parent1, parent2, random);
+		geneticAlgorithm.mutate(newImage, random);
+		return newImage;
+	}
+}
@@ -0,0 +1,103 @@
+package com.github.boemma.image;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Pixel kernel processing as many pixels at a time as the preferred vector size
+ * of the CPU holds, using the incubating Vector API of JDK 17 and later. Gives 
+ * exactly the same results as the {@link ScalarPixelKernel}, which it uses for 
+ * the pixels left over at the end of a range.
+ * 
+ * Loaded by name by {@link PixelKernels}, so that the rest of the program 
+ * can be compiled and run without the Vector API.
+ * 
+ * @author BoEmma
+ *
+ */
+public class VectorPixelKernel implements PixelKernel {
+
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+	
+	/** Number of vectors summed in the lanes of an int accumulator before adding them to the total, to avoid overflow */
+	private static final int ACCUMULATED_VECTORS = 1 << 16;
+	
+	private final ScalarPixelKernel scalar = new ScalarPixelKernel();
+	
+	/**
+	 * Create a new vectorized kernel.
+	 * @throws IllegalStateException if vectors on this CPU are too small to be of use
+	 */
+	public VectorPixelKernel() {
+		if(SPECIES.length() < 4) {
+			throw new IllegalStateException("Preferred vector size " + SPECIES.length() + " is too small!");
+		}
+	}
+
+	@Override
+	public long difference(int[] pixels, int[] referencePixels, int from, int to) {
+		long difference = 0;
+		int i = from;
+		int vectorEnd = from + SPECIES.loopBound(to - from);
+		while(i < vectorEnd) {
+			// Lanes sum at most 765 per vector, so they can not overflow within one block
+			int blockEnd = Math.min(vectorEnd, i + ACCUMULATED_VECTORS * SPECIES.length());
+			IntVector sum = IntVector.zero(SPECIES);
+			for (; i < blockEnd; i += SPECIES.length()) {
+				IntVector argb1 = IntVector.fromArray(SPECIES, pixels, i);
+				IntVector argb2 = IntVector.fromArray(SPECIES, referencePixels, i);
+				sum = sum.add(channelDifference(argb1, argb2, 16))
+						.add(channelDifference(argb1, argb2, 8))
+						.add(channelDifference(argb1, argb2, 0));
+			}
+			difference += sum.reduceLanesToLong(VectorOperators.ADD);
+		}
+		return difference + scalar.difference(pixels, referencePixels, i, to);
+	}
+	
+	private static IntVector channelDifference(IntVector argb1, IntVector argb2, int shift) {
+		return channel(argb1, shift).sub(channel(argb2, shift)).lanewise(VectorOperators.ABS);
+	}
+	
+	private static IntVector channel(IntVector argb, int shift) {
+		return argb.lanewise(VectorOperators.LSHR, shift).and(0xFF);
+	}
+
+	@Override
+	public void blendSpan(int[] pixels, int from, int to, int rgb, int alpha) {
+		int inverse = 255 - alpha;
+		// The rounding term of the scalar kernel is added to the color term up front
+		int red = ((rgb >> 16) & 0xFF) * alpha + 127;
+		int green = ((rgb >> 8) & 0xFF) * alpha + 127;
+		int blue = (rgb & 0xFF) * alpha + 127;
+		int i = from;
+		int vectorEnd = from + SPECIES.loopBound(to - from);
+		for (; i < vectorEnd; i += SPECIES.length()) {
+			IntVector pixel = IntVector.fromArray(SPECIES, pixels, i);
+			IntVector r = divideBy255(channel(pixel, 16).mul(inverse).add(red));
+			IntVector g = divideBy255(channel(pixel, 8).mul(inverse).add(green));
+			IntVector b = divideBy255(channel(pixel, 0).mul(inverse).add(blue));
+			r.lanewise(VectorOperators.LSHL, 16)
+				.or(g.lanewise(VectorOperators.LSHL, 8))
+				.or(b)
+				.or(0xFF000000)
+				.intoArray(pixels, i);
+		}
+		scalar.blendSpan(pixels, i, to, rgb, alpha);
+	}
+	
+	/**
+	 * Divides by 255 with shifts, which equals integer division for all values 
+	 * from 0 to 255 * 255 + 127 that blending produces.
+	 */
+	private static IntVector divideBy255(IntVector values) {
+		IntVector plusOne = values.add(1);
+		return plusOne.add(plusOne.lanewise(VectorOperators.LSHR, 8)).lanewise(VectorOperators.LSHR, 8);
+	}
+
+	@Override
+	public String getName() {
+		return "vector " + SPECIES.vectorBitSize() + " bit";
+	}
+}
@@ -0,0 +1,90 @@
+package com.github.boemma.genetic.algorithm;
+
+import java.util.SplittableRandom;
+
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+import com.github.boemma.image.ImageSource;
+import com.github.boemma.image.ShapeRasterizer;
+
+/**
+ * Simulated annealing of shape images. Every step breeds one mutated copy of
+ * the parent. Fitter offspring always replace the parent, and less fit ones with
+ * the probability exp(-d / T), where d is how much less fit they are in percent
+ * points, and T is the temperature. The temperature is multiplied by the cooling
+ * rate after every step, so that the search moves from exploring to hill climbing.
+ *
+ * The acceptance threshold of an offspring is drawn before evaluating it, so the
+ * evaluation can still stop as soon as the offspring falls below the threshold.
+ *
+ * Offspring are bred and evaluated one at a time on the calling thread, and a
+ * run can be reproduced exactly from the seed of the settings.
+ *
+ * @author BoEmma
+ *
+ */
+public class AnnealingEvolution extends SingleParentEvolution {
+
+	/** Default initial temperature, in percent points of similarity */
+	public static final double DEFAULT_TEMPERATURE = 0.05;
+	/** Default factor the temperature is multiplied by after every step */
+	public static final double DEFAULT_COOLING_RATE = 0.9995;
+
+	private final ShapeRasterizer rasterizer;
+	private final SplittableRandom random;
+	private final double coolingRate;
+	private volatile double temperature;
+
+	/**
+	 * Create a new simulated annealing towards the given reference image, with the
+	 * default temperature and cooling rate.
+	 * @param referenceImage - image to compare shape images with
+	 * @param settings - algorithm settings, the population size is the number of random
+	 * 					individuals the initial parent is chosen from
+	 */
+	public AnnealingEvolution(ImageSource referenceImage, EvolutionSettings settings) {
+		this(referenceImage, settings, DEFAULT_TEMPERATURE, DEFAULT_COOLING_RATE);
+	}
+
+	/**
+	 * Create a new simulated annealing towards the given reference image.
+	 * @param referenceImage - image to compare shape images with
+	 * @param settings - algorithm settings, the population size is the number of random
+	 * 					individuals the initial parent is chosen from
+	 * @param temperature - initial temperature in percent points of similarity, 0 for hill climbing
+	 * @param coolingRate - factor the temperature is multiplied by after every step, between 0 and 1
+	 */
+	public AnnealingEvolution(ImageSource referenceImage, EvolutionSettings settings, double temperature, double coolingRate) {
+		super(referenceImage, settings);
+		if(temperature < 0) {
+			throw new IllegalArgumentException("Temperature " + temperature + " can not be negative!");
+		}
+		if(coolingRate <= 0 || coolingRate > 1) {
+			throw new IllegalArgumentException("Cooling rate " + coolingRate + " must be above 0 and at most 1!");
+		}
+		this.temperature = temperature;
+		this.coolingRate = coolingRate;
+		rasterizer = new ShapeRasterizer(imageWidth, imageHeight);
+		random = seedRandom.split();
+	}
+
+	@Override
+	ShapeImage step(ShapeImage parent) {
+		// Accepting an offspring at least this fit has the probability exp(-d / T) for a loss d
+		double threshold = parent.getFitness() + temperature * Math.log(1 - random.nextDouble());
+		ShapeImage offspring = breed(parent, rasterizer, random, Math.max(0, threshold));
+		addEvaluations(1);
+		temperature *= coolingRate;
+		if(!offspring.isFitnessEstimated() && offspring.getFitness() >= threshold) {
+			return offspring;
+		}
+		return parent;
+	}
+
+	/**
+	 * Returns the current temperature.
+	 * @return temperature in percent points of similarity
+	 */
+	public double getTemperature() {
+		return temperature;
+	}
+}
@@ -0,0 +1,23 @@
+package com.github.boemma.genetic.algorithm;
+
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+
+/**
+ * Evaluates all offspring of a generation together, instead of one at a time on
+ * the workers breeding them, for example on other processes or machines. See
+ * {@link GeneticAlgorithm#setBatchEvaluator(BatchEvaluator)}.
+ *
+ * @author BoEmma
+ *
+ */
+public interface BatchEvaluator {
+
+	/**
+	 * Calculates the exact fitness of the given shape images against their full resolution
+	 * reference image, with the fitness function they were created for, and sets it with 
+	 * {@link ShapeImage#setFitness(double)}. Returns when all of them have been evaluated.
+	 * @param shapeImages - shape images to evaluate
+	 * @throws IllegalStateException if the shape images could not be evaluated
+	 */
+	void evaluate(ShapeImage[] shapeImages);
+}
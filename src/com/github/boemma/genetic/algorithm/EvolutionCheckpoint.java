@@ -0,0 +1,156 @@
+package com.github.boemma.genetic.algorithm;
+
+import com.github.boemma.genetic.algorithm.population.Population;
+
+/**
+ * The complete state of a running {@link GeneticAlgorithm}: its settings, the
+ * current population, the number of generations run so far and the seed of
+ * its random sources. A genetic algorithm restored from a checkpoint continues
+ * exactly like the one it was taken from, as long as it uses the same thread count.
+ *
+ * When the checkpoint is taken while evaluating at a coarse level of a resolution
+ * pyramid, the fitness of the population is the similarity at that level, and the
+ * checkpoint also holds the downsampling factor of the level and the state of the
+ * stall detection moving up the levels.
+ *
+ * @author BoEmma
+ *
+ */
+public class EvolutionCheckpoint {
+
+	private final EvolutionSettings settings;
+	private final long generation;
+	private final long randomSeed;
+	private final Population population;
+	/** Downsampling factor of the pyramid level the population was evaluated at, 1 for full resolution */
+	private final int resolutionFactor;
+	/** Highest fitness at the last sufficient improvement on the pyramid level, and the generation it was reached */
+	private final double improvedFitness;
+	private final long improvedGeneration;
+
+	/** Image specifications */
+	private final int imageWidth;
+	private final int imageHeight;
+
+	/**
+	 * Create a new checkpoint.
+	 * @param settings - algorithm settings, not shared with the genetic algorithm
+	 * @param generation - number of generations run
+	 * @param randomSeed - seed the random sources of every generation are derived from
+	 * @param population - current population, which must not be changed afterwards
+	 * @param imageWidth - width of the shape images
+	 * @param imageHeight - height of the shape images
+	 */
+	public EvolutionCheckpoint(EvolutionSettings settings, long generation, long randomSeed,
+			Population population, int imageWidth, int imageHeight) {
+		this(settings, generation, randomSeed, population, imageWidth, imageHeight, 1, 0, generation);
+	}
+
+	/**
+	 * Create a new checkpoint of an evolution evaluating at a level of a resolution pyramid.
+	 * @param settings - algorithm settings, not shared with the genetic algorithm
+	 * @param generation - number of generations run
+	 * @param randomSeed - seed the random sources of every generation are derived from
+	 * @param population - current population, which must not be changed afterwards
+	 * @param imageWidth - width of the shape images
+	 * @param imageHeight - height of the shape images
+	 * @param resolutionFactor - downsampling factor of the level the population was evaluated at, 1 for full resolution
+	 * @param improvedFitness - highest fitness at the last sufficient improvement on the level
+	 * @param improvedGeneration - generation of the last sufficient improvement on the level
+	 */
+	public EvolutionCheckpoint(EvolutionSettings settings, long generation, long randomSeed,
+			Population population, int imageWidth, int imageHeight, 
+			int resolutionFactor, double improvedFitness, long improvedGeneration) {
+		if(resolutionFactor < 1) {
+			throw new IllegalArgumentException("Resolution factor " + resolutionFactor + " must be at least 1!");
+		}
+		if(population.getSize() != settings.getPopulationSize()) {
+			throw new IllegalArgumentException("Population size " + population.getSize()
+					+ " does not match the settings " + settings.getPopulationSize() + "!");
+		}
+		this.settings = settings;
+		this.generation = generation;
+		this.randomSeed = randomSeed;
+		this.population = population;
+		this.imageWidth = imageWidth;
+		this.imageHeight = imageHeight;
+		this.resolutionFactor = resolutionFactor;
+		this.improvedFitness = improvedFitness;
+		this.improvedGeneration = improvedGeneration;
+	}
+
+	/**
+	 * Returns the algorithm settings. The thread count may be changed before
+	 * restoring a genetic algorithm from this checkpoint.
+	 * @return settings
+	 */
+	public EvolutionSettings getSettings() {
+		return settings;
+	}
+
+	/**
+	 * Returns the number of generations run when the checkpoint was taken.
+	 * @return generation counter
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Returns the seed the random sources of every generation are derived from.
+	 * @return random seed
+	 */
+	public long getRandomSeed() {
+		return randomSeed;
+	}
+
+	/**
+	 * Returns the population when the checkpoint was taken.
+	 * @return population
+	 */
+	public Population getPopulation() {
+		return population;
+	}
+
+	/**
+	 * Returns the downsampling factor of the resolution pyramid level the
+	 * fitness of the population was evaluated at.
+	 * @return downsampling factor, 1 for full resolution
+	 */
+	public int getResolutionFactor() {
+		return resolutionFactor;
+	}
+
+	/**
+	 * Returns the highest fitness at the last sufficient improvement on the
+	 * resolution pyramid level.
+	 * @return fitness in percent
+	 */
+	public double getImprovedFitness() {
+		return improvedFitness;
+	}
+
+	/**
+	 * Returns the generation of the last sufficient improvement on the resolution pyramid level.
+	 * @return generation counter
+	 */
+	public long getImprovedGeneration() {
+		return improvedGeneration;
+	}
+
+	/**
+	 * Returns the width of the shape images.
+	 * @return width in pixels
+	 */
+	public int getImageWidth() {
+		return imageWidth;
+	}
+
+	/**
+	 * Returns the height of the shape images.
+	 * @return height in pixels
+	 */
+	public int getImageHeight() {
+		return imageHeight;
+	}
+}
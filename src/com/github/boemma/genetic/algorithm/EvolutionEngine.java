@@ -0,0 +1,51 @@
+package com.github.boemma.genetic.algorithm;
+
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+
+/**
+ * An optimizer evolving shape images towards a reference image. All engines
+ * work on the same {@link ShapeImage} genome, compare it with the reference image
+ * through the fitness function of their {@link EvolutionSettings}, and run until
+ * a {@link StopCondition} is reached, so they can be swapped for each other to
+ * find the fastest one for a kind of image.
+ *
+ * Since engines differ in how many offspring make up a step, their progress is
+ * counted in evaluated offspring. One generation of a {@link GeneticAlgorithm}
+ * corresponds to one evaluation less than the population size.
+ *
+ * @author BoEmma
+ *
+ */
+public interface EvolutionEngine {
+
+	/**
+	 * Runs the evolution until the stop condition is reached, or {@link #stop()} is called.
+	 * The generations of the stop condition are counted as evaluations, see {@link #getEvaluations()}.
+	 * @param stopCondition - when to stop
+	 * @return fittest shape image
+	 */
+	ShapeImage run(StopCondition stopCondition);
+
+	/**
+	 * Asks a running evolution to stop after its current step. Can be called from any thread.
+	 */
+	void stop();
+
+	/**
+	 * Returns the fittest individual so far. Can be called from any thread while running.
+	 * @return shape image with highest fitness
+	 */
+	ShapeImage getFittest();
+
+	/**
+	 * Returns the number of offspring evaluated so far.
+	 * @return evaluation count
+	 */
+	long getEvaluations();
+
+	/**
+	 * Stops the threads of the engine, unless they belong to a shared thread pool.
+	 * The engine can not be run after this.
+	 */
+	void shutdown();
+}
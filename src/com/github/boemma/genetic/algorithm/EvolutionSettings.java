@@ -0,0 +1,166 @@
+package com.github.boemma.genetic.algorithm;
+
+import com.github.boemma.image.FitnessFunction;
+import com.github.boemma.image.FitnessFunctions;
+
+/**
+ * Settings of an evolution run. The setters return the settings 
+ * themselves, so that they can be chained.
+ * 
+ * @author BoEmma
+ *
+ */
+public class EvolutionSettings {
+
+	private int populationSize = 50;
+	private int numberOfGenes = 70;
+	private double mutationRate = 0.03;
+	private int tournamentSize = 10;
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+	private long seed = System.nanoTime();
+	private FitnessFunction fitnessFunction = FitnessFunctions.getDefault();
+	
+	/**
+	 * Returns the number of individuals (shape images) in the population.
+	 * @return population size
+	 */
+	public int getPopulationSize() {
+		return populationSize;
+	}
+	
+	/**
+	 * Sets the number of individuals (shape images) in the population.
+	 * @param populationSize - population size, at least 2
+	 * @return these settings
+	 */
+	public EvolutionSettings setPopulationSize(int populationSize) {
+		if(populationSize < 2) {
+			throw new IllegalArgumentException("Population size " + populationSize + " must be at least 2!");
+		}
+		this.populationSize = populationSize;
+		return this;
+	}
+	
+	/**
+	 * Returns the number of genes (shapes within each shape image).
+	 * @return number of genes
+	 */
+	public int getNumberOfGenes() {
+		return numberOfGenes;
+	}
+	
+	/**
+	 * Sets the number of genes (shapes within each shape image).
+	 * @param numberOfGenes - number of genes, at least 1
+	 * @return these settings
+	 */
+	public EvolutionSettings setNumberOfGenes(int numberOfGenes) {
+		if(numberOfGenes < 1) {
+			throw new IllegalArgumentException("Number of genes " + numberOfGenes + " must be at least 1!");
+		}
+		this.numberOfGenes = numberOfGenes;
+		return this;
+	}
+	
+	/**
+	 * Returns the probability of a gene being mutated.
+	 * @return mutation rate
+	 */
+	public double getMutationRate() {
+		return mutationRate;
+	}
+	
+	/**
+	 * Sets the probability of a gene being mutated.
+	 * @param mutationRate - mutation rate between 0 and 1
+	 * @return these settings
+	 */
+	public EvolutionSettings setMutationRate(double mutationRate) {
+		if(mutationRate < 0 || mutationRate > 1) {
+			throw new IllegalArgumentException("Mutation rate " + mutationRate + " must be between 0 and 1!");
+		}
+		this.mutationRate = mutationRate;
+		return this;
+	}
+	
+	/**
+	 * Returns the number of randomly chosen individuals a parent is selected from.
+	 * @return tournament size
+	 */
+	public int getTournamentSize() {
+		return tournamentSize;
+	}
+	
+	/**
+	 * Sets the number of randomly chosen individuals a parent is selected from.
+	 * @param tournamentSize - tournament size, at least 1
+	 * @return these settings
+	 */
+	public EvolutionSettings setTournamentSize(int tournamentSize) {
+		if(tournamentSize < 1) {
+			throw new IllegalArgumentException("Tournament size " + tournamentSize + " must be at least 1!");
+		}
+		this.tournamentSize = tournamentSize;
+		return this;
+	}
+	
+	/**
+	 * Returns the number of threads breeding and evaluating offspring.
+	 * @return thread count
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+	
+	/**
+	 * Sets the number of threads breeding and evaluating offspring.
+	 * @param threadCount - thread count, 1 to run on the calling thread only
+	 * @return these settings
+	 */
+	public EvolutionSettings setThreadCount(int threadCount) {
+		if(threadCount < 1) {
+			throw new IllegalArgumentException("Thread count " + threadCount + " must be at least 1!");
+		}
+		this.threadCount = threadCount;
+		return this;
+	}
+	
+	/**
+	 * Returns the seed of all random sources of the run.
+	 * @return seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+	
+	/**
+	 * Sets the seed of all random sources of the run.
+	 * @param seed - seed
+	 * @return these settings
+	 */
+	public EvolutionSettings setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+	
+	/**
+	 * Returns the fitness function comparing shape images with the reference image.
+	 * @return fitness function
+	 */
+	public FitnessFunction getFitnessFunction() {
+		return fitnessFunction;
+	}
+	
+	/**
+	 * Sets the fitness function comparing shape images with the reference image.
+	 * @param fitnessFunction - fitness function, see {@link FitnessFunctions}
+	 * @return these settings
+	 */
+	public EvolutionSettings setFitnessFunction(FitnessFunction fitnessFunction) {
+		if(fitnessFunction == null) {
+			throw new IllegalArgumentException("Fitness function can not be null!");
+		}
+		this.fitnessFunction = fitnessFunction;
+		return this;
+	}
+}
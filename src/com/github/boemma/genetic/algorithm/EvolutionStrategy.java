@@ -0,0 +1,190 @@
+package com.github.boemma.genetic.algorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+import com.github.boemma.image.ImageSource;
+import com.github.boemma.image.ShapeRasterizer;
+
+/**
+ * (1+lambda) evolution strategy for shape images. Every step breeds a number of
+ * mutated copies of the parent, and the fittest of them replaces the parent if
+ * it is at least as fit. Offspring less fit than the parent can never be chosen,
+ * so their evaluation stops as soon as they fall below it.
+ *
+ * The offspring of a step are split between a number of workers, which can run
+ * on a thread pool of their own, or on a pool shared with other engines. Every
+ * offspring index has a random source of its own, so a run gives the same results
+ * with any number of threads.
+ *
+ * @author BoEmma
+ *
+ */
+public class EvolutionStrategy extends SingleParentEvolution {
+
+	/** Default number of offspring bred every step */
+	public static final int DEFAULT_OFFSPRING_COUNT = 8;
+
+	/** Offspring of the current step */
+	private final ShapeImage[] offspring;
+	/** One random source for every offspring index, used by whichever worker breeds that offspring */
+	private final SplittableRandom[] offspringRandoms;
+	private final OffspringWorker[] workers;
+	/** Thread pool running the workers, null if running on the calling thread only */
+	private ExecutorService executor;
+	/** True if the thread pool was created by, and should be shut down by, this evolution strategy */
+	private boolean ownsExecutor;
+
+	/**
+	 * Create a new evolution strategy towards the given reference image, running its
+	 * workers on a thread pool of its own with the number of threads given by the settings.
+	 * Call {@link #shutdown()} when done, to stop the threads.
+	 * @param referenceImage - image to compare shape images with
+	 * @param settings - algorithm settings, the population size is the number of random
+	 * 					individuals the initial parent is chosen from
+	 * @param offspringCount - number of offspring bred every step, lambda
+	 */
+	public EvolutionStrategy(ImageSource referenceImage, EvolutionSettings settings, int offspringCount) {
+		this(referenceImage, settings, offspringCount, null);
+	}
+
+	/**
+	 * Create a new evolution strategy towards the given reference image. The offspring
+	 * are split between as many workers as the thread count of the settings, running on
+	 * the given thread pool, which is not shut down by this evolution strategy.
+	 * @param referenceImage - image to compare shape images with
+	 * @param settings - algorithm settings, the population size is the number of random
+	 * 					individuals the initial parent is chosen from
+	 * @param offspringCount - number of offspring bred every step, lambda
+	 * @param executor - thread pool running the workers, or null to create one if needed
+	 */
+	public EvolutionStrategy(ImageSource referenceImage, EvolutionSettings settings, int offspringCount,
+			ExecutorService executor) {
+		super(referenceImage, settings);
+		if(offspringCount < 1) {
+			throw new IllegalArgumentException("Offspring count " + offspringCount + " must be at least 1!");
+		}
+		offspring = new ShapeImage[offspringCount];
+		offspringRandoms = new SplittableRandom[offspringCount];
+		for (int i = 0; i < offspringCount; i++) {
+			offspringRandoms[i] = seedRandom.split();
+		}
+
+		// No point in having more workers than offspring
+		int workerCount = Math.max(1, Math.min(settings.getThreadCount(), offspringCount));
+		workers = new OffspringWorker[workerCount];
+		for (int i = 0; i < workerCount; i++) {
+			workers[i] = new OffspringWorker(offspringCount * i / workerCount, offspringCount * (i + 1) / workerCount);
+		}
+		if(executor != null) {
+			this.executor = executor;
+		}
+		else if(workerCount > 1) {
+			this.executor = Executors.newFixedThreadPool(workerCount, new WorkerThreadFactory());
+			ownsExecutor = true;
+		}
+	}
+
+	@Override
+	ShapeImage step(ShapeImage parent) {
+		for (OffspringWorker worker : workers) {
+			worker.parent = parent;
+		}
+		if(executor == null || workers.length == 1) {
+			workers[0].call();
+		}
+		else {
+			runWorkers();
+		}
+		addEvaluations(offspring.length);
+
+		// The first of equally fit offspring wins, so that runs are repeatable
+		ShapeImage fittest = parent;
+		for (int i = 0; i < offspring.length; i++) {
+			ShapeImage candidate = offspring[i];
+			offspring[i] = null;
+			if(!candidate.isFitnessEstimated() && (fittest == parent ? candidate.getFitness() >= fittest.getFitness()
+					: candidate.getFitness() > fittest.getFitness())) {
+				fittest = candidate;
+			}
+		}
+		return fittest;
+	}
+
+	/**
+	 * Runs all workers on the thread pool and waits for them to complete. Each
+	 * worker only writes its own range of the offspring, and completing the
+	 * futures makes those writes visible to the calling thread.
+	 */
+	private void runWorkers() {
+		try {
+			List<OffspringWorker> tasks = new ArrayList<>(workers.length);
+			for (OffspringWorker worker : workers) {
+				tasks.add(worker);
+			}
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while evaluating offspring", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to evaluate offspring", e.getCause());
+		}
+	}
+
+	/**
+	 * Stops the worker threads of this evolution strategy, unless they belong to a
+	 * shared thread pool. No more steps can be run after this.
+	 */
+	@Override
+	public void shutdown() {
+		if(ownsExecutor) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns the number of offspring bred every step.
+	 * @return lambda
+	 */
+	public int getOffspringCount() {
+		return offspring.length;
+	}
+
+	/**
+	 * Breeds and evaluates the offspring for a fixed range of indices, with a
+	 * rasterizer of its own.
+	 */
+	private class OffspringWorker implements Callable<Void> {
+
+		/** Range of the offspring bred by this worker */
+		private final int from;
+		private final int to;
+
+		private final ShapeRasterizer rasterizer = new ShapeRasterizer(imageWidth, imageHeight);
+
+		/** Parent of the current step */
+		private ShapeImage parent;
+
+		private OffspringWorker(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Void call() {
+			for (int i = from; i < to; i++) {
+				offspring[i] = breed(parent, rasterizer, offspringRandoms[i], parent.getFitness());
+			}
+			return null;
+		}
+	}
+}
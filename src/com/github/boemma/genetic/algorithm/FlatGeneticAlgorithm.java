@@ -0,0 +1,337 @@
+package com.github.boemma.genetic.algorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.github.boemma.genetic.algorithm.population.FlatPopulation;
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+import com.github.boemma.image.FitnessReference;
+import com.github.boemma.image.ImageSource;
+import com.github.boemma.image.ShapeRasterizer;
+
+/**
+ * Genetic algorithm for generating shape images, working on a {@link FlatPopulation}.
+ * Selection, recombination and mutation work the same way as in {@link GeneticAlgorithm},
+ * but in place on primitive arrays, so that running a generation does not allocate
+ * any individuals, genes or coordinate arrays. A shape image of the fittest individual
+ * is only created when the highest fitness has improved.
+ *
+ * Offspring are always painted and compared in full; the evaluation shortcuts of
+ * {@link GeneticAlgorithm} work on shape image objects and are not available.
+ *
+ * @author BoEmma
+ *
+ */
+public class FlatGeneticAlgorithm implements EvolutionEngine {
+
+	/** Algorithm settings */
+	private int populationSize;
+	private int numberOfGenes;
+	private double mutationRate;
+	private int tournamentSize;
+
+	/** Image specifications */
+	private int imageWidth;
+	private int imageHeight;
+	/** The reference image prepared for the fitness function of the settings */
+	private FitnessReference reference;
+
+	private FlatPopulation population;
+	/** Index of the most fit individual in the current generation */
+	private int fittestIndex;
+	/** Shape image of the most fit individual, replaced when the highest fitness improves */
+	private volatile ShapeImage fittest;
+	private volatile long generation = 0;
+	private volatile boolean stopped = false;
+	/** Random source of every offspring index, used by whichever worker breeds that offspring */
+	private SplittableRandom[] offspringRandoms;
+
+	/** Workers breeding and evaluating the offspring of a generation */
+	private List<OffspringWorker> workers = new ArrayList<>();
+	/** Thread pool running the workers, null if running on the calling thread only */
+	private ExecutorService executor;
+	/** True if the thread pool was created by this genetic algorithm */
+	private boolean ownsExecutor;
+
+	/**
+	 * Create a new genetic algorithm evolving shape images towards the given reference
+	 * image, breeding and evaluating offspring with the number of threads given by
+	 * the settings. Call {@link #shutdown()} when done, to stop the threads.
+	 * @param referenceImage - image to compare shape images with
+	 * @param settings - algorithm settings
+	 */
+	public FlatGeneticAlgorithm(ImageSource referenceImage, EvolutionSettings settings) {
+		this(referenceImage, settings, null);
+	}
+
+	/**
+	 * Create a new genetic algorithm evolving shape images towards the given reference
+	 * image. The offspring are split between as many workers as the thread count of the
+	 * settings, running on the given thread pool. The thread pool is not shut down 
+	 * by this genetic algorithm, so it can be shared by several of them.
+	 * @param referenceImage - image to compare shape images with
+	 * @param settings - algorithm settings
+	 * @param executor - thread pool running the workers, or null to create one if needed
+	 */
+	public FlatGeneticAlgorithm(ImageSource referenceImage, EvolutionSettings settings, ExecutorService executor) {
+		this.populationSize = settings.getPopulationSize();
+		this.numberOfGenes = settings.getNumberOfGenes();
+		this.mutationRate = settings.getMutationRate();
+		this.tournamentSize = settings.getTournamentSize();
+
+		this.reference = settings.getFitnessFunction().prepare(referenceImage);
+		imageWidth = referenceImage.getWidth();
+		imageHeight = referenceImage.getHeight();
+
+		SplittableRandom seedRandom = new SplittableRandom(settings.getSeed());
+		population = new FlatPopulation(populationSize, numberOfGenes, imageWidth, imageHeight, seedRandom);
+		ShapeRasterizer rasterizer = new ShapeRasterizer(imageWidth, imageHeight);
+		for (int i = 0; i < populationSize; i++) {
+			population.evaluate(i, rasterizer, reference);
+		}
+		fittestIndex = population.getFittestIndex();
+		fittest = population.toShapeImage(fittestIndex, reference);
+		// One random source per offspring index, so that the results do not depend on the thread count
+		offspringRandoms = new SplittableRandom[populationSize];
+		for (int i = 1; i < populationSize; i++) {
+			offspringRandoms[i] = seedRandom.split();
+		}
+
+		// No point in having more workers than offspring
+		int workerCount = Math.max(1, Math.min(settings.getThreadCount(), populationSize - 1));
+		for (int i = 0; i < workerCount; i++) {
+			int from = 1 + (populationSize - 1) * i / workerCount;
+			int to = 1 + (populationSize - 1) * (i + 1) / workerCount;
+			workers.add(new OffspringWorker(from, to));
+		}
+		if(executor != null) {
+			this.executor = executor;
+		}
+		else if(workerCount > 1) {
+			this.executor = Executors.newFixedThreadPool(workerCount, new WorkerThreadFactory());
+			ownsExecutor = true;
+		}
+	}
+
+	/**
+	 * Runs generations until the stop condition is reached, or {@link #stop()} is called.
+	 * The generations of the stop condition are counted as evaluations, see {@link #getEvaluations()}.
+	 * @param stopCondition - when to stop
+	 * @return shape image with highest fitness
+	 */
+	@Override
+	public ShapeImage run(StopCondition stopCondition) {
+		stopped = false;
+		long start = System.currentTimeMillis();
+		while(!stopped && !stopCondition.isReached(getEvaluations(), System.currentTimeMillis() - start, getHighestFitness())) {
+			runOneGeneration();
+		}
+		return fittest;
+	}
+
+	/**
+	 * Asks {@link #run(StopCondition)} to stop after the current generation. Can be called from any thread.
+	 */
+	@Override
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * Run the evolution for one generation.
+	 * @return fitness of the most fit individual after the completion of this generation
+	 */
+	public double runOneGeneration() {
+		//Save the fittest individual
+		population.copyToNext(fittestIndex, 0);
+
+		if(workers.size() == 1) {
+			workers.get(0).call();
+		}
+		else {
+			try {
+				for (Future<Void> future : executor.invokeAll(workers)) {
+					future.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while evaluating offspring", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Failed to evaluate offspring", e.getCause());
+			}
+		}
+
+		population.swap();
+		generation++;
+		fittestIndex = population.getFittestIndex();
+		if(population.getFitness(fittestIndex) > fittest.getFitness()) {
+			fittest = population.toShapeImage(fittestIndex, reference);
+		}
+		return population.getFitness(fittestIndex);
+	}
+
+	/**
+	 * Returns a copy of the individual (shape image) with the highest fitness. 
+	 * Can be called from any thread while running.
+	 * @return shape image with highest fitness
+	 */
+	@Override
+	public ShapeImage getFittest() {
+		return fittest;
+	}
+
+	/**
+	 * Returns the highest fitness in the population.
+	 * @return highest fitness
+	 */
+	public double getHighestFitness() {
+		return fittest.getFitness();
+	}
+
+	/**
+	 * Returns the number of generations run so far.
+	 * @return generation count
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Returns the number of offspring evaluated so far, the population size 
+	 * minus the fittest individual for every generation.
+	 * @return evaluation count
+	 */
+	@Override
+	public long getEvaluations() {
+		return generation * (populationSize - 1);
+	}
+
+	/**
+	 * Stops the worker threads of this genetic algorithm, unless they belong to a
+	 * shared thread pool. No more generations can be run after this.
+	 */
+	@Override
+	public void shutdown() {
+		if(ownsExecutor) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Select a parent to use for crossover by selecting the most fit individual
+	 * from a selection of randomly chosen individuals.
+	 *
+	 * @param random - random source of the offspring being bred
+	 * @return index of the parent in the current generation
+	 */
+	private int selectParentIndividual(SplittableRandom random) {
+		int fittest = -1;
+		for (int i = 0; i < tournamentSize; i++) {
+			int randomId = random.nextInt(populationSize);
+			if(fittest == -1 || population.getFitness(fittest) < population.getFitness(randomId)) {
+				fittest = randomId;
+			}
+		}
+		return fittest;
+	}
+
+	/**
+	 * Recombine the two given individuals of the current generation into the given
+	 * individual of the next generation, by picking genes randomly from the parents.
+	 *
+	 * @param parent1 - index of the first parent
+	 * @param parent2 - index of the second parent
+	 * @param target - index of the new individual in the next generation
+	 * @param random - random source of the offspring being bred
+	 */
+	private void recombine(int parent1, int parent2, int target, SplittableRandom random) {
+		for (int i = 0; i < numberOfGenes; i++) {
+			population.copyGeneToNext(random.nextDouble() < 0.5 ? parent1 : parent2, target, i);
+		}
+	}
+
+	/**
+	 * Mutate the genes of the given individual of the next generation in place,
+	 * based on the mutation rate, like {@link GeneticAlgorithm#mutate}.
+	 * @param target - index of the individual in the next generation
+	 * @param random - random source of the offspring being bred
+	 * @return true if at least one gene was mutated
+	 */
+	boolean mutate(int target, SplittableRandom random) {
+		boolean mutated = false;
+		for (int i = 0; i < numberOfGenes; i++) {
+			if (random.nextDouble() <= mutationRate) {
+				mutateGene(target, i, random);
+				mutated = true;
+			}
+		}
+		return mutated;
+	}
+
+	/**
+	 * Mutate the gene with the given index of the given individual of the next generation
+	 * in place, regardless of the mutation rate, like {@link GeneticAlgorithm#mutateGene}.
+	 * @param target - index of the individual in the next generation
+	 * @param index - index of the gene
+	 * @param random - random source of the offspring being bred
+	 */
+	void mutateGene(int target, int index, SplittableRandom random) {
+		double[] xCoordinates = population.getNextXCoordinates();
+		double[] yCoordinates = population.getNextYCoordinates();
+		int[] colors = population.getNextColors();
+		double[] alphas = population.getNextAlphas();
+		int gene = target * numberOfGenes + index;
+
+		//Mutate position
+		for (int j = gene * FlatPopulation.CORNERS; j < (gene + 1) * FlatPopulation.CORNERS; j++) {
+			xCoordinates[j] = GeneticAlgorithm.addRandomOffsetToValue(xCoordinates[j], 0, imageWidth, (int)Math.round(imageWidth*0.1), random);
+			yCoordinates[j] = GeneticAlgorithm.addRandomOffsetToValue(yCoordinates[j], 0, imageHeight, (int)Math.round(imageHeight*0.1), random);
+		}
+
+		//Mutate color
+		int rgb = colors[gene];
+		int r = GeneticAlgorithm.addRandomOffsetToValue((rgb >> 16) & 0xFF, 0, 255, 10, random);
+		int g = GeneticAlgorithm.addRandomOffsetToValue((rgb >> 8) & 0xFF, 0, 255, 10, random);
+		int b = GeneticAlgorithm.addRandomOffsetToValue(rgb & 0xFF, 0, 255, 10, random);
+		colors[gene] = (r << 16) | (g << 8) | b;
+		alphas[gene] = GeneticAlgorithm.addRandomOffsetToValue(alphas[gene], 0, 1, 0.01, random);
+	}
+
+	/**
+	 * Breeds and evaluates the offspring for a fixed range of the next generation.
+	 * Each worker has its own rasterizer, uses the random sources of the offspring
+	 * in its range, and only writes the genes of its own range.
+	 */
+	private class OffspringWorker implements Callable<Void> {
+
+		/** Range of the population filled by this worker */
+		private final int from;
+		private final int to;
+
+		private final ShapeRasterizer rasterizer = new ShapeRasterizer(imageWidth, imageHeight);
+
+		private OffspringWorker(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Void call() {
+			for (int i = from; i < to; i++) {
+				SplittableRandom random = offspringRandoms[i];
+				int parent1 = selectParentIndividual(random);
+				int parent2 = selectParentIndividual(random);
+				recombine(parent1, parent2, i, random);
+				mutate(i, random);
+				population.evaluateNext(i, rasterizer, reference);
+			}
+			return null;
+		}
+	}
+}
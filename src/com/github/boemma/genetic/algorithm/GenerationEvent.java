@@ -0,0 +1,132 @@
+package com.github.boemma.genetic.algorithm;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event with the statistics of one generation. Recorded when
+ * a recording enables it, for example with 
+ * {@code -XX:StartFlightRecording:settings=profile,filename=evolution.jfr}.
+ * 
+ * Only loaded by {@link GeneticAlgorithm} on JVMs having Flight Recorder.
+ * 
+ * @author BoEmma
+ *
+ */
+@Name("com.github.boemma.Generation")
+@Label("Generation")
+@Category("Evolving Shape Images")
+@Description("Time split and population fitness of one generation")
+@StackTrace(false)
+class GenerationEvent extends Event {
+
+	/** Type of the event, checked for an enabling recording without creating an event */
+	private static final EventType EVENT_TYPE = EventType.getEventType(GenerationEvent.class);
+
+	@Label("Generation")
+	long generation;
+	
+	@Label("Wall Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long wallTime;
+	
+	@Label("Selection Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long selectionTime;
+	
+	@Label("Recombination Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long recombinationTime;
+	
+	@Label("Mutation Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long mutationTime;
+	
+	@Label("Rasterization Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long rasterizationTime;
+	
+	@Label("Comparison Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long comparisonTime;
+	
+	@Label("Evaluations")
+	int evaluations;
+	
+	@Label("Evaluations per Second")
+	double evaluationsPerSecond;
+	
+	@Label("Allocated")
+	@DataAmount
+	long allocated;
+	
+	@Label("Fitness Cache Hit Rate")
+	@Percentage
+	double fitnessCacheHitRate;
+	
+	@Label("Composite Cache Hit Rate")
+	@Percentage
+	double compositeCacheHitRate;
+	
+	@Label("Sampled Evaluation Promotion Rate")
+	@Percentage
+	double promotionRate;
+	
+	@Label("Early Abort Rate")
+	@Percentage
+	double earlyAbortRate;
+	
+	@Label("Highest Fitness")
+	double highestFitness;
+	
+	@Label("Mean Fitness")
+	double meanFitness;
+	
+	@Label("Lowest Fitness")
+	double lowestFitness;
+	
+	/**
+	 * Checks if a recording enables generation events.
+	 * @return true if generation events are recorded
+	 */
+	static boolean isRecorded() {
+		return EVENT_TYPE.isEnabled();
+	}
+	
+	/**
+	 * Records an event with the given statistics, if a recording enables generation events.
+	 * @param statistics - statistics of a generation
+	 */
+	static void record(GenerationStatistics statistics) {
+		GenerationEvent event = new GenerationEvent();
+		if(!event.shouldCommit()) {
+			return;
+		}
+		event.generation = statistics.getGeneration();
+		event.wallTime = statistics.getWallNanos();
+		event.selectionTime = statistics.getSelectionNanos();
+		event.recombinationTime = statistics.getRecombinationNanos();
+		event.mutationTime = statistics.getMutationNanos();
+		event.rasterizationTime = statistics.getRasterizationNanos();
+		event.comparisonTime = statistics.getComparisonNanos();
+		event.evaluations = statistics.getEvaluations();
+		event.evaluationsPerSecond = statistics.getEvaluationsPerSecond();
+		event.allocated = statistics.getAllocatedBytes();
+		event.fitnessCacheHitRate = statistics.getFitnessCacheHitRate();
+		event.compositeCacheHitRate = statistics.getCompositeCacheHitRate();
+		event.promotionRate = statistics.getSampledEvaluationPromotionRate();
+		event.earlyAbortRate = statistics.getEarlyAbortRate();
+		event.highestFitness = statistics.getHighestFitness();
+		event.meanFitness = statistics.getMeanFitness();
+		event.lowestFitness = statistics.getLowestFitness();
+		event.commit();
+	}
+}
@@ -0,0 +1,17 @@
+package com.github.boemma.genetic.algorithm;
+
+/**
+ * Listener notified with the statistics of every generation of a {@link GeneticAlgorithm}.
+ * 
+ * @author BoEmma
+ *
+ */
+public interface GenerationListener {
+
+	/**
+	 * Called on the thread running the generations, after every generation.
+	 * Should return quickly, since the next generation waits for it.
+	 * @param statistics - statistics of the completed generation
+	 */
+	void generationCompleted(GenerationStatistics statistics);
+}
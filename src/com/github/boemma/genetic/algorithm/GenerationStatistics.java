@@ -0,0 +1,189 @@
+package com.github.boemma.genetic.algorithm;
+
+/**
+ * Where the time of one generation of a {@link GeneticAlgorithm} went, and the
+ * state of the population after it. Times are summed over all workers, so with
+ * several threads they can add up to more than the wall time of the generation.
+ * Rasterization is the time spent painting, comparison is the rest of the time
+ * spent evaluating offspring.
+ * 
+ * @author BoEmma
+ *
+ */
+public class GenerationStatistics {
+
+	private final long generation;
+	private final long wallNanos;
+	private final long selectionNanos;
+	private final long recombinationNanos;
+	private final long mutationNanos;
+	private final long rasterizationNanos;
+	private final long comparisonNanos;
+	private final int evaluations;
+	private final long allocatedBytes;
+	private final double fitnessCacheHitRate;
+	private final double compositeCacheHitRate;
+	private final double sampledEvaluationPromotionRate;
+	private final double earlyAbortRate;
+	private final double highestFitness;
+	private final double meanFitness;
+	private final double lowestFitness;
+
+	GenerationStatistics(long generation, long wallNanos, long selectionNanos, long recombinationNanos,
+			long mutationNanos, long rasterizationNanos, long comparisonNanos, int evaluations, long allocatedBytes,
+			double fitnessCacheHitRate, double compositeCacheHitRate, double sampledEvaluationPromotionRate,
+			double earlyAbortRate, double highestFitness, double meanFitness, double lowestFitness) {
+		this.generation = generation;
+		this.wallNanos = wallNanos;
+		this.selectionNanos = selectionNanos;
+		this.recombinationNanos = recombinationNanos;
+		this.mutationNanos = mutationNanos;
+		this.rasterizationNanos = rasterizationNanos;
+		this.comparisonNanos = comparisonNanos;
+		this.evaluations = evaluations;
+		this.allocatedBytes = allocatedBytes;
+		this.fitnessCacheHitRate = fitnessCacheHitRate;
+		this.compositeCacheHitRate = compositeCacheHitRate;
+		this.sampledEvaluationPromotionRate = sampledEvaluationPromotionRate;
+		this.earlyAbortRate = earlyAbortRate;
+		this.highestFitness = highestFitness;
+		this.meanFitness = meanFitness;
+		this.lowestFitness = lowestFitness;
+	}
+
+	/**
+	 * Returns the number of the generation, counting from 1.
+	 * @return generation number
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Returns the wall time of the generation.
+	 * @return wall time in nanoseconds
+	 */
+	public long getWallNanos() {
+		return wallNanos;
+	}
+
+	/**
+	 * Returns the time spent selecting parents by tournament.
+	 * @return selection time in nanoseconds
+	 */
+	public long getSelectionNanos() {
+		return selectionNanos;
+	}
+
+	/**
+	 * Returns the time spent recombining parents.
+	 * @return recombination time in nanoseconds
+	 */
+	public long getRecombinationNanos() {
+		return recombinationNanos;
+	}
+
+	/**
+	 * Returns the time spent mutating offspring.
+	 * @return mutation time in nanoseconds
+	 */
+	public long getMutationNanos() {
+		return mutationNanos;
+	}
+
+	/**
+	 * Returns the time spent painting offspring.
+	 * @return rasterization time in nanoseconds
+	 */
+	public long getRasterizationNanos() {
+		return rasterizationNanos;
+	}
+
+	/**
+	 * Returns the time spent evaluating offspring, other than painting them.
+	 * @return comparison time in nanoseconds
+	 */
+	public long getComparisonNanos() {
+		return comparisonNanos;
+	}
+
+	/**
+	 * Returns the number of offspring bred and evaluated.
+	 * @return number of evaluations
+	 */
+	public int getEvaluations() {
+		return evaluations;
+	}
+
+	/**
+	 * Returns the number of offspring evaluated per second of wall time.
+	 * @return evaluations per second
+	 */
+	public double getEvaluationsPerSecond() {
+		return wallNanos == 0 ? 0 : evaluations * 1e9 / wallNanos;
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the workers.
+	 * @return allocated bytes, -1 if not supported by the JVM
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * Returns the fraction of offspring found in the fitness cache.
+	 * @return hit rate between 0 and 1, 0 if no fitness cache is used
+	 */
+	public double getFitnessCacheHitRate() {
+		return fitnessCacheHitRate;
+	}
+
+	/**
+	 * Returns the fraction of composite cache lookups finding a cached composite.
+	 * @return hit rate between 0 and 1, 0 if no composite cache is used
+	 */
+	public double getCompositeCacheHitRate() {
+		return compositeCacheHitRate;
+	}
+
+	/**
+	 * Returns the fraction of sampled offspring evaluated exactly.
+	 * @return promotion rate between 0 and 1, 0 without sampled evaluation
+	 */
+	public double getSampledEvaluationPromotionRate() {
+		return sampledEvaluationPromotionRate;
+	}
+
+	/**
+	 * Returns the fraction of exact evaluations stopped early.
+	 * @return early abort rate between 0 and 1, 0 without early abort
+	 */
+	public double getEarlyAbortRate() {
+		return earlyAbortRate;
+	}
+
+	/**
+	 * Returns the highest fitness in the population after the generation.
+	 * @return highest fitness
+	 */
+	public double getHighestFitness() {
+		return highestFitness;
+	}
+
+	/**
+	 * Returns the mean fitness of the population after the generation.
+	 * @return mean fitness
+	 */
+	public double getMeanFitness() {
+		return meanFitness;
+	}
+
+	/**
+	 * Returns the lowest fitness in the population after the generation.
+	 * @return lowest fitness
+	 */
+	public double getLowestFitness() {
+		return lowestFitness;
+	}
+}
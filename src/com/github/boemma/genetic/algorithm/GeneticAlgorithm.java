@@ -1,53 +1,276 @@
 package com.github.boemma.genetic.algorithm;
 
 
-import java.util.Random;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.github.boemma.genetic.algorithm.gene.Color;
 import com.github.boemma.genetic.algorithm.gene.Shape;
+import com.github.boemma.genetic.algorithm.population.FitnessCache;
 import com.github.boemma.genetic.algorithm.population.Population;
 import com.github.boemma.genetic.algorithm.population.ShapeImage;
-import com.github.boemma.ui.javafx.ReferenceImage;
+import com.github.boemma.image.CompositeCache;
+import com.github.boemma.image.FitnessReference;
+import com.github.boemma.image.ImagePyramid;
+import com.github.boemma.image.ImageSource;
+import com.github.boemma.image.PixelFitnessFunction;
+import com.github.boemma.image.PixelSample;
+import com.github.boemma.image.ShapeRasterizer;
 
 /**
  * Genetic algorithm for generating shape images (images built up
  * only by one specific shape). Fitness is calculated by comparing shape images
  * with a reference image.
  * 
+ * The offspring of a generation can be bred and evaluated in parallel by a 
+ * number of worker threads. Each worker has its own rasterizer and random 
+ * source, and fills its own range of the new population. The workers can run
+ * on a thread pool of their own, or on a pool shared by several genetic algorithms.
+ * 
  * @author BoEmma
  *
  */
-public class GeneticAlgorithm {
+public class GeneticAlgorithm implements EvolutionEngine {
+
+	/** True if this JVM has Flight Recorder, so that generation events can be recorded */
+	private static final boolean FLIGHT_RECORDER_AVAILABLE = isClassAvailable("jdk.jfr.Event");
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
 
 	/** Algorithm settings */
 	private int populationSize;
 	private int numberOfGenes;
 	private double mutationRate;
+	private int tournamentSize;
+	private int threadCount;
+	private long seed;
+	/** True if offspring are evaluated incrementally from their closest parent */
+	private volatile boolean incrementalEvaluation = false;
+	/** Cache of intermediate composites of parents, null if not used */
+	private volatile CompositeCache compositeCache;
+	/** Cache of the fitness of evaluated genomes, null if not used */
+	private volatile FitnessCache fitnessCache;
+	/** Evaluator of all offspring of a generation together, null to evaluate them on the workers */
+	private volatile BatchEvaluator batchEvaluator;
+	/** Fitness cache counters at the end of the previous generation, and their change during it */
+	private long fitnessCacheLookups;
+	private long fitnessCacheHits;
+	private double fitnessCacheHitRate;
 	
 	/** Image specifications */
 	private int imageWidth;
 	private int imageHeight;
+	private ImageSource referenceImage;
+	/** The reference image prepared for the fitness function of the settings */
+	private FitnessReference reference;
+	
+	/** Resolution pyramid of the reference image, null if always evaluating at full resolution */
+	private ImagePyramid pyramid;
+	/** Current level of the resolution pyramid */
+	private int resolutionLevel;
+	/** Image offspring are compared with, the current level of the pyramid or the reference image */
+	private FitnessReference evaluationReference;
+	/** Number of generations without sufficient improvement before moving up a level */
+	private int stallGenerations;
+	/** Minimum improvement of the highest fitness in percent, resetting the stall count */
+	private double minImprovement;
+	/** Highest fitness at the last sufficient improvement, and the generation it was reached */
+	private double improvedFitness;
+	private long improvedGeneration;
+	/** Checkpoint this genetic algorithm was restored from, until the resolution pyramid is set */
+	private EvolutionCheckpoint restoredCheckpoint;
+	
+	/** Number of standard errors an estimated fitness may be below its true fitness */
+	static final double SAMPLE_CONFIDENCE = 3;
+	/** Spacing of the sampled pixels with sampled evaluation, 0 to evaluate every offspring exactly */
+	private int sampleSpacing;
+	/** Pixels sampled for the current generation, null without sampled evaluation */
+	private PixelSample sample;
+	/** Fitness an offspring must possibly reach to be evaluated exactly */
+	private double promotionThreshold;
+	/** True if exact evaluations stop as soon as the offspring is known to be below the rejection threshold */
+	private boolean earlyAbort;
+	/** Fitness below which exact evaluations stop with early abort, the median fitness of the parents */
+	private double rejectionThreshold;
+	/** Fraction of exact evaluations stopped early in the last generation */
+	private double earlyAbortRate;
+	/** Fraction of offspring evaluated exactly, and mean absolute error of their estimates, in the last generation */
+	private double promotionRate;
+	private double estimateError;
+	
+	/** Workers breeding and evaluating the offspring of a generation */
+	private OffspringWorker[] workers;
+	/** Thread pool running the workers, null if running on the calling thread only */
+	private ExecutorService executor;
+	/** True if the thread pool was created by, and should be shut down by, this genetic algorithm */
+	private boolean ownsExecutor;
 	
 	private Population population;
+	/** Number of generations run so far */
+	private long generation;
+	/** Seed the random sources of every generation are derived from */
+	private final long randomSeed;
+	/** 
+	 * One random source for every offspring index of the new population, used by
+	 * whichever worker breeds that offspring. Since the work is partitioned by offspring,
+	 * not by worker, a run gives the same results with any number of threads.
+	 */
+	private final SplittableRandom[] offspringRandoms;
 	/** Currently highest fitness of an individual in the population */
 	private double highestFitness = 0;
+	/** True if {@link #run(StopCondition)} should stop after the current generation */
+	private volatile boolean stopped = false;
+	
+	/** Listeners notified with the statistics of every generation */
+	private final List<GenerationListener> generationListeners = new CopyOnWriteArrayList<>();
+	/** Composite cache counters at the end of the previous measured generation */
+	private long compositeCacheHits;
+	private long compositeCacheMisses;
 	
 
 	/**
-	 * Create a new genetic algorithm with the given population size, number of genes
-	 * and mutation rate.
-	 * @param populationSize - number of individuals (shape images)
-	 * @param numberOfGenes - number of genes (shapes within each shape image)
-	 * @param mutationRate - mutation rate
+	 * Create a new genetic algorithm evolving shape images towards the given reference
+	 * image, running its workers on a thread pool of its own with the number of threads 
+	 * given by the settings. Call {@link #shutdown()} when done, to stop the threads.
+	 * @param referenceImage - image to compare shape images with
+	 * @param settings - algorithm settings
+	 */
+	public GeneticAlgorithm(ImageSource referenceImage, EvolutionSettings settings) {
+		this(referenceImage, settings, null);
+	}
+	
+	/**
+	 * Create a new genetic algorithm evolving shape images towards the given reference
+	 * image. The offspring are split between as many workers as the thread count of the
+	 * settings, running on the given thread pool. The thread pool is not shut down 
+	 * by this genetic algorithm, so it can be shared by several of them.
+	 * @param referenceImage - image to compare shape images with
+	 * @param settings - algorithm settings
+	 * @param executor - thread pool running the workers, or null to create one if needed
+	 */
+	public GeneticAlgorithm(ImageSource referenceImage, EvolutionSettings settings, ExecutorService executor) {
+		this(settings.getFitnessFunction().prepare(referenceImage), settings, executor, null, 0, settings.getSeed());
+	}
+	
+	/**
+	 * Create a new genetic algorithm evolving shape images towards the given reference
+	 * image, already prepared for a fitness function, so that references shared by 
+	 * several genetic algorithms are only prepared once. The fitness function of the 
+	 * prepared reference is used, not the one of the settings.
+	 * @param reference - reference image prepared for a fitness function
+	 * @param settings - algorithm settings
+	 * @param executor - thread pool running the workers, or null to create one if needed
+	 */
+	public GeneticAlgorithm(FitnessReference reference, EvolutionSettings settings, ExecutorService executor) {
+		this(reference, settings, executor, null, 0, settings.getSeed());
+	}
+	
+	/**
+	 * Restore a genetic algorithm from a checkpoint, continuing the evolution where
+	 * it was when the checkpoint was taken. The offspring are split between as many
+	 * workers as the thread count of the checkpoint settings, running on the given
+	 * thread pool, which is not shut down by this genetic algorithm.
+	 * 
+	 * A checkpoint taken at a coarse level of a resolution pyramid continues at that
+	 * level when the same pyramid is set before the first generation, see 
+	 * {@link #setResolutionPyramid(ImagePyramid, int, double)}, and otherwise at full resolution.
+	 * @param referenceImage - image to compare shape images with, the same as when the checkpoint was taken
+	 * @param checkpoint - checkpoint to continue from
+	 * @param executor - thread pool running the workers, or null to create one if needed
 	 */
-	public GeneticAlgorithm(int populationSize, int numberOfGenes, double mutationRate) {
-		this.populationSize = populationSize;
-		this.numberOfGenes = numberOfGenes;
-		this.mutationRate = mutationRate;
+	public GeneticAlgorithm(ImageSource referenceImage, EvolutionCheckpoint checkpoint, ExecutorService executor) {
+		this(checkpoint.getSettings().getFitnessFunction().prepare(referenceImage), checkpoint.getSettings(), executor, 
+				checkpoint.getPopulation(), checkpoint.getGeneration(), checkpoint.getRandomSeed());
+		if(checkpoint.getImageWidth() != imageWidth || checkpoint.getImageHeight() != imageHeight) {
+			throw new IllegalArgumentException("Checkpoint of size " + checkpoint.getImageWidth() + "x" + checkpoint.getImageHeight()
+					+ " does not match reference image of size " + imageWidth + "x" + imageHeight + "!");
+		}
+		restoredCheckpoint = checkpoint;
+		if(checkpoint.getResolutionFactor() != 1) {
+			// The fitness of the checkpoint is the similarity at a coarse level
+			population = evaluateCopy(population, new ShapeRasterizer(imageWidth, imageHeight), reference, false);
+			highestFitness = population.getFittest().getFitness();
+		}
+	}
+	
+	/**
+	 * Create a genetic algorithm with the given population, or a new random 
+	 * population if null, deriving its random sources from the given seed.
+	 */
+	private GeneticAlgorithm(FitnessReference reference, EvolutionSettings settings, ExecutorService executor,
+			Population population, long generation, long randomSeed) {
+		this.populationSize = settings.getPopulationSize();
+		this.numberOfGenes = settings.getNumberOfGenes();
+		this.mutationRate = settings.getMutationRate();
+		this.tournamentSize = settings.getTournamentSize();
+		this.threadCount = settings.getThreadCount();
+		this.seed = settings.getSeed();
+		
+		this.referenceImage = reference.getImage();
+		this.reference = reference;
+		this.evaluationReference = reference;
+		imageWidth = referenceImage.getWidth();
+		imageHeight = referenceImage.getHeight();
 		
-		population = new Population(populationSize, numberOfGenes, true);
-		imageWidth = ReferenceImage.getInstance().getImageWidth();
-		imageHeight = ReferenceImage.getInstance().getImageHeight();
+		if(population == null) {
+			population = new Population(populationSize, numberOfGenes, reference, new SplittableRandom(randomSeed));
+		}
+		this.population = population;
+		this.generation = generation;
+		this.randomSeed = randomSeed;
+		offspringRandoms = new SplittableRandom[populationSize];
+		highestFitness = population.getFittest().getFitness();
+		
+		// No point in having more workers than offspring
+		int workerCount = Math.max(1, Math.min(threadCount, populationSize - 1));
+		workers = new OffspringWorker[workerCount];
+		for (int i = 0; i < workerCount; i++) {
+			int from = 1 + (populationSize - 1) * i / workerCount;
+			int to = 1 + (populationSize - 1) * (i + 1) / workerCount;
+			workers[i] = new OffspringWorker(from, to);
+		}
+		if(executor != null) {
+			this.executor = executor;
+		}
+		else if(workerCount > 1) {
+			this.executor = Executors.newFixedThreadPool(workerCount, new WorkerThreadFactory());
+			ownsExecutor = true;
+		}
+	}
+	
+	/**
+	 * Runs generations until the stop condition is reached, or {@link #stop()} is called.
+	 * The generations of the stop condition are counted as evaluations, see {@link #getEvaluations()}.
+	 * @param stopCondition - when to stop
+	 * @return shape image with highest fitness
+	 */
+	@Override
+	public ShapeImage run(StopCondition stopCondition) {
+		stopped = false;
+		long start = System.currentTimeMillis();
+		ShapeImage fittest = getFittest();
+		while(!stopped && !stopCondition.isReached(getEvaluations(), System.currentTimeMillis() - start, getSimilarity(fittest))) {
+			fittest = runOneGeneration();
+		}
+		return fittest;
+	}
+	
+	/**
+	 * Asks {@link #run(StopCondition)} to stop after the current generation. Can be called from any thread.
+	 */
+	@Override
+	public void stop() {
+		stopped = true;
 	}
 	
 	/**
@@ -56,41 +279,643 @@ public class GeneticAlgorithm {
 	 * @return shape image with highest fitness
 	 */
 	public ShapeImage runOneGeneration() {
-		Population newPopulation = new Population(populationSize, numberOfGenes, false);
+		// Generations are only measured for listeners, or a recording of generation events
+		boolean instrumented = !generationListeners.isEmpty() || (FLIGHT_RECORDER_AVAILABLE && GenerationEvent.isRecorded());
+		long start = instrumented ? System.nanoTime() : 0;
+		Population newPopulation = new Population(populationSize);
 		
 		//Save the fittest individual
 		newPopulation.setShapeImage(0, population.getFittest());
 		
+		// Random sources derived from the seed and the generation only, so that runs are
+		// repeatable with any number of threads, and also when resumed from a checkpoint.
+		// The seed of a generation is mixed, so that the sequences of generations do not overlap.
+		SplittableRandom generationRandom = new SplittableRandom(new SplittableRandom(randomSeed + generation + 1).nextLong());
 		for (int i = 1; i < populationSize; i++) {
-			ShapeImage image1 = selectParentIndividual();
-			ShapeImage image2 = selectParentIndividual();
-			ShapeImage newImage = recombine(image1, image2);
-			newPopulation.setShapeImage(i, newImage);
-			
-			mutate(newPopulation.getShapeImageIndividual(i));
-			newPopulation.getShapeImageIndividual(i).recalculateFitness();
+			offspringRandoms[i] = generationRandom.split();
+		}
+		if(sampleSpacing > 0) {
+			// A new sample every generation
+			sample = new PixelSample(evaluationReference, sampleSpacing, generationRandom.split());
+		}
+		if(sampleSpacing > 0 || earlyAbort) {
+			// The fitness a typical tournament winner has
+			promotionThreshold = population.getRankedFitness(Math.min(populationSize - 1, populationSize / tournamentSize));
+			// The fitness of the median parent
+			rejectionThreshold = population.getRankedFitness(populationSize - 1 - populationSize / 2);
+		}
+		BatchEvaluator generationEvaluator = batchEvaluator;
+		for (OffspringWorker worker : workers) {
+			worker.newPopulation = newPopulation;
+			worker.deferEvaluation = generationEvaluator != null;
+			worker.parentRowDifferences.clear();
+			worker.estimates = 0;
+			worker.promotions = 0;
+			worker.estimateErrorSum = 0;
+			worker.exactEvaluations = 0;
+			worker.earlyAborts = 0;
+			worker.resetTimes(instrumented);
+		}
+		if(executor == null || workers.length == 1) {
+			workers[0].call();
+		}
+		else {
+			runWorkers();
+		}
+		if(generationEvaluator != null) {
+			evaluateBatch(generationEvaluator, newPopulation);
 		}
 		
 		population = newPopulation;
+		generation++;
+		updateFitnessCacheHitRate();
+		if(sampleSpacing > 0 || earlyAbort) {
+			updateSampleStatistics();
+		}
 		highestFitness = newPopulation.getFittest().getFitness();
-		return newPopulation.getFittest();
+		if(instrumented) {
+			publishStatistics(System.nanoTime() - start);
+		}
+		updateResolutionLevel();
+		return population.getFittest();
+	}
+	
+	/**
+	 * Evaluates the offspring of the given population with the batch evaluator,
+	 * and updates the ranking of the population with their fitness.
+	 */
+	private void evaluateBatch(BatchEvaluator evaluator, Population newPopulation) {
+		ShapeImage[] offspring = new ShapeImage[populationSize - 1];
+		for (int i = 1; i < populationSize; i++) {
+			offspring[i - 1] = newPopulation.getShapeImageIndividual(i);
+		}
+		evaluator.evaluate(offspring);
+		for (int i = 1; i < populationSize; i++) {
+			newPopulation.updateFitness(i);
+		}
+	}
+	
+	/**
+	 * Sums up the times measured by the workers, and notifies the listeners and
+	 * Flight Recorder of the statistics of the generation.
+	 * @param wallNanos - wall time of the generation
+	 */
+	private void publishStatistics(long wallNanos) {
+		long selectionNanos = 0;
+		long recombinationNanos = 0;
+		long mutationNanos = 0;
+		long rasterizationNanos = 0;
+		long evaluationNanos = 0;
+		long allocatedBytes = 0;
+		for (OffspringWorker worker : workers) {
+			selectionNanos += worker.selectionNanos;
+			recombinationNanos += worker.recombinationNanos;
+			mutationNanos += worker.mutationNanos;
+			rasterizationNanos += worker.rasterizationNanos;
+			evaluationNanos += worker.evaluationNanos;
+			allocatedBytes = allocatedBytes < 0 || worker.allocatedBytes < 0 ? -1 : allocatedBytes + worker.allocatedBytes;
+		}
+		
+		double compositeCacheHitRate = 0;
+		CompositeCache cache = compositeCache;
+		if(cache != null) {
+			long hits = cache.getHitCount() - compositeCacheHits;
+			long misses = cache.getMissCount() - compositeCacheMisses;
+			compositeCacheHitRate = hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+			compositeCacheHits = cache.getHitCount();
+			compositeCacheMisses = cache.getMissCount();
+		}
+		
+		double fitnessSum = 0;
+		double lowestFitness = Double.MAX_VALUE;
+		for (int i = 0; i < populationSize; i++) {
+			double fitness = population.getFitness(i);
+			fitnessSum += fitness;
+			lowestFitness = Math.min(lowestFitness, fitness);
+		}
+		
+		GenerationStatistics statistics = new GenerationStatistics(generation, wallNanos, selectionNanos, 
+				recombinationNanos, mutationNanos, rasterizationNanos, evaluationNanos - rasterizationNanos, 
+				populationSize - 1, allocatedBytes, fitnessCacheHitRate, compositeCacheHitRate, promotionRate, 
+				earlyAbortRate, highestFitness, fitnessSum / populationSize, lowestFitness);
+		for (GenerationListener listener : generationListeners) {
+			listener.generationCompleted(statistics);
+		}
+		if(FLIGHT_RECORDER_AVAILABLE) {
+			GenerationEvent.record(statistics);
+		}
+	}
+	
+	/**
+	 * Adds a listener notified with the statistics of every generation. Measuring 
+	 * the generations slows them down a little, so it is only done while there are
+	 * listeners, or a Flight Recorder recording of generation events is running.
+	 * @param listener - listener to add
+	 */
+	public void addGenerationListener(GenerationListener listener) {
+		generationListeners.add(listener);
 	}
 	
 	/**
-	 * Returns the individual (shape image) with the highest fitness.
+	 * Removes a listener added with {@link #addGenerationListener(GenerationListener)}.
+	 * @param listener - listener to remove
+	 */
+	public void removeGenerationListener(GenerationListener listener) {
+		generationListeners.remove(listener);
+	}
+	
+	private static boolean isClassAvailable(String className) {
+		try {
+			Class.forName(className, false, GeneticAlgorithm.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Returns the number of bytes allocated by the current thread so far.
+	 * @return allocated bytes, -1 if not supported by the JVM
+	 */
+	private static long currentThreadAllocatedBytes() {
+		if(THREADS instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+	
+	/**
+	 * Makes offspring be evaluated approximately first, on a stratified random sample
+	 * of one row in every band of the given number of rows, drawn anew every generation.
+	 * The change in fitness from the exactly evaluated parent sharing the most genes 
+	 * with an offspring is estimated by comparing both on the same rows.
+	 * 
+	 * Only offspring whose estimate, plus a margin of three standard errors, reaches the 
+	 * fitness of a typical tournament winner of their parents' generation are evaluated
+	 * exactly. Those are the ones that could win tournaments, or replace the fittest
+	 * individual. The others keep the estimate as their fitness. The fittest individual
+	 * is always evaluated exactly. Needs a {@link PixelFitnessFunction}, comparing single
+	 * pixels. Must be called between generations.
+	 * @param sampleSpacing - number of rows in each band, or 0 to evaluate every offspring exactly
+	 */
+	public void setSampledEvaluation(int sampleSpacing) {
+		if(sampleSpacing < 0) {
+			throw new IllegalArgumentException("Sample spacing " + sampleSpacing + " can not be negative!");
+		}
+		if(sampleSpacing > 0 && !(reference.getFitnessFunction() instanceof PixelFitnessFunction)) {
+			throw new IllegalArgumentException("Sampled evaluation needs a fitness function comparing single pixels, not " 
+					+ reference.getFitnessFunction().getName() + "!");
+		}
+		this.sampleSpacing = sampleSpacing;
+		this.sample = null;
+		promotionRate = 0;
+		estimateError = 0;
+	}
+	
+	/**
+	 * Makes sure the fittest individual of the population has been evaluated
+	 * exactly, and sums up the sampled evaluation and early abort statistics of the workers.
+	 */
+	private void updateSampleStatistics() {
+		ShapeImage fittest = population.getFittest();
+		while(fittest.isFitnessEstimated()) {
+			fittest.recalculateFitness(workers[0].rasterizer, evaluationReference, 0);
+			population.updateFitness(population.getFittestIndex());
+			fittest = population.getFittest();
+		}
+		long estimates = 0;
+		long promotions = 0;
+		double errorSum = 0;
+		long exactEvaluations = 0;
+		long earlyAborts = 0;
+		for (OffspringWorker worker : workers) {
+			estimates += worker.estimates;
+			promotions += worker.promotions;
+			errorSum += worker.estimateErrorSum;
+			exactEvaluations += worker.exactEvaluations;
+			earlyAborts += worker.earlyAborts;
+		}
+		promotionRate = estimates == 0 ? 0 : (double) promotions / estimates;
+		estimateError = promotions == 0 ? 0 : errorSum / promotions;
+		earlyAbortRate = exactEvaluations == 0 ? 0 : (double) earlyAborts / exactEvaluations;
+	}
+	
+	/**
+	 * Makes exact evaluations of offspring stop as soon as the difference to the
+	 * reference image summed so far shows that the offspring can not reach the median
+	 * fitness of its parents' generation. Rejected offspring keep the similarity at the
+	 * point they were stopped as their fitness, which is an upper bound below that 
+	 * threshold, so they still lose every tournament against the offspring at or above it.
+	 * Below the threshold the order is not exact: an offspring whose comparison ran to 
+	 * the end just below the threshold can rank below a rejected one, whose real fitness
+	 * is lower than its bound. The fittest individual is always evaluated exactly. 
+	 * Must be called between generations.
+	 * 
+	 * Without incremental evaluation the comparison stops early, saving only comparison 
+	 * time. With incremental evaluation, the rows of dirty tiles are repainted and 
+	 * compared one at a time, those with the largest difference first, which also saves painting.
+	 * @param earlyAbort - true to enable early abort
+	 */
+	public void setEarlyAbort(boolean earlyAbort) {
+		this.earlyAbort = earlyAbort;
+		earlyAbortRate = 0;
+	}
+	
+	/**
+	 * Returns the fraction of exact evaluations stopped early in the last generation.
+	 * @return early abort rate between 0 and 1, 0 without early abort
+	 */
+	public double getEarlyAbortRate() {
+		return earlyAbortRate;
+	}
+	
+	/**
+	 * Returns the fraction of offspring evaluated exactly after their sampled
+	 * estimate in the last generation.
+	 * @return promotion rate between 0 and 1, 0 without sampled evaluation
+	 */
+	public double getSampledEvaluationPromotionRate() {
+		return promotionRate;
+	}
+	
+	/**
+	 * Returns the mean absolute error of the sampled estimates of the offspring
+	 * evaluated exactly in the last generation.
+	 * @return mean absolute error in percent points, 0 without sampled evaluation
+	 */
+	public double getSampledEvaluationError() {
+		return estimateError;
+	}
+	
+	/**
+	 * Makes offspring be evaluated at the levels of the given resolution pyramid,
+	 * coarse to fine, starting with the coarsest level. When the highest fitness 
+	 * has not improved by at least the given minimum for the given number of 
+	 * generations, evaluation moves up a level, and the population is evaluated 
+	 * again at the new level. Must be called between generations.
+	 * 
+	 * Until the full resolution level is reached, the fitness of individuals is
+	 * their similarity to the current level, not to the reference image itself.
+	 * 
+	 * A genetic algorithm restored from a checkpoint, which has not run a generation
+	 * since, continues at the level of the given pyramid with the downsampling factor
+	 * of the checkpoint, at the full resolution level if the checkpoint was taken
+	 * at full resolution.
+	 * @param pyramid - pyramid of the reference image, or null to evaluate at full resolution
+	 * @param stallGenerations - number of generations without improvement before moving up a level
+	 * @param minImprovement - minimum improvement of the highest fitness in percent
+	 */
+	public void setResolutionPyramid(ImagePyramid pyramid, int stallGenerations, double minImprovement) {
+		if(pyramid != null && batchEvaluator != null) {
+			throw new IllegalArgumentException("The resolution pyramid can not be used with a batch evaluator!");
+		}
+		if(pyramid != null && (pyramid.getFullResolution().getWidth() != imageWidth 
+				|| pyramid.getFullResolution().getHeight() != imageHeight)) {
+			throw new IllegalArgumentException("Pyramid does not match the size of the reference image!");
+		}
+		if(pyramid != null && stallGenerations < 1) {
+			throw new IllegalArgumentException("Stall generations " + stallGenerations + " must be at least 1!");
+		}
+		this.pyramid = pyramid;
+		this.stallGenerations = stallGenerations;
+		this.minImprovement = minImprovement;
+		EvolutionCheckpoint checkpoint = restoredCheckpoint;
+		restoredCheckpoint = null;
+		if(pyramid == null || checkpoint == null || checkpoint.getGeneration() != generation) {
+			setResolutionLevel(0);
+			return;
+		}
+		int level = pyramid.getLevelCount() - 1;
+		while(level >= 0 && pyramid.getFactor(level) != checkpoint.getResolutionFactor()) {
+			level--;
+		}
+		if(level < 0) {
+			throw new IllegalArgumentException("Pyramid has no level with the downsampling factor " 
+					+ checkpoint.getResolutionFactor() + " of the checkpoint!");
+		}
+		// Continue with the fitness values of the checkpoint, evaluated at that level
+		useResolutionLevel(level);
+		population = checkpoint.getPopulation();
+		highestFitness = population.getFittest().getFitness();
+		improvedFitness = checkpoint.getImprovedFitness();
+		improvedGeneration = checkpoint.getImprovedGeneration();
+	}
+	
+	/**
+	 * Moves up a level of the resolution pyramid if the highest fitness has stalled.
+	 */
+	private void updateResolutionLevel() {
+		if(pyramid == null || resolutionLevel == pyramid.getLevelCount() - 1) {
+			return;
+		}
+		if(highestFitness >= improvedFitness + minImprovement) {
+			improvedFitness = highestFitness;
+			improvedGeneration = generation;
+		}
+		else if(generation - improvedGeneration >= stallGenerations) {
+			setResolutionLevel(resolutionLevel + 1);
+		}
+	}
+	
+	/**
+	 * Makes offspring be evaluated at the given level of the resolution pyramid,
+	 * and evaluates the current population again at that level.
+	 */
+	private void setResolutionLevel(int level) {
+		useResolutionLevel(level);
+		population = evaluateCopy(population, workers[0].rasterizer, evaluationReference, incrementalEvaluation);
+		highestFitness = population.getFittest().getFitness();
+		improvedFitness = highestFitness;
+		improvedGeneration = generation;
+	}
+	
+	/**
+	 * Makes offspring be evaluated at the given level of the resolution pyramid,
+	 * without evaluating the current population again.
+	 */
+	private void useResolutionLevel(int level) {
+		resolutionLevel = level;
+		ImageSource levelImage = pyramid == null ? referenceImage : pyramid.getLevel(level);
+		evaluationReference = levelImage == referenceImage ? reference : reference.getFitnessFunction().prepare(levelImage);
+		for (OffspringWorker worker : workers) {
+			worker.rasterizer = pyramid == null ? new ShapeRasterizer(imageWidth, imageHeight) : pyramid.createRasterizer(level);
+		}
+		// Cached composites and fitness values belong to the old level
+		if(compositeCache != null) {
+			compositeCache.clear();
+		}
+		if(fitnessCache != null) {
+			fitnessCache.clear();
+		}
+	}
+	
+	/**
+	 * Evaluates copies of the individuals of the given population against the given
+	 * target, leaving the population itself unchanged.
+	 */
+	private Population evaluateCopy(Population population, ShapeRasterizer rasterizer, FitnessReference target, boolean incremental) {
+		Population copy = new Population(population.getSize());
+		for (int i = 0; i < population.getSize(); i++) {
+			ShapeImage shapeImage = new ShapeImage(population.getShapeImageIndividual(i).getShapes(), 0, reference);
+			if(incremental) {
+				shapeImage.recalculateFitness(rasterizer, null, target, 0);
+			}
+			else {
+				shapeImage.recalculateFitness(rasterizer, target, 0);
+			}
+			copy.setShapeImage(i, shapeImage);
+		}
+		return copy;
+	}
+	
+	/**
+	 * Returns the current level of the resolution pyramid.
+	 * @return level index, 0 being the coarsest level, or 0 if no pyramid is used
+	 */
+	public int getResolutionLevel() {
+		return pyramid == null ? 0 : resolutionLevel;
+	}
+	
+	/**
+	 * Checks if offspring are evaluated at full resolution, so that their fitness
+	 * is their similarity to the reference image, and not to a coarse level of the
+	 * resolution pyramid.
+	 * @return true if evaluating at full resolution
+	 */
+	public boolean isFullResolution() {
+		return evaluationReference == reference;
+	}
+	
+	/**
+	 * Returns the similarity of the given individual of this evolution to the reference
+	 * image, as far as known: its fitness at full resolution, and 0 while evaluating at
+	 * a coarse level of the resolution pyramid, so that a target similarity of a stop
+	 * condition is only reached at full resolution.
+	 * @param shapeImage - individual of the current population
+	 * @return similarity in percent, or 0 at a coarse level
+	 */
+	public double getSimilarity(ShapeImage shapeImage) {
+		return isFullResolution() ? shapeImage.getFitness() : 0;
+	}
+	
+	/**
+	 * Takes a checkpoint of the current state of the evolution. Must be called
+	 * between generations, from the thread running them. The checkpoint shares
+	 * the current population, which is never changed once a generation is completed,
+	 * so taking a checkpoint is cheap and it can be written on another thread.
+	 * 
+	 * The random sources of a generation are derived from the seed saved in the
+	 * checkpoint and the generation number only, so a genetic algorithm restored from
+	 * the checkpoint continues exactly like the evolution it was taken from.
+	 * 
+	 * When evaluating at a coarse level of a resolution pyramid, the fitness of
+	 * the population is the similarity at that level, and the checkpoint also holds
+	 * the downsampling factor of the level, so a genetic algorithm restored from it
+	 * continues at the same level, see {@link #setResolutionPyramid(ImagePyramid, int, double)}.
+	 * @return checkpoint of the current state
+	 */
+	public EvolutionCheckpoint createCheckpoint() {
+		EvolutionSettings settings = new EvolutionSettings()
+				.setPopulationSize(populationSize)
+				.setNumberOfGenes(numberOfGenes)
+				.setMutationRate(mutationRate)
+				.setTournamentSize(tournamentSize)
+				.setThreadCount(threadCount)
+				.setSeed(seed)
+				.setFitnessFunction(reference.getFitnessFunction());
+		int resolutionFactor = pyramid == null ? 1 : pyramid.getFactor(resolutionLevel);
+		return new EvolutionCheckpoint(settings, generation, randomSeed, population, imageWidth, imageHeight,
+				resolutionFactor, improvedFitness, improvedGeneration);
+	}
+	
+	/**
+	 * Returns the number of generations run so far, including the generations
+	 * run before the checkpoint this genetic algorithm was restored from.
+	 * @return generation counter
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+	
+	/**
+	 * Returns the number of offspring evaluated so far, one less than the 
+	 * population size every generation, since the fittest individual is kept.
+	 * @return evaluation count
+	 */
+	@Override
+	public long getEvaluations() {
+		return generation * (populationSize - 1);
+	}
+	
+	/**
+	 * Enables or disables incremental evaluation. With incremental evaluation,
+	 * every individual keeps its rendered pixels, and offspring only repaint and
+	 * compare the tiles covered by genes differing from the parent they share
+	 * the most genes with. Once the population has converged, this is much faster
+	 * with low mutation rates, at the cost of keeping one image buffer per 
+	 * individual in memory.
+	 * @param incrementalEvaluation - true to enable incremental evaluation
+	 */
+	public void setIncrementalEvaluation(boolean incrementalEvaluation) {
+		this.incrementalEvaluation = incrementalEvaluation;
+	}
+	
+	/**
+	 * Sets an evaluator of all offspring of a generation together, for example on
+	 * worker processes. The workers then only breed the offspring, and the evaluator 
+	 * calculates their exact fitness against the full resolution reference image, 
+	 * so sampled evaluation, early abort, incremental evaluation and the caches are 
+	 * not used, and neither can the resolution pyramid be.
+	 * @param batchEvaluator - batch evaluator, or null to evaluate offspring on the workers
+	 */
+	public void setBatchEvaluator(BatchEvaluator batchEvaluator) {
+		if(batchEvaluator != null && pyramid != null) {
+			throw new IllegalArgumentException("A batch evaluator can not be used with the resolution pyramid!");
+		}
+		this.batchEvaluator = batchEvaluator;
+	}
+	
+	/**
+	 * Sets the cache of intermediate composites used when painting offspring.
+	 * Offspring sharing a prefix of genes with a cached parent resume painting
+	 * from the nearest cached checkpoint of that parent. Not used together with
+	 * incremental evaluation, which takes precedence.
+	 * @param compositeCache - composite cache, or null to paint every offspring from scratch
+	 */
+	public void setCompositeCache(CompositeCache compositeCache) {
+		this.compositeCache = compositeCache;
+	}
+	
+	/**
+	 * Returns the cache of intermediate composites, for reading its counters.
+	 * @return composite cache, or null if not used
+	 */
+	public CompositeCache getCompositeCache() {
+		return compositeCache;
+	}
+	
+	/**
+	 * Sets the cache used to look up the fitness of offspring identical to already
+	 * evaluated individuals. With incremental evaluation, offspring identical to their
+	 * parent are already cheap to evaluate, so the cache is only used without it.
+	 * @param fitnessCache - fitness cache, or null to evaluate every offspring
+	 */
+	public void setFitnessCache(FitnessCache fitnessCache) {
+		this.fitnessCache = fitnessCache;
+		if(fitnessCache != null) {
+			fitnessCacheLookups = fitnessCache.getLookupCount();
+			fitnessCacheHits = fitnessCache.getHitCount();
+		}
+		fitnessCacheHitRate = 0;
+	}
+	
+	/**
+	 * Returns the fraction of offspring whose fitness was found in the fitness
+	 * cache during the last generation.
+	 * @return hit rate between 0 and 1, 0 if no fitness cache is used
+	 */
+	public double getFitnessCacheHitRate() {
+		return fitnessCacheHitRate;
+	}
+	
+	/**
+	 * Updates the fitness cache hit rate of the last generation.
+	 */
+	private void updateFitnessCacheHitRate() {
+		FitnessCache cache = fitnessCache;
+		if(cache == null) {
+			return;
+		}
+		long lookups = cache.getLookupCount();
+		long hits = cache.getHitCount();
+		fitnessCacheHitRate = lookups == fitnessCacheLookups ? 0 : (double) (hits - fitnessCacheHits) / (lookups - fitnessCacheLookups);
+		fitnessCacheLookups = lookups;
+		fitnessCacheHits = hits;
+	}
+	
+	/**
+	 * Runs all workers on the thread pool and waits for them to complete. Each
+	 * worker only writes its own range of the new population, and completing the
+	 * futures makes those writes visible to the calling thread.
+	 */
+	private void runWorkers() {
+		List<Future<Void>> futures;
+		try {
+			List<OffspringWorker> tasks = new ArrayList<>(workers.length);
+			for (OffspringWorker worker : workers) {
+				tasks.add(worker);
+			}
+			futures = executor.invokeAll(tasks);
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while evaluating offspring", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to evaluate offspring", e.getCause());
+		}
+	}
+	
+	/**
+	 * Stops the worker threads of this genetic algorithm, unless they belong to a
+	 * shared thread pool. No more generations can be run after this.
+	 */
+	@Override
+	public void shutdown() {
+		if(ownsExecutor) {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Returns the individual (shape image) with the highest fitness. With a
+	 * resolution pyramid, the fitness is the similarity at the current level.
 	 * @return shape image with highest fitness
 	 */
+	@Override
 	public ShapeImage getFittest(){
 		return population.getFittest();
 	}
 	
+	/**
+	 * Returns the given number of individuals with the highest fitness, fittest first.
+	 * @param count - number of individuals
+	 * @return the fittest shape images
+	 */
+	public ShapeImage[] getFittest(int count) {
+		return population.getFittest(count);
+	}
+	
+	/**
+	 * Replaces the least fit individuals of the population with the given migrants
+	 * from another population, evaluated against the same reference image. Must be 
+	 * called between generations, from the thread running them. The current population
+	 * is not changed, since it may be shared with a checkpoint, but replaced by a copy.
+	 * @param migrants - individuals to take in, at most the population size minus one
+	 */
+	public void immigrate(ShapeImage[] migrants) {
+		if(migrants.length >= populationSize) {
+			throw new IllegalArgumentException("Too many migrants " + migrants.length + " for population size " + populationSize + "!");
+		}
+		Population newPopulation = new Population(populationSize);
+		for (int i = 0; i < populationSize; i++) {
+			newPopulation.setShapeImage(i, population.getShapeImageIndividual(i));
+		}
+		for (int i = 0; i < migrants.length; i++) {
+			newPopulation.setShapeImage(population.getRankedIndex(populationSize - 1 - i), migrants[i]);
+		}
+		population = newPopulation;
+		highestFitness = newPopulation.getFittest().getFitness();
+	}
+	
 	/**
 	 * Check if evolution is completed (a shape image similar enough
 	 * to the reference image has been found).
 	 * @return true if evolution is completed, false if not
 	 */
 	public boolean isEvolutionCompleted(){
-		if(highestFitness < 100) { //TODO: For now 100% is hard coded
+		if(highestFitness < 100 || evaluationReference != reference) { //TODO: For now 100% is hard coded
 			return false;
 		}
 		return true;
@@ -100,19 +925,11 @@ public class GeneticAlgorithm {
 	 * Select a parent to use for crossover by selecting the most fit individual 
 	 * from a selection of randomly chosen individuals.
 	 * 
+	 * @param random - random source of the offspring being bred
 	 * @return shape image parent
 	 */
-	private ShapeImage selectParentIndividual() {
-		Random random = new Random();
-		ShapeImage fittest = null;
-		for (int i = 0; i < 10; i++) { //TODO: Make this configurable through GUI
-			int randomId = random.nextInt(populationSize);
-			ShapeImage randomShape = population.getShapeImageIndividual(randomId);
-			if(fittest == null || fittest.getFitness() < randomShape.getFitness()) {
-				fittest = randomShape;
-			}
-		}
-		return fittest;
+	ShapeImage selectParentIndividual(SplittableRandom random) {
+		return population.selectByTournament(random, tournamentSize);
 	}
 	
 	/**
@@ -122,13 +939,14 @@ public class GeneticAlgorithm {
 	 * 
 	 * @param image1 - first parent
 	 * @param image2 - second parent
+	 * @param random - random source of the offspring being bred
 	 * @return new individual
 	 */
-	private ShapeImage recombine(ShapeImage image1, ShapeImage image2) {
-		ShapeImage newImage = new ShapeImage(numberOfGenes, false);
+	ShapeImage recombine(ShapeImage image1, ShapeImage image2, SplittableRandom random) {
+		ShapeImage newImage = new ShapeImage(numberOfGenes, reference);
 
 		for (int i = 0; i < numberOfGenes; i++) {
-			if (Math.random() < 0.5) {
+			if (random.nextDouble() < 0.5) {
 				newImage.setShape(i, new Shape(image1.getShape(i).getXCoordinates(), 
 												image1.getShape(i).getYCoordinates(),
 												image1.getShape(i).getColor()));
@@ -145,8 +963,11 @@ public class GeneticAlgorithm {
 	 * Mutate the genes of the given shape image individual based on 
 	 * the mutation rate.
 	 * @param shapeImage - individual to mutate
+	 * @param random - random source of the offspring being bred
+	 * @return true if at least one gene was mutated
 	 */
-	private void mutate(ShapeImage shapeImage) {
+	boolean mutate(ShapeImage shapeImage, SplittableRandom random) {
+		boolean mutated = false;
 		for (int i = 0; i < numberOfGenes; i++) {
 			
 			Shape shape = shapeImage.getShapes()[i];
@@ -154,29 +975,47 @@ public class GeneticAlgorithm {
 			double[] xCoordinates = shape.getXCoordinates().clone();
 			double[] yCoordinates = shape.getYCoordinates().clone();
 			
-			double mutateValue = Math.random();
+			double mutateValue = random.nextDouble();
 			if (mutateValue <= mutationRate) {
-				
-				//Mutate position
-				for(int j = 0; j<shape.getXCoordinates().length;j++) {
-					xCoordinates[j] = addRandomOffsetToValue(xCoordinates[j], 0, imageWidth, (int)Math.round(imageWidth*0.1)); //TODO: Make this value configurable
-					yCoordinates[j] = addRandomOffsetToValue(yCoordinates[j], 0, imageHeight, (int)Math.round(imageHeight*0.1));
-				}
-				shape.setXCoordinates(xCoordinates);
-				shape.setYCoordinates(yCoordinates);
-			
-				//Mutate color
-				int r = addRandomOffsetToValue(shape.getColor().getRed(), 0, 255, 10);
-				int g = addRandomOffsetToValue(shape.getColor().getGreen(), 0, 255, 10);
-				int b = addRandomOffsetToValue(shape.getColor().getBlue(), 0, 255, 10);
-				double a = addRandomOffsetToValue(shape.getColor().getAlpha(), 0, 1, 0.01);
-	
-				Color color = new Color(r,g,b,a);
-				shape.setColor(color);
-			
-				shapeImage.setShape(i, shape);
+				mutateGene(shapeImage, i, shape, xCoordinates, yCoordinates, random);
+				mutated = true;
 			}
 		}
+		return mutated;
+	}
+	
+	/**
+	 * Mutate the gene with the given index of the given shape image individual, 
+	 * regardless of the mutation rate.
+	 * @param shapeImage - individual to mutate
+	 * @param index - index of the gene
+	 * @param random - random source of the offspring being bred
+	 */
+	void mutateGene(ShapeImage shapeImage, int index, SplittableRandom random) {
+		Shape shape = shapeImage.getShapes()[index];
+		mutateGene(shapeImage, index, shape, shape.getXCoordinates().clone(), shape.getYCoordinates().clone(), random);
+	}
+	
+	private void mutateGene(ShapeImage shapeImage, int index, Shape shape, double[] xCoordinates, double[] yCoordinates, 
+			SplittableRandom random) {
+		//Mutate position
+		for(int j = 0; j<shape.getXCoordinates().length;j++) {
+			xCoordinates[j] = addRandomOffsetToValue(xCoordinates[j], 0, imageWidth, (int)Math.round(imageWidth*0.1), random); //TODO: Make this value configurable
+			yCoordinates[j] = addRandomOffsetToValue(yCoordinates[j], 0, imageHeight, (int)Math.round(imageHeight*0.1), random);
+		}
+		shape.setXCoordinates(xCoordinates);
+		shape.setYCoordinates(yCoordinates);
+	
+		//Mutate color
+		int r = addRandomOffsetToValue(shape.getColor().getRed(), 0, 255, 10, random);
+		int g = addRandomOffsetToValue(shape.getColor().getGreen(), 0, 255, 10, random);
+		int b = addRandomOffsetToValue(shape.getColor().getBlue(), 0, 255, 10, random);
+		double a = addRandomOffsetToValue(shape.getColor().getAlpha(), 0, 1, 0.01, random);
+
+		Color color = new Color(r,g,b,a);
+		shape.setColor(color);
+	
+		shapeImage.setShape(index, shape);
 	}
 	
 	/**
@@ -187,11 +1026,11 @@ public class GeneticAlgorithm {
 	 * @param min - min limit for new value
 	 * @param max - max limit for new value
 	 * @param mutationValue
+	 * @param random - random source of the offspring being bred
 	 * 
 	 * @return old value added with offset
 	 */
-	private int addRandomOffsetToValue(int value, int min, int max, int mutationValue) {
-		Random random = new Random();
+	static int addRandomOffsetToValue(int value, int min, int max, int mutationValue, SplittableRandom random) {
 		int offsetValue = (int) Math.round((value + 2*random.nextDouble() * mutationValue-mutationValue));
 		return Math.max(Math.min(offsetValue, max),min);
 	}
@@ -204,12 +1043,226 @@ public class GeneticAlgorithm {
 	 * @param min - min limit for new value
 	 * @param max - max limit for new value
 	 * @param mutationValue
+	 * @param random - random source of the offspring being bred
 	 * 
 	 * @return old value added with offset
 	 */
-	private double addRandomOffsetToValue(double value, int min, int max, double mutationValue) {
-		Random random = new Random();
+	static double addRandomOffsetToValue(double value, int min, int max, double mutationValue, SplittableRandom random) {
 		double offsetValue =  value + 2*random.nextDouble() * mutationValue-mutationValue;
 		return Math.max(Math.min(offsetValue, max),min);
 	}
+	
+	/**
+	 * Breeds and evaluates the offspring for a fixed range of the new population.
+	 * Each worker has its own rasterizer, and uses the random sources of the offspring
+	 * in its range, so workers never share mutable state.
+	 */
+	private class OffspringWorker implements Callable<Void> {
+		
+		/** Range of the population filled by this worker */
+		private final int from;
+		private final int to;
+		
+		private ShapeRasterizer rasterizer = new ShapeRasterizer(imageWidth, imageHeight);
+		
+		/** The population currently being created */
+		private Population newPopulation;
+		/** True if the offspring are only bred, and evaluated by the batch evaluator afterwards */
+		private boolean deferEvaluation;
+		
+		/** Buffers for the painted rows and row differences of the sample */
+		private int[] samplePixels = new int[0];
+		private long[] rowDifferences = new long[0];
+		/** Row differences of the parents on the sample of the current generation */
+		private final Map<ShapeImage, long[]> parentRowDifferences = new IdentityHashMap<>();
+		/** Sampled evaluation statistics of the current generation */
+		private long estimates;
+		private long promotions;
+		private double estimateErrorSum;
+		/** Early abort statistics of the current generation */
+		private long exactEvaluations;
+		private long earlyAborts;
+		/** Time measurements of the current generation, only made when instrumented */
+		private boolean timed;
+		private long selectionNanos;
+		private long recombinationNanos;
+		private long mutationNanos;
+		private long rasterizationNanos;
+		private long evaluationNanos;
+		private long allocatedBytes;
+		
+		private OffspringWorker(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		public Void call() {
+			if(timed) {
+				return callTimed();
+			}
+			for (int i = from; i < to; i++) {
+				SplittableRandom random = offspringRandoms[i];
+				ShapeImage image1 = selectParentIndividual(random);
+				ShapeImage image2 = selectParentIndividual(random);
+				ShapeImage newImage = recombine(image1, image2, random);
+				
+				mutate(newImage, random);
+				evaluate(newImage, image1, image2);
+				newPopulation.setShapeImage(i, newImage);
+			}
+			return null;
+		}
+		
+		/**
+		 * Same as {@link #call()}, measuring the time spent in every step.
+		 */
+		private Void callTimed() {
+			long allocatedBefore = currentThreadAllocatedBytes();
+			for (int i = from; i < to; i++) {
+				SplittableRandom random = offspringRandoms[i];
+				long t0 = System.nanoTime();
+				ShapeImage image1 = selectParentIndividual(random);
+				ShapeImage image2 = selectParentIndividual(random);
+				long t1 = System.nanoTime();
+				ShapeImage newImage = recombine(image1, image2, random);
+				long t2 = System.nanoTime();
+				mutate(newImage, random);
+				long t3 = System.nanoTime();
+				evaluate(newImage, image1, image2);
+				long t4 = System.nanoTime();
+				newPopulation.setShapeImage(i, newImage);
+				
+				selectionNanos += t1 - t0;
+				recombinationNanos += t2 - t1;
+				mutationNanos += t3 - t2;
+				evaluationNanos += t4 - t3;
+			}
+			rasterizationNanos = rasterizer.getPaintNanos();
+			allocatedBytes = allocatedBefore < 0 ? -1 : currentThreadAllocatedBytes() - allocatedBefore;
+			return null;
+		}
+		
+		/**
+		 * Resets the time measurements before a generation.
+		 * @param timed - true to measure the generation
+		 */
+		private void resetTimes(boolean timed) {
+			this.timed = timed;
+			rasterizer.setTimed(timed);
+			rasterizer.resetPaintNanos();
+			selectionNanos = 0;
+			recombinationNanos = 0;
+			mutationNanos = 0;
+			rasterizationNanos = 0;
+			evaluationNanos = 0;
+			allocatedBytes = 0;
+		}
+		
+		/**
+		 * Calculates the fitness of the given offspring. With sampled evaluation, 
+		 * it is only evaluated exactly if its estimate could reach the promotion threshold.
+		 * @param newImage - offspring to evaluate
+		 * @param image1 - first parent
+		 * @param image2 - second parent
+		 */
+		private void evaluate(ShapeImage newImage, ShapeImage image1, ShapeImage image2) {
+			if(deferEvaluation) {
+				return;
+			}
+			PixelSample currentSample = sample;
+			ShapeImage parent = image1;
+			if(image1.isFitnessEstimated() || (!image2.isFitnessEstimated() 
+					&& newImage.countSharedGenes(image2) > newImage.countSharedGenes(image1))) {
+				parent = image2;
+			}
+			if(currentSample == null || parent.isFitnessEstimated()) {
+				evaluateExactly(newImage, image1, image2);
+				return;
+			}
+			
+			long[] parentRows = parentRowDifferences.get(parent);
+			if(parentRows == null) {
+				parentRows = compareSample(parent, currentSample, new long[currentSample.getRowCount()]);
+				parentRowDifferences.put(parent, parentRows);
+			}
+			if(rowDifferences.length != currentSample.getRowCount()) {
+				rowDifferences = new long[currentSample.getRowCount()];
+			}
+			compareSample(newImage, currentSample, rowDifferences);
+			double estimate = parent.getFitness() 
+					+ currentSample.estimateSimilarity(rowDifferences) - currentSample.estimateSimilarity(parentRows);
+			double error = currentSample.estimateStandardError(rowDifferences, parentRows);
+			estimates++;
+			if(estimate + SAMPLE_CONFIDENCE * error < promotionThreshold) {
+				newImage.setEstimatedFitness(estimate);
+				return;
+			}
+			evaluateExactly(newImage, image1, image2);
+			promotions++;
+			if(!newImage.isFitnessEstimated()) {
+				estimateErrorSum += Math.abs(estimate - newImage.getFitness());
+			}
+		}
+		
+		/**
+		 * Paints the sampled rows of the given shape image and compares them with the reference.
+		 * @return the given row differences array
+		 */
+		private long[] compareSample(ShapeImage shapeImage, PixelSample currentSample, long[] rows) {
+			if(samplePixels.length < currentSample.size()) {
+				samplePixels = new int[currentSample.size()];
+			}
+			rasterizer.paintSamples(shapeImage.getShapes(), currentSample, samplePixels);
+			currentSample.compare(samplePixels, rows);
+			return rows;
+		}
+		
+		/**
+		 * Calculates the exact fitness of the given offspring, using the evaluation 
+		 * shortcuts which are enabled.
+		 * @param newImage - offspring to evaluate
+		 * @param image1 - first parent
+		 * @param image2 - second parent
+		 */
+		private void evaluateExactly(ShapeImage newImage, ShapeImage image1, ShapeImage image2) {
+			double minFitness = earlyAbort ? rejectionThreshold : 0;
+			exactEvaluations++;
+			if(incrementalEvaluation) {
+				ShapeImage parent = newImage.countSharedGenes(image1) >= newImage.countSharedGenes(image2) ? image1 : image2;
+				newImage.recalculateFitness(rasterizer, parent, evaluationReference, minFitness);
+				countEarlyAbort(newImage);
+				return;
+			}
+			
+			FitnessCache cache = fitnessCache;
+			long genomeHash = 0;
+			if(cache != null) {
+				genomeHash = newImage.genomeHash();
+				if(cache.lookup(newImage, genomeHash)) {
+					return;
+				}
+			}
+			
+			if(compositeCache != null) {
+				ShapeImage parent = newImage.countSharedPrefix(image1) >= newImage.countSharedPrefix(image2) ? image1 : image2;
+				newImage.recalculateFitness(rasterizer, parent, compositeCache, evaluationReference, minFitness);
+			}
+			else {
+				newImage.recalculateFitness(rasterizer, evaluationReference, minFitness);
+			}
+			countEarlyAbort(newImage);
+			
+			// Only exact fitness values are cached, not the bounds of rejected offspring
+			if(cache != null && !newImage.isFitnessEstimated()) {
+				cache.put(newImage, genomeHash);
+			}
+		}
+		
+		private void countEarlyAbort(ShapeImage newImage) {
+			if(newImage.isFitnessEstimated()) {
+				earlyAborts++;
+			}
+		}
+	}
 }
@@ -0,0 +1,47 @@
+package com.github.boemma.genetic.algorithm;
+
+import java.util.SplittableRandom;
+
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+import com.github.boemma.image.ImageSource;
+import com.github.boemma.image.ShapeRasterizer;
+
+/**
+ * Hill climbing evolution of shape images. Every step breeds one mutated copy
+ * of the parent, which replaces the parent if it is at least as fit. Accepting
+ * equally fit offspring lets the genome drift across plateaus, where mutations
+ * of hidden shapes do not change the image.
+ *
+ * Offspring are bred and evaluated one at a time on the calling thread, and a
+ * run can be reproduced exactly from the seed of the settings.
+ *
+ * @author BoEmma
+ *
+ */
+public class HillClimbingEvolution extends SingleParentEvolution {
+
+	private final ShapeRasterizer rasterizer;
+	private final SplittableRandom random;
+
+	/**
+	 * Create a new hill climbing evolution towards the given reference image.
+	 * @param referenceImage - image to compare shape images with
+	 * @param settings - algorithm settings, the population size is the number of random
+	 * 					individuals the initial parent is chosen from
+	 */
+	public HillClimbingEvolution(ImageSource referenceImage, EvolutionSettings settings) {
+		super(referenceImage, settings);
+		rasterizer = new ShapeRasterizer(imageWidth, imageHeight);
+		random = seedRandom.split();
+	}
+
+	@Override
+	ShapeImage step(ShapeImage parent) {
+		ShapeImage offspring = breed(parent, rasterizer, random, parent.getFitness());
+		addEvaluations(1);
+		if(!offspring.isFitnessEstimated() && offspring.getFitness() >= parent.getFitness()) {
+			return offspring;
+		}
+		return parent;
+	}
+}
@@ -0,0 +1,195 @@
+package com.github.boemma.genetic.algorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+import com.github.boemma.image.FitnessReference;
+import com.github.boemma.image.ImageSource;
+
+/**
+ * Island model evolution of shape images. A number of islands, each a
+ * {@link GeneticAlgorithm} with a population of its own, evolve independently on
+ * their own threads. Every migration interval, an island publishes its fittest
+ * individuals, and takes in the latest migrants published by the islands
+ * connected to it, replacing its least fit individuals.
+ *
+ * Migrants are handed over through one atomic reference per island, which is
+ * simply overwritten by newer migrants, so islands never wait for each other.
+ * Since individuals are never changed once evaluated, they can be shared between islands.
+ *
+ * @author BoEmma
+ *
+ */
+public class IslandEvolution {
+
+	private final GeneticAlgorithm[] islands;
+	private final int migrationInterval;
+	private final int migrantCount;
+	private final MigrationTopology topology;
+
+	/** Latest migrants published by each island, null until the first migration */
+	private final List<AtomicReference<ShapeImage[]>> outboxes = new ArrayList<>();
+	/** Fittest individual of all islands so far */
+	private final AtomicReference<ShapeImage> fittest = new AtomicReference<>();
+
+	private volatile boolean stopped = false;
+
+	/**
+	 * Create a new island model evolution towards the given reference image. Every island
+	 * gets a population of the size given by the settings, and runs on a thread of its own.
+	 * @param referenceImage - image to compare shape images with
+	 * @param settings - algorithm settings of every island, the thread count is not used
+	 * @param islandCount - number of islands
+	 * @param migrationInterval - number of generations between migrations
+	 * @param migrantCount - number of individuals sent by an island on every migration
+	 * @param topology - which islands receive the migrants of an island
+	 */
+	public IslandEvolution(ImageSource referenceImage, EvolutionSettings settings, int islandCount,
+			int migrationInterval, int migrantCount, MigrationTopology topology) {
+		if(islandCount < 1) {
+			throw new IllegalArgumentException("Island count " + islandCount + " must be at least 1!");
+		}
+		if(migrationInterval < 1) {
+			throw new IllegalArgumentException("Migration interval " + migrationInterval + " must be at least 1!");
+		}
+		if(migrantCount < 0 || migrantCount >= settings.getPopulationSize()) {
+			throw new IllegalArgumentException("Migrant count " + migrantCount
+					+ " must be at least 0 and less than the population size!");
+		}
+		this.migrationInterval = migrationInterval;
+		this.migrantCount = migrantCount;
+		this.topology = topology;
+
+		SplittableRandom seedRandom = new SplittableRandom(settings.getSeed());
+		FitnessReference reference = settings.getFitnessFunction().prepare(referenceImage);
+		islands = new GeneticAlgorithm[islandCount];
+		for (int i = 0; i < islandCount; i++) {
+			EvolutionSettings islandSettings = new EvolutionSettings()
+					.setPopulationSize(settings.getPopulationSize())
+					.setNumberOfGenes(settings.getNumberOfGenes())
+					.setMutationRate(settings.getMutationRate())
+					.setTournamentSize(settings.getTournamentSize())
+					.setThreadCount(1)
+					.setSeed(seedRandom.nextLong())
+					.setFitnessFunction(settings.getFitnessFunction());
+			islands[i] = new GeneticAlgorithm(reference, islandSettings, null);
+			outboxes.add(new AtomicReference<>());
+			updateFittest(islands[i].getFittest());
+		}
+	}
+
+	/**
+	 * Runs all islands until the stop condition is reached, or {@link #stop()} is called.
+	 * The generations of the stop condition are counted per island, and the similarity
+	 * is the one of the fittest individual of all islands.
+	 * @param stopCondition - when to stop
+	 * @return fittest shape image of all islands
+	 */
+	public ShapeImage run(StopCondition stopCondition) {
+		ExecutorService executor = Executors.newFixedThreadPool(islands.length, new WorkerThreadFactory());
+		try {
+			long start = System.currentTimeMillis();
+			List<Callable<Void>> tasks = new ArrayList<>();
+			for (int i = 0; i < islands.length; i++) {
+				int island = i;
+				tasks.add(() -> {
+					runIsland(island, stopCondition, start);
+					return null;
+				});
+			}
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running islands", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to run island", e.getCause());
+		} finally {
+			stopped = true;
+			executor.shutdownNow();
+		}
+		return getFittest();
+	}
+
+	/**
+	 * Runs the generations of one island, migrating every migration interval.
+	 */
+	private void runIsland(int island, StopCondition stopCondition, long start) {
+		GeneticAlgorithm evolution = islands[island];
+		ShapeImage[][] received = new ShapeImage[islands.length][];
+
+		while(!stopped && !stopCondition.isReached(evolution.getGeneration(),
+				System.currentTimeMillis() - start, fittest.get().getFitness())) {
+			updateFittest(evolution.runOneGeneration());
+
+			if(migrantCount > 0 && evolution.getGeneration() % migrationInterval == 0) {
+				outboxes.get(island).set(evolution.getFittest(migrantCount));
+				for (int source = 0; source < islands.length; source++) {
+					ShapeImage[] migrants = outboxes.get(source).get();
+					if(migrants != null && migrants != received[source]
+							&& topology.isConnected(source, island, islands.length)) {
+						evolution.immigrate(migrants);
+						received[source] = migrants;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replaces the fittest individual of all islands if the given one is fitter.
+	 */
+	private void updateFittest(ShapeImage candidate) {
+		ShapeImage current = fittest.get();
+		while((current == null || candidate.getFitness() > current.getFitness())
+				&& !fittest.compareAndSet(current, candidate)) {
+			current = fittest.get();
+		}
+	}
+
+	/**
+	 * Asks all islands to stop after their current generation. Can be called from any thread.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * Returns the fittest individual of all islands so far. Can be called from
+	 * any thread while the islands are running.
+	 * @return shape image with highest fitness
+	 */
+	public ShapeImage getFittest() {
+		return fittest.get();
+	}
+
+	/**
+	 * Returns the total number of generations run by all islands. Only
+	 * exact when the islands are not running.
+	 * @return sum of the generation counters of the islands
+	 */
+	public long getGeneration() {
+		long generations = 0;
+		for (GeneticAlgorithm island : islands) {
+			generations += island.getGeneration();
+		}
+		return generations;
+	}
+
+	/**
+	 * Returns the number of islands.
+	 * @return island count
+	 */
+	public int getIslandCount() {
+		return islands.length;
+	}
+}
@@ -0,0 +1,35 @@
+package com.github.boemma.genetic.algorithm;
+
+/**
+ * Decides which islands of an {@link IslandEvolution} receive the migrants
+ * of an island.
+ * 
+ * @author BoEmma
+ *
+ */
+public enum MigrationTopology {
+
+	/** Every island receives migrants from the island before it, and the first one from the last one */
+	RING,
+	/** Every island receives migrants from all other islands */
+	FULLY_CONNECTED;
+	
+	/**
+	 * Checks if an island receives migrants from another island.
+	 * @param source - index of the island sending migrants
+	 * @param target - index of the island receiving migrants
+	 * @param islandCount - number of islands
+	 * @return true if the target island receives migrants from the source island
+	 */
+	public boolean isConnected(int source, int target, int islandCount) {
+		if(source == target) {
+			return false;
+		}
+		switch (this) {
+		case RING:
+			return (source + 1) % islandCount == target;
+		default:
+			return true;
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package com.github.boemma.genetic.algorithm;
+
+import java.util.SplittableRandom;
+
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+import com.github.boemma.image.FitnessReference;
+import com.github.boemma.image.ImageSource;
+import com.github.boemma.image.ShapeRasterizer;
+
+/**
+ * Base class of evolution engines improving a single parent by mutation only,
+ * without a population or crossover. Every step breeds mutated copies of the parent
+ * with the mutation operator of a {@link GeneticAlgorithm}, and a subclass decides
+ * whether one of them becomes the new parent.
+ *
+ * Offspring differ from their parent in a few genes only, so they are always
+ * evaluated incrementally, repainting and comparing just the tiles covered by the
+ * mutated genes. The evaluation is also stopped as soon as the offspring is known
+ * to fall below the fitness it needs to be accepted.
+ *
+ * The initial parent is the fittest of a random population of the size given by
+ * the settings.
+ *
+ * @author BoEmma
+ *
+ */
+public abstract class SingleParentEvolution implements EvolutionEngine {
+
+	/** Genetic algorithm providing the initial population and the mutation operator */
+	final GeneticAlgorithm operators;
+	/** The reference image prepared for the fitness function of the settings */
+	final FitnessReference reference;
+	final int imageWidth;
+	final int imageHeight;
+	/** Random source the random sources of the steps are taken or split from */
+	final SplittableRandom seedRandom;
+
+	/** Individual the offspring of the next step are bred from */
+	private volatile ShapeImage parent;
+	/** Fittest individual so far, which may have been replaced as parent by a less fit one */
+	private volatile ShapeImage fittest;
+	private volatile long evaluations;
+
+	private volatile boolean stopped = false;
+
+	/**
+	 * Create a new single parent evolution towards the given reference image.
+	 * @param referenceImage - image to compare shape images with
+	 * @param settings - algorithm settings, the population size is the number of random
+	 * 					individuals the initial parent is chosen from
+	 */
+	protected SingleParentEvolution(ImageSource referenceImage, EvolutionSettings settings) {
+		EvolutionSettings operatorSettings = new EvolutionSettings()
+				.setPopulationSize(settings.getPopulationSize())
+				.setNumberOfGenes(settings.getNumberOfGenes())
+				.setMutationRate(settings.getMutationRate())
+				.setThreadCount(1)
+				.setSeed(settings.getSeed())
+				.setFitnessFunction(settings.getFitnessFunction());
+		operators = new GeneticAlgorithm(referenceImage, operatorSettings, null);
+		ShapeImage initial = operators.getFittest();
+		reference = initial.getFitnessReference();
+		imageWidth = referenceImage.getWidth();
+		imageHeight = referenceImage.getHeight();
+		seedRandom = new SplittableRandom(settings.getSeed() ^ 0x5DEECE66DL);
+
+		// Evaluated again, to keep its render for the incremental evaluation of its offspring
+		parent = new ShapeImage(initial.getShapes(), 0, reference);
+		parent.recalculateFitness(new ShapeRasterizer(imageWidth, imageHeight), null);
+		fittest = parent;
+	}
+
+	/**
+	 * Runs steps until the stop condition is reached, or {@link #stop()} is called.
+	 * The generations of the stop condition are counted as evaluations.
+	 * @param stopCondition - when to stop
+	 * @return fittest shape image
+	 */
+	@Override
+	public ShapeImage run(StopCondition stopCondition) {
+		stopped = false;
+		long start = System.currentTimeMillis();
+		while(!stopped && !stopCondition.isReached(evaluations, System.currentTimeMillis() - start, fittest.getFitness())) {
+			ShapeImage newParent = step(parent);
+			if(newParent != parent) {
+				parent = newParent;
+				if(newParent.getFitness() > fittest.getFitness()) {
+					fittest = newParent;
+				}
+			}
+		}
+		return fittest;
+	}
+
+	/**
+	 * Breeds and evaluates the offspring of one step, counting them with
+	 * {@link #addEvaluations(int)}, and decides which individual is the next parent.
+	 * @param parent - current parent
+	 * @return the next parent, the given one if no offspring was accepted
+	 */
+	abstract ShapeImage step(ShapeImage parent);
+
+	/**
+	 * Breeds a copy of the given parent with at least one mutated gene, and evaluates
+	 * it incrementally from the parent. The evaluation stops early once the offspring is
+	 * known to be below the given minimum fitness, see {@link ShapeImage#isFitnessEstimated()}.
+	 * @param parent - parent with a kept render
+	 * @param rasterizer - rasterizer with the size of the reference image
+	 * @param random - random source of the offspring
+	 * @param minFitness - fitness below which the offspring is rejected, 0 to always evaluate it exactly
+	 * @return evaluated offspring
+	 */
+	ShapeImage breed(ShapeImage parent, ShapeRasterizer rasterizer, SplittableRandom random, double minFitness) {
+		ShapeImage offspring = operators.recombine(parent, parent, random);
+		if(!operators.mutate(offspring, random)) {
+			// An unchanged copy would only be evaluated to the fitness of its parent,
+			// so mutate one gene, also with a mutation rate of 0
+			operators.mutateGene(offspring, random.nextInt(offspring.getShapes().length), random);
+		}
+		offspring.recalculateFitness(rasterizer, parent, reference, minFitness);
+		return offspring;
+	}
+
+	/**
+	 * Adds to the number of offspring evaluated. Only called by the thread running the steps.
+	 * @param count - number of offspring evaluated in a step
+	 */
+	void addEvaluations(int count) {
+		evaluations += count;
+	}
+
+	@Override
+	public void stop() {
+		stopped = true;
+	}
+
+	@Override
+	public ShapeImage getFittest() {
+		return fittest;
+	}
+
+	/**
+	 * Returns the current parent, which may be less fit than the fittest individual so far.
+	 * @return current parent
+	 */
+	public ShapeImage getParent() {
+		return parent;
+	}
+
+	@Override
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+	/**
+	 * Does nothing, unless overridden by an engine with threads of its own.
+	 */
+	@Override
+	public void shutdown() {
+	}
+}
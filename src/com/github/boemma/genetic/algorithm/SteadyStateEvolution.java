@@ -0,0 +1,265 @@
+package com.github.boemma.genetic.algorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+import com.github.boemma.image.ImageSource;
+import com.github.boemma.image.ShapeRasterizer;
+
+/**
+ * Steady-state evolution of shape images. Instead of breeding a whole new 
+ * population every generation, every worker thread continuously selects two 
+ * parents by tournament, breeds and evaluates one offspring, and lets it replace
+ * the loser of a reverse tournament if the offspring is fitter. Workers never
+ * wait for each other, so slow evaluations do not hold up the other threads,
+ * and no new population is created.
+ *
+ * The population is an array of atomic references. An offspring replaces the
+ * loser with a compare-and-set, so if another worker replaced the same individual
+ * in the meantime, a new loser is drawn. Since individuals are never changed once
+ * evaluated, they can be read by all workers without locking.
+ *
+ * Progress is counted in evaluations. One generation of a {@link GeneticAlgorithm}
+ * corresponds to one evaluation less than the population size.
+ *
+ * The random sources of the workers are split from the seed of the settings, but
+ * the order in which the workers replace individuals depends on thread scheduling,
+ * so a run can only be reproduced exactly with a single thread.
+ *
+ * @author BoEmma
+ *
+ */
+public class SteadyStateEvolution implements EvolutionEngine {
+
+	/** Number of losers drawn for an offspring before giving up, if other workers keep replacing them */
+	private static final int MAX_REPLACEMENT_ATTEMPTS = 4;
+	
+	/** Genetic algorithm providing the initial population and the recombination and mutation operators */
+	private final GeneticAlgorithm operators;
+	private final AtomicReferenceArray<ShapeImage> population;
+	private final int tournamentSize;
+	private final int threadCount;
+	private final int imageWidth;
+	private final int imageHeight;
+	/** Random source the random sources of the workers are split from */
+	private final SplittableRandom seedRandom;
+	/** True if offspring are evaluated incrementally from their closest parent */
+	private volatile boolean incrementalEvaluation = false;
+	
+	/** Fittest individual so far */
+	private final AtomicReference<ShapeImage> fittest = new AtomicReference<>();
+	private final LongAdder evaluations = new LongAdder();
+	private final LongAdder replacements = new LongAdder();
+	
+	private volatile boolean stopped = false;
+	
+	/**
+	 * Create a new steady-state evolution towards the given reference image, with a
+	 * random initial population of the size given by the settings.
+	 * @param referenceImage - image to compare shape images with
+	 * @param settings - algorithm settings, the thread count is the number of workers
+	 */
+	public SteadyStateEvolution(ImageSource referenceImage, EvolutionSettings settings) {
+		if(settings.getPopulationSize() < 2) {
+			throw new IllegalArgumentException("Population size " + settings.getPopulationSize() + " must be at least 2!");
+		}
+		EvolutionSettings operatorSettings = new EvolutionSettings()
+				.setPopulationSize(settings.getPopulationSize())
+				.setNumberOfGenes(settings.getNumberOfGenes())
+				.setMutationRate(settings.getMutationRate())
+				.setTournamentSize(settings.getTournamentSize())
+				.setThreadCount(1)
+				.setSeed(settings.getSeed())
+				.setFitnessFunction(settings.getFitnessFunction());
+		operators = new GeneticAlgorithm(referenceImage, operatorSettings, null);
+		population = new AtomicReferenceArray<>(operators.getFittest(settings.getPopulationSize()));
+		fittest.set(population.get(0));
+		tournamentSize = settings.getTournamentSize();
+		threadCount = Math.max(1, settings.getThreadCount());
+		imageWidth = referenceImage.getWidth();
+		imageHeight = referenceImage.getHeight();
+		seedRandom = new SplittableRandom(settings.getSeed() ^ 0x5DEECE66DL);
+	}
+	
+	/**
+	 * Makes offspring be evaluated incrementally from the parent they share the most
+	 * genes with, see {@link GeneticAlgorithm#setIncrementalEvaluation(boolean)}.
+	 * @param incrementalEvaluation - true to enable incremental evaluation
+	 */
+	public void setIncrementalEvaluation(boolean incrementalEvaluation) {
+		this.incrementalEvaluation = incrementalEvaluation;
+	}
+	
+	/**
+	 * Runs the workers until the stop condition is reached, or {@link #stop()} is called.
+	 * The generations of the stop condition are counted as evaluations.
+	 * @param stopCondition - when to stop
+	 * @return fittest shape image
+	 */
+	@Override
+	public ShapeImage run(StopCondition stopCondition) {
+		stopped = false;
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount, new WorkerThreadFactory());
+		try {
+			long start = System.currentTimeMillis();
+			List<Callable<Void>> tasks = new ArrayList<>();
+			for (int i = 0; i < threadCount; i++) {
+				SplittableRandom random = seedRandom.split();
+				tasks.add(() -> {
+					runWorker(random, stopCondition, start);
+					return null;
+				});
+			}
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running workers", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to run worker", e.getCause());
+		} finally {
+			stopped = true;
+			executor.shutdownNow();
+		}
+		return getFittest();
+	}
+	
+	/**
+	 * Breeds, evaluates and inserts offspring until stopped.
+	 */
+	private void runWorker(SplittableRandom random, StopCondition stopCondition, long start) {
+		ShapeRasterizer rasterizer = new ShapeRasterizer(imageWidth, imageHeight);
+		while(!stopped && !stopCondition.isReached(evaluations.sum(),
+				System.currentTimeMillis() - start, fittest.get().getFitness())) {
+			ShapeImage image1 = selectParent(random);
+			ShapeImage image2 = selectParent(random);
+			ShapeImage newImage = operators.recombine(image1, image2, random);
+			operators.mutate(newImage, random);
+			
+			if(incrementalEvaluation) {
+				ShapeImage parent = newImage.countSharedGenes(image1) >= newImage.countSharedGenes(image2) ? image1 : image2;
+				newImage.recalculateFitness(rasterizer, parent);
+			}
+			else {
+				newImage.recalculateFitness(rasterizer);
+			}
+			evaluations.increment();
+			
+			if(replaceLoser(newImage, random)) {
+				replacements.increment();
+				updateFittest(newImage);
+			}
+		}
+	}
+	
+	/**
+	 * Selects the fittest of a number of randomly chosen individuals.
+	 */
+	private ShapeImage selectParent(SplittableRandom random) {
+		ShapeImage winner = null;
+		for (int i = 0; i < tournamentSize; i++) {
+			ShapeImage candidate = population.get(random.nextInt(population.length()));
+			if(winner == null || winner.getFitness() < candidate.getFitness()) {
+				winner = candidate;
+			}
+		}
+		return winner;
+	}
+	
+	/**
+	 * Replaces the least fit of a number of randomly chosen individuals with the given
+	 * offspring, if the offspring is fitter.
+	 * @return true if the offspring was inserted into the population
+	 */
+	private boolean replaceLoser(ShapeImage offspring, SplittableRandom random) {
+		for (int attempt = 0; attempt < MAX_REPLACEMENT_ATTEMPTS; attempt++) {
+			int loserIndex = -1;
+			ShapeImage loser = null;
+			for (int i = 0; i < tournamentSize; i++) {
+				int index = random.nextInt(population.length());
+				ShapeImage candidate = population.get(index);
+				if(loser == null || candidate.getFitness() < loser.getFitness()) {
+					loser = candidate;
+					loserIndex = index;
+				}
+			}
+			if(offspring.getFitness() <= loser.getFitness()) {
+				return false;
+			}
+			if(population.compareAndSet(loserIndex, loser, offspring)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Replaces the fittest individual so far if the given one is fitter.
+	 */
+	private void updateFittest(ShapeImage candidate) {
+		ShapeImage current = fittest.get();
+		while(candidate.getFitness() > current.getFitness() && !fittest.compareAndSet(current, candidate)) {
+			current = fittest.get();
+		}
+	}
+	
+	/**
+	 * Asks all workers to stop after their current offspring. Can be called from any thread.
+	 */
+	@Override
+	public void stop() {
+		stopped = true;
+	}
+	
+	/**
+	 * Returns the fittest individual so far. Can be called from any thread while running.
+	 * @return shape image with highest fitness
+	 */
+	@Override
+	public ShapeImage getFittest() {
+		return fittest.get();
+	}
+	
+	/**
+	 * Returns the number of offspring evaluated so far.
+	 * @return evaluation count
+	 */
+	@Override
+	public long getEvaluations() {
+		return evaluations.sum();
+	}
+	
+	/**
+	 * Does nothing, since the worker threads only live while running.
+	 */
+	@Override
+	public void shutdown() {
+	}
+	
+	/**
+	 * Returns the number of offspring which have replaced an individual of the population.
+	 * @return replacement count
+	 */
+	public long getReplacements() {
+		return replacements.sum();
+	}
+	
+	/**
+	 * Returns the size of the population.
+	 * @return population size
+	 */
+	public int getPopulationSize() {
+		return population.length();
+	}
+}
@@ -0,0 +1,63 @@
+package com.github.boemma.genetic.algorithm;
+
+/**
+ * Decides when an evolution run should stop: after a maximum number of 
+ * generations, after a maximum wall time, or when the fittest individual 
+ * reaches a target similarity, whichever comes first.
+ * 
+ * @author BoEmma
+ *
+ */
+public class StopCondition {
+
+	private final long maxGenerations;
+	private final long maxMillis;
+	private final double targetSimilarity;
+	
+	/**
+	 * Create a new stop condition.
+	 * @param maxGenerations - maximum number of generations, or Long.MAX_VALUE for no limit
+	 * @param maxMillis - maximum wall time in milliseconds, or Long.MAX_VALUE for no limit
+	 * @param targetSimilarity - similarity in percent to stop at, or 100 to run until the limits
+	 */
+	public StopCondition(long maxGenerations, long maxMillis, double targetSimilarity) {
+		this.maxGenerations = maxGenerations;
+		this.maxMillis = maxMillis;
+		this.targetSimilarity = targetSimilarity;
+	}
+	
+	/**
+	 * Checks if a run should stop.
+	 * @param generations - number of completed generations
+	 * @param elapsedMillis - wall time since the start of the run in milliseconds
+	 * @param similarity - similarity of the fittest individual in percent
+	 * @return true if the run should stop
+	 */
+	public boolean isReached(long generations, long elapsedMillis, double similarity) {
+		return generations >= maxGenerations || elapsedMillis >= maxMillis || similarity >= targetSimilarity;
+	}
+	
+	/**
+	 * Get the maximum number of generations.
+	 * @return maximum number of generations
+	 */
+	public long getMaxGenerations() {
+		return maxGenerations;
+	}
+	
+	/**
+	 * Get the maximum wall time in milliseconds.
+	 * @return maximum wall time
+	 */
+	public long getMaxMillis() {
+		return maxMillis;
+	}
+	
+	/**
+	 * Get the similarity in percent to stop at.
+	 * @return target similarity
+	 */
+	public double getTargetSimilarity() {
+		return targetSimilarity;
+	}
+}
@@ -0,0 +1,23 @@
+package com.github.boemma.genetic.algorithm;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates daemon worker threads, so that running workers never keep 
+ * the application alive.
+ * 
+ * @author BoEmma
+ *
+ */
+public class WorkerThreadFactory implements ThreadFactory {
+	
+	private static final AtomicInteger threadNumber = new AtomicInteger();
+	
+	@Override
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "genetic-algorithm-worker-" + threadNumber.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+}
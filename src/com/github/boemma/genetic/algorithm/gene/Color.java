@@ -58,6 +58,25 @@ public class Color {
 		return alpha;
 	}
 	
+	@Override
+	public boolean equals(Object object) {
+		if(this == object) {
+			return true;
+		}
+		if(!(object instanceof Color)) {
+			return false;
+		}
+		Color other = (Color) object;
+		return red == other.red && green == other.green && blue == other.blue
+				&& Double.compare(alpha, other.alpha) == 0;
+	}
+	
+	@Override
+	public int hashCode() {
+		int hash = (red << 16) | (green << 8) | blue;
+		return 31 * hash + Double.hashCode(alpha);
+	}
+	
 	/**
 	 * Verifies that the given color value is the specified range.
 	 * @param value - color value
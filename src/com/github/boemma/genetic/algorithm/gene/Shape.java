@@ -1,5 +1,7 @@
 package com.github.boemma.genetic.algorithm.gene;
 
+import java.util.Arrays;
+
 /**
  * Representation of a shape with a position and a color.
  * In the genetic algorithm, this is a gene.
@@ -66,4 +68,28 @@ public class Shape {
 	public void setColor(Color color) {
 		this.color = color;
 	}
+	
+	/**
+	 * Two shapes are equal if they have the same corners and color,
+	 * meaning that they are painted identically.
+	 */
+	@Override
+	public boolean equals(Object object) {
+		if(this == object) {
+			return true;
+		}
+		if(!(object instanceof Shape)) {
+			return false;
+		}
+		Shape other = (Shape) object;
+		return Arrays.equals(xCoordinates, other.xCoordinates) && Arrays.equals(yCoordinates, other.yCoordinates)
+				&& color.equals(other.color);
+	}
+	
+	@Override
+	public int hashCode() {
+		int hash = Arrays.hashCode(xCoordinates);
+		hash = 31 * hash + Arrays.hashCode(yCoordinates);
+		return 31 * hash + color.hashCode();
+	}
 }
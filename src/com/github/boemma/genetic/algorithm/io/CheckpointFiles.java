@@ -0,0 +1,194 @@
+package com.github.boemma.genetic.algorithm.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import com.github.boemma.genetic.algorithm.EvolutionCheckpoint;
+import com.github.boemma.genetic.algorithm.EvolutionSettings;
+import com.github.boemma.genetic.algorithm.gene.Color;
+import com.github.boemma.genetic.algorithm.gene.Shape;
+import com.github.boemma.genetic.algorithm.population.Population;
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+import com.github.boemma.image.FitnessFunctions;
+import com.github.boemma.image.FitnessReference;
+import com.github.boemma.image.ImageSource;
+
+/**
+ * Utility class for writing and reading checkpoints of a running evolution
+ * in a compact, versioned binary format. All values are big-endian.
+ *
+ * <pre>
+ * int    magic number 0x45534943 ("ESIC")
+ * int    format version
+ * int    image width, image height
+ * int    population size, number of genes
+ * double mutation rate
+ * int    tournament size, thread count
+ * long   seed, generation, random seed
+ * UTF    fitness function name (since version 2, absolute difference before)
+ * int    resolution pyramid downsampling factor (since version 3, 1 before)
+ * double fitness at the last improvement on the pyramid level (since version 3)
+ * long   generation of the last improvement on the pyramid level (since version 3)
+ * for each individual:
+ *   double fitness
+ *   genes, see {@link GenomeEncoding}
+ * </pre>
+ *
+ * Coordinates and alpha values are kept as doubles, so a restored evolution
+ * continues with exactly the same genes.
+ *
+ * @author BoEmma
+ *
+ */
+public class CheckpointFiles {
+
+	private static final int MAGIC = 0x45534943;
+	private static final int VERSION = 3;
+
+	/**
+	 * Writes the given checkpoint to a file. The checkpoint is first written to a
+	 * temporary file next to it, which then replaces the file, so an older checkpoint
+	 * is never lost by a write which is interrupted.
+	 * @param checkpoint - checkpoint to write
+	 * @param file - file to write to
+	 * @throws IOException if the file can not be written
+	 */
+	public static void write(EvolutionCheckpoint checkpoint, File file) throws IOException {
+		File temporaryFile = new File(file.getPath() + ".tmp");
+		try (OutputStream stream = Files.newOutputStream(temporaryFile.toPath());
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+			write(checkpoint, out);
+		}
+		try {
+			Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void write(EvolutionCheckpoint checkpoint, DataOutputStream out) throws IOException {
+		EvolutionSettings settings = checkpoint.getSettings();
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(checkpoint.getImageWidth());
+		out.writeInt(checkpoint.getImageHeight());
+		out.writeInt(settings.getPopulationSize());
+		out.writeInt(settings.getNumberOfGenes());
+		out.writeDouble(settings.getMutationRate());
+		out.writeInt(settings.getTournamentSize());
+		out.writeInt(settings.getThreadCount());
+		out.writeLong(settings.getSeed());
+		out.writeLong(checkpoint.getGeneration());
+		out.writeLong(checkpoint.getRandomSeed());
+		out.writeUTF(settings.getFitnessFunction().getName());
+		out.writeInt(checkpoint.getResolutionFactor());
+		out.writeDouble(checkpoint.getImprovedFitness());
+		out.writeLong(checkpoint.getImprovedGeneration());
+
+		Population population = checkpoint.getPopulation();
+		for (int i = 0; i < population.getSize(); i++) {
+			ShapeImage shapeImage = population.getShapeImageIndividual(i);
+			out.writeDouble(shapeImage.getFitness());
+			GenomeEncoding.write(shapeImage.getShapes(), out);
+		}
+	}
+
+	/**
+	 * Reads a checkpoint from a file, by memory mapping it.
+	 * @param file - file to read from
+	 * @param referenceImage - image the individuals of the checkpoint are compared with
+	 * @return checkpoint
+	 * @throws IOException if the file can not be read, or is not a valid checkpoint
+	 */
+	public static EvolutionCheckpoint read(File file, ImageSource referenceImage) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return read(buffer, referenceImage);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated checkpoint: " + file, e);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid checkpoint: " + file + ": " + e.getMessage(), e);
+		}
+	}
+
+	private static EvolutionCheckpoint read(ByteBuffer buffer, ImageSource referenceImage) throws IOException {
+		if(buffer.getInt() != MAGIC) {
+			throw new IOException("Not a checkpoint file");
+		}
+		int version = buffer.getInt();
+		if(version < 1 || version > VERSION) {
+			throw new IOException("Unsupported checkpoint version " + version);
+		}
+		int imageWidth = buffer.getInt();
+		int imageHeight = buffer.getInt();
+		EvolutionSettings settings = new EvolutionSettings()
+				.setPopulationSize(buffer.getInt())
+				.setNumberOfGenes(buffer.getInt())
+				.setMutationRate(buffer.getDouble())
+				.setTournamentSize(buffer.getInt())
+				.setThreadCount(buffer.getInt())
+				.setSeed(buffer.getLong());
+		long generation = buffer.getLong();
+		long randomSeed = buffer.getLong();
+		if(version >= 2) {
+			settings.setFitnessFunction(FitnessFunctions.forName(readUTF(buffer)));
+		}
+		int resolutionFactor = 1;
+		double improvedFitness = 0;
+		long improvedGeneration = generation;
+		if(version >= 3) {
+			resolutionFactor = buffer.getInt();
+			improvedFitness = buffer.getDouble();
+			improvedGeneration = buffer.getLong();
+		}
+		FitnessReference reference = settings.getFitnessFunction().prepare(referenceImage);
+
+		int numberOfGenes = settings.getNumberOfGenes();
+		if(buffer.remaining() < (long) settings.getPopulationSize() * (8 + (long) numberOfGenes * GenomeEncoding.MIN_GENE_BYTES)) {
+			throw new IOException("Truncated checkpoint");
+		}
+		Population population = new Population(settings.getPopulationSize());
+		for (int i = 0; i < population.getSize(); i++) {
+			double fitness = buffer.getDouble();
+			Shape[] shapes = new Shape[numberOfGenes];
+			for (int j = 0; j < numberOfGenes; j++) {
+				int corners = buffer.get() & 0xFF;
+				double[] xCoordinates = new double[corners];
+				double[] yCoordinates = new double[corners];
+				for (int k = 0; k < corners; k++) {
+					xCoordinates[k] = buffer.getDouble();
+				}
+				for (int k = 0; k < corners; k++) {
+					yCoordinates[k] = buffer.getDouble();
+				}
+				int rgb = buffer.getInt();
+				Color color = new Color((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF, buffer.getDouble());
+				shapes[j] = new Shape(xCoordinates, yCoordinates, color);
+			}
+			population.setShapeImage(i, new ShapeImage(shapes, fitness, reference));
+		}
+		return new EvolutionCheckpoint(settings, generation, randomSeed, population, imageWidth, imageHeight,
+				resolutionFactor, improvedFitness, improvedGeneration);
+	}
+
+	/**
+	 * Reads a string written with {@link DataOutputStream#writeUTF(String)}, 
+	 * which for the plain ASCII names written here is the same as UTF-8.
+	 */
+	private static String readUTF(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
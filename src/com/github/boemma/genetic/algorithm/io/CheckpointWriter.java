@@ -0,0 +1,126 @@
+package com.github.boemma.genetic.algorithm.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.github.boemma.genetic.algorithm.EvolutionCheckpoint;
+import com.github.boemma.genetic.algorithm.GeneticAlgorithm;
+
+/**
+ * Periodically writes checkpoints of a running evolution to a file, on a
+ * background thread. Taking a checkpoint only shares the current population,
+ * so the generation loop is not paused while the checkpoint is written.
+ *
+ * A writer is used by the thread running the generations, between generations.
+ * Call {@link #close()} when done, to wait for the last checkpoint to be written.
+ *
+ * @author BoEmma
+ *
+ */
+public class CheckpointWriter implements AutoCloseable {
+
+	private final File file;
+	private final long intervalMillis;
+
+	private final ExecutorService writerThread = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "checkpoint-writer");
+		thread.setDaemon(true);
+		return thread;
+	});
+	/** Checkpoint currently being written, null if none has been started */
+	private Future<?> pendingWrite;
+	/** Time when the last checkpoint was taken */
+	private long lastCheckpointMillis;
+	/** Error of the last failed write, null if none failed */
+	private volatile IOException lastError;
+
+	/**
+	 * Create a new checkpoint writer.
+	 * @param file - file to write checkpoints to, replaced by every new checkpoint
+	 * @param intervalMillis - minimum time between checkpoints in milliseconds
+	 */
+	public CheckpointWriter(File file, long intervalMillis) {
+		if(intervalMillis < 0) {
+			throw new IllegalArgumentException("Checkpoint interval " + intervalMillis + " can not be negative!");
+		}
+		this.file = file;
+		this.intervalMillis = intervalMillis;
+		this.lastCheckpointMillis = System.currentTimeMillis();
+	}
+
+	/**
+	 * Takes a checkpoint of the given genetic algorithm and starts writing it,
+	 * if the checkpoint interval has passed and the previous checkpoint has
+	 * been written. Returns immediately.
+	 * @param evolution - genetic algorithm to take a checkpoint of
+	 * @return true if a checkpoint was taken
+	 */
+	public boolean checkpointIfDue(GeneticAlgorithm evolution) {
+		long now = System.currentTimeMillis();
+		if(now - lastCheckpointMillis < intervalMillis || (pendingWrite != null && !pendingWrite.isDone())) {
+			return false;
+		}
+		startWrite(evolution.createCheckpoint());
+		lastCheckpointMillis = now;
+		return true;
+	}
+
+	/**
+	 * Takes a checkpoint of the given genetic algorithm and starts writing it,
+	 * after waiting for the previous checkpoint to be written.
+	 * @param evolution - genetic algorithm to take a checkpoint of
+	 */
+	public void checkpoint(GeneticAlgorithm evolution) {
+		awaitPendingWrite();
+		startWrite(evolution.createCheckpoint());
+		lastCheckpointMillis = System.currentTimeMillis();
+	}
+
+	private void startWrite(EvolutionCheckpoint checkpoint) {
+		pendingWrite = writerThread.submit(() -> {
+			try {
+				CheckpointFiles.write(checkpoint, file);
+			} catch (IOException e) {
+				lastError = e;
+			}
+		});
+	}
+
+	private void awaitPendingWrite() {
+		if(pendingWrite == null) {
+			return;
+		}
+		try {
+			pendingWrite.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			lastError = new IOException("Failed to write checkpoint " + file, e.getCause());
+		}
+	}
+
+	/**
+	 * Waits for the last checkpoint to be written and stops the background thread.
+	 * @throws IOException if writing any of the checkpoints failed
+	 */
+	@Override
+	public void close() throws IOException {
+		awaitPendingWrite();
+		writerThread.shutdown();
+		if(lastError != null) {
+			throw lastError;
+		}
+	}
+
+	/**
+	 * Returns the file checkpoints are written to.
+	 * @return checkpoint file
+	 */
+	public File getFile() {
+		return file;
+	}
+}
@@ -0,0 +1,84 @@
+package com.github.boemma.genetic.algorithm.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.github.boemma.genetic.algorithm.gene.Color;
+import com.github.boemma.genetic.algorithm.gene.Shape;
+
+/**
+ * Utility class for the binary encoding of the genes of a shape image, used by
+ * checkpoint files and by remote evaluation. All values are big-endian.
+ *
+ * <pre>
+ * for each gene:
+ *   byte   number of corners n
+ *   double x-coordinates[n], y-coordinates[n]
+ *   int    color as 0xRRGGBB
+ *   double alpha
+ * </pre>
+ *
+ * Coordinates and alpha values are kept as doubles, so decoded genes are
+ * exactly the same as the encoded ones.
+ *
+ * @author BoEmma
+ *
+ */
+public class GenomeEncoding {
+
+	/** Size of a gene without coordinates */
+	static final int MIN_GENE_BYTES = 1 + 4 + 8;
+
+	private GenomeEncoding() {
+	}
+
+	/**
+	 * Writes the given genes.
+	 * @param shapes - genes to write
+	 * @param out - output to write to
+	 * @throws IOException if writing fails
+	 */
+	public static void write(Shape[] shapes, DataOutput out) throws IOException {
+		for (Shape shape : shapes) {
+			double[] xCoordinates = shape.getXCoordinates();
+			double[] yCoordinates = shape.getYCoordinates();
+			out.writeByte(xCoordinates.length);
+			for (double x : xCoordinates) {
+				out.writeDouble(x);
+			}
+			for (double y : yCoordinates) {
+				out.writeDouble(y);
+			}
+			Color color = shape.getColor();
+			out.writeInt((color.getRed() << 16) | (color.getGreen() << 8) | color.getBlue());
+			out.writeDouble(color.getAlpha());
+		}
+	}
+
+	/**
+	 * Reads the given number of genes.
+	 * @param numberOfGenes - number of genes to read
+	 * @param in - input to read from
+	 * @return genes
+	 * @throws IOException if reading fails
+	 */
+	public static Shape[] read(int numberOfGenes, DataInput in) throws IOException {
+		Shape[] shapes = new Shape[numberOfGenes];
+		for (int i = 0; i < numberOfGenes; i++) {
+			int corners = in.readUnsignedByte();
+			double[] xCoordinates = new double[corners];
+			double[] yCoordinates = new double[corners];
+			for (int k = 0; k < corners; k++) {
+				xCoordinates[k] = in.readDouble();
+			}
+			for (int k = 0; k < corners; k++) {
+				yCoordinates[k] = in.readDouble();
+			}
+			int rgb = in.readInt();
+			Color color = new Color((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF, in.readDouble());
+			shapes[i] = new Shape(xCoordinates, yCoordinates, color);
+		}
+		return shapes;
+	}
+}
@@ -0,0 +1,109 @@
+package com.github.boemma.genetic.algorithm.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+
+import com.github.boemma.genetic.algorithm.GenerationListener;
+import com.github.boemma.genetic.algorithm.GenerationStatistics;
+
+/**
+ * Writes the statistics of the generations of a genetic algorithm to a CSV file,
+ * one row per generation, at most once every interval. Add it to a genetic algorithm
+ * with {@link com.github.boemma.genetic.algorithm.GeneticAlgorithm#addGenerationListener},
+ * and call {@link #close()} when done. Times are in microseconds, rates between 0 and 1.
+ * 
+ * @author BoEmma
+ *
+ */
+public class MetricsCsvWriter implements GenerationListener, AutoCloseable {
+
+	private static final String HEADER = "generation,wall_us,selection_us,recombination_us,mutation_us,"
+			+ "rasterization_us,comparison_us,evaluations,evaluations_per_second,allocated_bytes,"
+			+ "fitness_cache_hit_rate,composite_cache_hit_rate,promotion_rate,early_abort_rate,"
+			+ "highest_fitness,mean_fitness,lowest_fitness";
+	
+	private final File file;
+	private final Writer writer;
+	private final long intervalNanos;
+	
+	/** Time when the last row was written */
+	private long lastRowNanos;
+	/** Error of the first failed write, null if none failed */
+	private IOException error;
+	
+	/**
+	 * Create a new metrics writer, replacing the given file.
+	 * @param file - CSV file to write
+	 * @param intervalMillis - minimum time between rows in milliseconds, 0 to write every generation
+	 * @throws IOException if the file could not be created
+	 */
+	public MetricsCsvWriter(File file, long intervalMillis) throws IOException {
+		if(intervalMillis < 0) {
+			throw new IllegalArgumentException("Metrics interval " + intervalMillis + " can not be negative!");
+		}
+		this.file = file;
+		this.intervalNanos = intervalMillis * 1000000;
+		this.writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+		writer.write(HEADER);
+		writer.write('\n');
+		lastRowNanos = System.nanoTime() - intervalNanos;
+	}
+
+	@Override
+	public void generationCompleted(GenerationStatistics statistics) {
+		long now = System.nanoTime();
+		if(error != null || now - lastRowNanos < intervalNanos) {
+			return;
+		}
+		lastRowNanos = now;
+		try {
+			writer.write(String.format(Locale.ROOT, "%d,%d,%d,%d,%d,%d,%d,%d,%.1f,%d,%.4f,%.4f,%.4f,%.4f,%.6f,%.6f,%.6f\n",
+					statistics.getGeneration(),
+					statistics.getWallNanos() / 1000,
+					statistics.getSelectionNanos() / 1000,
+					statistics.getRecombinationNanos() / 1000,
+					statistics.getMutationNanos() / 1000,
+					statistics.getRasterizationNanos() / 1000,
+					statistics.getComparisonNanos() / 1000,
+					statistics.getEvaluations(),
+					statistics.getEvaluationsPerSecond(),
+					statistics.getAllocatedBytes(),
+					statistics.getFitnessCacheHitRate(),
+					statistics.getCompositeCacheHitRate(),
+					statistics.getSampledEvaluationPromotionRate(),
+					statistics.getEarlyAbortRate(),
+					statistics.getHighestFitness(),
+					statistics.getMeanFitness(),
+					statistics.getLowestFitness()));
+			if(intervalNanos > 0) {
+				writer.flush();
+			}
+		} catch (IOException e) {
+			error = e;
+		}
+	}
+
+	/**
+	 * Flushes and closes the file.
+	 * @throws IOException if writing any of the rows failed
+	 */
+	@Override
+	public void close() throws IOException {
+		writer.close();
+		if(error != null) {
+			throw new IOException("Failed to write metrics " + file, error);
+		}
+	}
+	
+	/**
+	 * Returns the file metrics are written to.
+	 * @return CSV file
+	 */
+	public File getFile() {
+		return file;
+	}
+}
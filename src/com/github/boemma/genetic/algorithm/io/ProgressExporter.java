@@ -0,0 +1,218 @@
+package com.github.boemma.genetic.algorithm.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+
+/**
+ * Exports the fittest shape image of a running evolution as numbered frames, for
+ * time-lapse sequences: a PNG image and a compact binary genome per frame, named
+ * after the generation, for example {@code name-00001200.png} and
+ * {@code name-00001200.genome}. A frame is exported every given number of
+ * generations, whenever the similarity has improved by a given amount since the
+ * last frame, or when a given time has passed since the last frame, whichever
+ * comes first. The similarity is given by the caller, so that only gains at full
+ * resolution are counted, and not those at the coarse levels of a resolution pyramid.
+ *
+ * Painting, encoding and writing the frames runs on a background thread. Frames
+ * waiting to be written are kept in a small queue, and when the disk falls behind,
+ * the oldest waiting frame is dropped, so the generation loop never waits for it.
+ * Frames only share the fittest shape image, whose genes are not modified anymore.
+ *
+ * An exporter is used by the thread running the generations, between generations.
+ * Call {@link #close()} when done, to wait for the waiting frames to be written.
+ *
+ * @author BoEmma
+ *
+ */
+public class ProgressExporter implements AutoCloseable {
+
+	/** Number of frames waiting to be written before the oldest is dropped */
+	public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+	/** Marks the end of the frames for the background thread */
+	private static final Frame END = new Frame(-1, null);
+	/** Time between checks if the background thread is still running, while waiting to queue the end marker */
+	private static final long END_RETRY_MILLIS = 100;
+
+	private final File directory;
+	private final String name;
+	private final long generationInterval;
+	private final double similarityGain;
+	private final long intervalMillis;
+
+	private final BlockingQueue<Frame> frames;
+	private final Thread writerThread;
+
+	/** Generation, similarity and time of the last exported frame */
+	private long lastGeneration = -1;
+	private double lastSimilarity;
+	private long lastExportMillis;
+	/** Number of frames dropped because the queue was full */
+	private long droppedFrames;
+	/** Error of the first failed write, null if none failed */
+	private volatile Exception error;
+
+	/**
+	 * Create a new progress exporter, writing frames to the given directory.
+	 * @param directory - directory to write the frames to, created if needed
+	 * @param name - name the frame files start with
+	 * @param generationInterval - generations between frames, 0 to not export frames by generation
+	 * @param similarityGain - improvement of the similarity in percent points between frames, 0 to not
+	 * 					export frames by improvement
+	 * @param intervalMillis - time between frames in milliseconds, negative to not export frames by time
+	 * @param queueCapacity - number of frames waiting to be written before the oldest is dropped
+	 * @throws IOException if the directory can not be created
+	 */
+	public ProgressExporter(File directory, String name, long generationInterval, double similarityGain,
+			long intervalMillis, int queueCapacity) throws IOException {
+		if(generationInterval < 0 || similarityGain < 0) {
+			throw new IllegalArgumentException("Frame intervals can not be negative!");
+		}
+		if(queueCapacity < 1) {
+			throw new IllegalArgumentException("Queue capacity must be at least 1!");
+		}
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Failed to create frame directory " + directory);
+		}
+		this.directory = directory;
+		this.name = name;
+		this.generationInterval = generationInterval;
+		this.similarityGain = similarityGain;
+		this.intervalMillis = intervalMillis;
+		this.frames = new ArrayBlockingQueue<>(queueCapacity);
+		this.lastExportMillis = System.currentTimeMillis();
+		writerThread = new Thread(this::writeFrames, "progress-exporter");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	/**
+	 * Exports the given fittest shape image if a frame is due for the given generation.
+	 * Returns immediately.
+	 * @param generation - generation the shape image is the fittest of
+	 * @param fittest - fittest shape image
+	 * @param similarity - similarity of the fittest shape image to the full resolution 
+	 * 					reference image in percent, 0 while not known
+	 * @return true if a frame was exported
+	 */
+	public boolean exportIfDue(long generation, ShapeImage fittest, double similarity) {
+		long now = System.currentTimeMillis();
+		if(generation == lastGeneration
+				|| !((generationInterval > 0 && generation % generationInterval == 0)
+						|| (similarityGain > 0 && similarity - lastSimilarity >= similarityGain)
+						|| (intervalMillis >= 0 && now - lastExportMillis >= intervalMillis))) {
+			return false;
+		}
+		export(generation, fittest, similarity);
+		return true;
+	}
+
+	/**
+	 * Exports the given fittest shape image, unless a frame of the same generation has
+	 * already been exported, for example the first and last frames of a run. Returns immediately.
+	 * @param generation - generation the shape image is the fittest of
+	 * @param fittest - fittest shape image
+	 * @param similarity - similarity of the fittest shape image to the full resolution 
+	 * 					reference image in percent, 0 while not known
+	 */
+	public void export(long generation, ShapeImage fittest, double similarity) {
+		if(generation == lastGeneration) {
+			return;
+		}
+		Frame frame = new Frame(generation, fittest);
+		// Make room by dropping the oldest frame, retrying in case the writer took one in between
+		while(!frames.offer(frame)) {
+			if(frames.poll() != null) {
+				droppedFrames++;
+			}
+		}
+		lastGeneration = generation;
+		lastSimilarity = similarity;
+		lastExportMillis = System.currentTimeMillis();
+	}
+
+	/**
+	 * Writes the queued frames until the end marker is taken. A frame which can not
+	 * be written is skipped, and the first error is reported by {@link #close()}.
+	 */
+	private void writeFrames() {
+		while(true) {
+			Frame frame;
+			try {
+				frame = frames.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if(frame == END) {
+				return;
+			}
+			String fileName = String.format(Locale.ROOT, "%s-%08d", name, frame.generation);
+			try {
+				ShapeImageFiles.writePng(frame.fittest, new File(directory, fileName + ".png"));
+				ShapeImageFiles.writeBinaryGenome(frame.fittest, new File(directory, fileName + ".genome"));
+			} catch (IOException | RuntimeException e) {
+				if(error == null) {
+					error = e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits for the waiting frames to be written and stops the background thread.
+	 * No frame is dropped to make room for the end marker, and closing only waits 
+	 * for room in the queue while the thread is still taking frames from it.
+	 * @throws IOException if writing any of the frames failed
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			while(writerThread.isAlive() && !frames.offer(END, END_RETRY_MILLIS, TimeUnit.MILLISECONDS)) {
+				// The queue is full, and the thread is still writing
+			}
+			writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			writerThread.interrupt();
+		}
+		if(error != null) {
+			throw new IOException("Failed to write frames to " + directory, error);
+		}
+	}
+
+	/**
+	 * Returns the number of frames dropped because they were exported faster than they could be written.
+	 * @return dropped frames
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames;
+	}
+
+	/**
+	 * Returns the directory frames are written to.
+	 * @return frame directory
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * The fittest shape image of a generation, waiting to be written.
+	 */
+	private static class Frame {
+
+		private final long generation;
+		private final ShapeImage fittest;
+
+		private Frame(long generation, ShapeImage fittest) {
+			this.generation = generation;
+			this.fittest = fittest;
+		}
+	}
+}
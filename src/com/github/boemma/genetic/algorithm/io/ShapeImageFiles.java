@@ -0,0 +1,323 @@
+package com.github.boemma.genetic.algorithm.io;
+
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Vector;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import com.github.boemma.genetic.algorithm.gene.Color;
+import com.github.boemma.genetic.algorithm.gene.Shape;
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+import com.github.boemma.image.PixelImage;
+import com.github.boemma.image.ShapeRasterizer;
+import com.github.boemma.image.TiledPixelImage;
+
+/**
+ * Utility class for reading reference images and writing shape images 
+ * to files, without any JavaFX dependency.
+ * 
+ * @author BoEmma
+ *
+ */
+public class ShapeImageFiles {
+
+	/** Largest number of pixels decoded or painted at once when streaming large images */
+	private static final int MAX_BAND_PIXELS = 1 << 22;
+
+	/**
+	 * Reads and decodes an image file into packed ARGB pixels.
+	 * @param file - image file in a format supported by ImageIO (png, jpg, gif, bmp)
+	 * @return decoded image
+	 * @throws IOException if the file can not be read or decoded
+	 */
+	public static PixelImage readImage(File file) throws IOException {
+		BufferedImage image = ImageIO.read(file);
+		if(image == null) {
+			throw new IOException("Unsupported image format: " + file);
+		}
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+		return new PixelImage(width, height, pixels);
+	}
+	
+	/**
+	 * Reads and decodes an image file into a {@link TiledPixelImage}, kept off the heap.
+	 * The image is decoded in bands of rows, so decoding takes the same memory for any 
+	 * size of the image. Formats which can not decode a band on its own, like PNG, decode
+	 * the rows above every band again, which takes longer than reading the whole image.
+	 * @param file - image file in a format supported by ImageIO (png, jpg, gif, bmp)
+	 * @return decoded image, with the same pixels as {@link #readImage(File)} decodes
+	 * @throws IOException if the file can not be read or decoded
+	 */
+	public static TiledPixelImage readTiledImage(File file) throws IOException {
+		try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+			Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+			if(readers == null || !readers.hasNext()) {
+				throw new IOException("Unsupported image format: " + file);
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(input);
+				int width = reader.getWidth(0);
+				int height = reader.getHeight(0);
+				TiledPixelImage image = new TiledPixelImage(width, height);
+				int bandRows = Math.max(TiledPixelImage.TILE_SIZE, 
+						MAX_BAND_PIXELS / width / TiledPixelImage.TILE_SIZE * TiledPixelImage.TILE_SIZE);
+				ImageReadParam param = reader.getDefaultReadParam();
+				int[] pixels = null;
+				for (int y = 0; y < height; y += bandRows) {
+					int rowCount = Math.min(bandRows, height - y);
+					param.setSourceRegion(new Rectangle(0, y, width, rowCount));
+					BufferedImage band = reader.read(0, param);
+					// Later bands are decoded into the image of the first one
+					param.setDestination(band);
+					pixels = band.getRGB(0, 0, width, rowCount, pixels, 0, width);
+					image.setRows(y, rowCount, pixels);
+				}
+				return image;
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+	
+	/**
+	 * Paints the given shape image and writes it as a PNG file. The image is painted
+	 * in bands of rows while it is written, so writing takes the same memory for any
+	 * size of the image.
+	 * @param shapeImage - shape image to write
+	 * @param file - PNG file to write to
+	 * @throws IOException if the file can not be written
+	 */
+	public static void writePng(ShapeImage shapeImage, File file) throws IOException {
+		if(!ImageIO.write(new PaintedBands(shapeImage), "png", file)) {
+			throw new IOException("No PNG writer available");
+		}
+	}
+	
+	/**
+	 * Writes the genes of the given shape image as a text file. The first line holds 
+	 * the width, height, number of genes and fitness. Each following line holds one 
+	 * gene: the x- and y-coordinates of its corners followed by red, green, blue and alpha.
+	 * @param shapeImage - shape image to write
+	 * @param file - text file to write to
+	 * @throws IOException if the file can not be written
+	 */
+	public static void writeGenome(ShapeImage shapeImage, File file) throws IOException {
+		try (PrintWriter writer = new PrintWriter(file, StandardCharsets.UTF_8.name())) {
+			writer.printf(Locale.ROOT, "%d %d %d %s%n", shapeImage.getWidth(), shapeImage.getHeight(), 
+							shapeImage.getShapes().length, Double.toString(shapeImage.getFitness()));
+			for (Shape shape : shapeImage.getShapes()) {
+				StringBuilder line = new StringBuilder();
+				for (int i = 0; i < shape.getXCoordinates().length; i++) {
+					line.append(shape.getXCoordinates()[i]).append(' ').append(shape.getYCoordinates()[i]).append(' ');
+				}
+				Color color = shape.getColor();
+				line.append(color.getRed()).append(' ').append(color.getGreen()).append(' ')
+					.append(color.getBlue()).append(' ').append(color.getAlpha());
+				writer.println(line);
+			}
+			if(writer.checkError()) {
+				throw new IOException("Failed to write genome to " + file);
+			}
+		}
+	}
+	
+	/**
+	 * Writes the genes of the given shape image as a compact binary file, big-endian:
+	 * an int each for the width, height and number of genes, the fitness as a double,
+	 * and then the genes, see {@link GenomeEncoding}.
+	 * @param shapeImage - shape image to write
+	 * @param file - file to write to
+	 * @throws IOException if the file can not be written
+	 */
+	public static void writeBinaryGenome(ShapeImage shapeImage, File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+			out.writeInt(shapeImage.getWidth());
+			out.writeInt(shapeImage.getHeight());
+			out.writeInt(shapeImage.getShapes().length);
+			out.writeDouble(shapeImage.getFitness());
+			GenomeEncoding.write(shapeImage.getShapes(), out);
+		}
+	}
+	
+	/**
+	 * A shape image as an opaque RGB image for ImageIO, painting the bands of rows
+	 * requested by the image writer on demand, and keeping only the last one.
+	 */
+	private static class PaintedBands implements RenderedImage {
+		
+		private final ShapeImage shapeImage;
+		private final int width;
+		private final int height;
+		private final ShapeRasterizer rasterizer;
+		private final ColorModel colorModel = new DirectColorModel(24, 0xFF0000, 0xFF00, 0xFF);
+		private final int bandRows;
+		/** The painted band, and its first row, -1 before painting one */
+		private final int[] band;
+		private int bandY = -1;
+		
+		private PaintedBands(ShapeImage shapeImage) {
+			this.shapeImage = shapeImage;
+			this.width = shapeImage.getWidth();
+			this.height = shapeImage.getHeight();
+			this.rasterizer = new ShapeRasterizer(width, height);
+			this.bandRows = Math.max(1, Math.min(height, MAX_BAND_PIXELS / width));
+			this.band = new int[width * bandRows];
+		}
+		
+		@Override
+		public Raster getData(Rectangle rect) {
+			if(bandY < 0 || rect.y < bandY || rect.y + rect.height > bandY + bandRows) {
+				if(rect.height > bandRows) {
+					int[] pixels = new int[rect.width * rect.height];
+					rasterizer.paintTile(shapeImage.getShapes(), rect.x, rect.y, rect.x + rect.width, rect.y + rect.height, pixels);
+					return createRaster(pixels, 0, rect.width, rect);
+				}
+				bandY = Math.min(rect.y, height - bandRows);
+				rasterizer.paintTile(shapeImage.getShapes(), 0, bandY, width, bandY + bandRows, band);
+			}
+			return createRaster(band, (rect.y - bandY) * width + rect.x, width, rect);
+		}
+		
+		private WritableRaster createRaster(int[] pixels, int offset, int scanlineStride, Rectangle rect) {
+			SampleModel sampleModel = new SinglePixelPackedSampleModel(DataBufferInt.TYPE_INT, rect.width, rect.height, 
+					scanlineStride, new int[] {0xFF0000, 0xFF00, 0xFF});
+			return Raster.createWritableRaster(sampleModel, new DataBufferInt(pixels, pixels.length, offset), new Point(rect.x, rect.y));
+		}
+		
+		@Override
+		public Raster getData() {
+			return getData(new Rectangle(0, 0, width, height));
+		}
+		
+		@Override
+		public WritableRaster copyData(WritableRaster raster) {
+			Rectangle bounds = new Rectangle(0, 0, width, height);
+			if(raster == null) {
+				raster = colorModel.createCompatibleWritableRaster(width, height);
+			}
+			else {
+				bounds = bounds.intersection(raster.getBounds());
+			}
+			for (int y = bounds.y; y < bounds.y + bounds.height; y++) {
+				raster.setRect(getData(new Rectangle(bounds.x, y, bounds.width, 1)));
+			}
+			return raster;
+		}
+		
+		@Override
+		public Raster getTile(int tileX, int tileY) {
+			return getData();
+		}
+		
+		@Override
+		public Vector<RenderedImage> getSources() {
+			return null;
+		}
+		
+		@Override
+		public Object getProperty(String name) {
+			return Image.UndefinedProperty;
+		}
+		
+		@Override
+		public String[] getPropertyNames() {
+			return null;
+		}
+		
+		@Override
+		public ColorModel getColorModel() {
+			return colorModel;
+		}
+		
+		@Override
+		public SampleModel getSampleModel() {
+			return colorModel.createCompatibleSampleModel(width, height);
+		}
+		
+		@Override
+		public int getWidth() {
+			return width;
+		}
+		
+		@Override
+		public int getHeight() {
+			return height;
+		}
+		
+		@Override
+		public int getMinX() {
+			return 0;
+		}
+		
+		@Override
+		public int getMinY() {
+			return 0;
+		}
+		
+		@Override
+		public int getNumXTiles() {
+			return 1;
+		}
+		
+		@Override
+		public int getNumYTiles() {
+			return 1;
+		}
+		
+		@Override
+		public int getMinTileX() {
+			return 0;
+		}
+		
+		@Override
+		public int getMinTileY() {
+			return 0;
+		}
+		
+		@Override
+		public int getTileWidth() {
+			return width;
+		}
+		
+		@Override
+		public int getTileHeight() {
+			return height;
+		}
+		
+		@Override
+		public int getTileGridXOffset() {
+			return 0;
+		}
+		
+		@Override
+		public int getTileGridYOffset() {
+			return 0;
+		}
+	}
+}
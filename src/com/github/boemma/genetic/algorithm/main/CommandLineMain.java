@@ -0,0 +1,731 @@
+package com.github.boemma.genetic.algorithm.main;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.github.boemma.genetic.algorithm.AnnealingEvolution;
+import com.github.boemma.genetic.algorithm.EvolutionCheckpoint;
+import com.github.boemma.genetic.algorithm.EvolutionEngine;
+import com.github.boemma.genetic.algorithm.EvolutionSettings;
+import com.github.boemma.genetic.algorithm.EvolutionStrategy;
+import com.github.boemma.genetic.algorithm.FlatGeneticAlgorithm;
+import com.github.boemma.genetic.algorithm.GeneticAlgorithm;
+import com.github.boemma.genetic.algorithm.HillClimbingEvolution;
+import com.github.boemma.genetic.algorithm.IslandEvolution;
+import com.github.boemma.genetic.algorithm.MigrationTopology;
+import com.github.boemma.genetic.algorithm.SteadyStateEvolution;
+import com.github.boemma.genetic.algorithm.StopCondition;
+import com.github.boemma.genetic.algorithm.WorkerThreadFactory;
+import com.github.boemma.genetic.algorithm.io.CheckpointFiles;
+import com.github.boemma.genetic.algorithm.io.CheckpointWriter;
+import com.github.boemma.genetic.algorithm.io.MetricsCsvWriter;
+import com.github.boemma.genetic.algorithm.io.ProgressExporter;
+import com.github.boemma.genetic.algorithm.io.ShapeImageFiles;
+import com.github.boemma.genetic.algorithm.population.FitnessCache;
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+import com.github.boemma.genetic.algorithm.remote.ConnectionListener;
+import com.github.boemma.genetic.algorithm.remote.RemoteEvaluator;
+import com.github.boemma.image.CompositeCache;
+import com.github.boemma.image.FitnessFunctions;
+import com.github.boemma.image.ImagePyramid;
+import com.github.boemma.image.ImageSource;
+import com.github.boemma.image.PixelFitnessFunction;
+
+/**
+ * Headless command line program evolving shape images for a batch of
+ * reference images, without any JavaFX dependency.
+ *
+ * Every reference image is a job, running its own genetic algorithm. Several
+ * jobs run at the same time, and all of them breed and evaluate offspring on
+ * one shared pool of worker threads. When a job stops, the fittest shape image
+ * is written to the output directory as a PNG image and a genome text file.
+ *
+ * Run without arguments for a description of the options.
+ *
+ * @author BoEmma
+ *
+ */
+public class CommandLineMain {
+
+	private static final String[] supportedFileExtensions = {".png", ".jpg", ".jpeg", ".gif", ".bmp"};
+
+	private static final String USAGE =
+			"Usage: CommandLineMain [options] <reference image or directory>...\n"
+			+ "Options:\n"
+			+ "  --population N       population size (default 50)\n"
+			+ "  --genes N            number of genes (triangles) per image (default 70)\n"
+			+ "  --mutation-rate R    mutation rate between 0 and 1 (default 0.03)\n"
+			+ "  --tournament-size N  tournament size of parent selection (default 10)\n"
+			+ "  --seed N             random seed (default: random)\n"
+			+ "  --threads N          number of worker threads (default: number of processors)\n"
+			+ "  --jobs N             number of images evolved at the same time (default: number of threads)\n"
+			+ "  --fitness F          fitness function: l1 (absolute RGB difference), l2 (squared RGB\n"
+			+ "                       difference), luma (luma weighted RGB difference) or ssim\n"
+			+ "                       (structural similarity in 8x8 windows) (default l1)\n"
+			+ "  --pyramid N          evaluate coarse to fine at 1/8, 1/4, 1/2 and full resolution, moving\n"
+			+ "                       up a level after N generations without 0.01% improvement\n"
+			+ "  --sampling N         estimate fitness on one row in every N rows first, and only evaluate\n"
+			+ "                       offspring exactly if they could win a tournament\n"
+			+ "  --early-abort B      stop evaluating offspring once they are known to be less fit than\n"
+			+ "                       the median parent, true or false (default false)\n"
+			+ "  --incremental B      repaint and compare only the tiles covered by the genes an offspring\n"
+			+ "                       does not share with its closest parent, keeping the rendered\n"
+			+ "                       pixels of every individual, true or false (default false)\n"
+			+ "  --fitness-cache N    remember the fitness of the last N evaluated individuals, so that\n"
+			+ "                       offspring identical to one of them are not evaluated again\n"
+			+ "                       (default 0, off)\n"
+			+ "  --composite-cache MB keep the images painted up to every few genes of parents selected\n"
+			+ "                       repeatedly, up to the given megabytes, so that offspring sharing\n"
+			+ "                       their first genes resume painting from there (default 0, off)\n"
+			+ "  --composite-interval N  genes between the kept images of a parent (default 8)\n"
+			+ "  --tiled B            keep reference images off the heap in tiles of 256x256 pixels, and\n"
+			+ "                       paint and compare tile by tile, for very large images, true or\n"
+			+ "                       false (default false), not with the single parent engines, which\n"
+			+ "                       keep a full size render of every individual on the heap\n"
+			+ "  --engine E           generational, flat for generations on primitive arrays without\n"
+			+ "                       allocating individuals, steady-state to replace individuals one\n"
+			+ "                       at a time without waiting for a whole generation, or hill-climbing,\n"
+			+ "                       es or annealing to mutate a single parent (default generational)\n"
+			+ "  --offspring N        offspring bred every step by the es engine, the lambda of the\n"
+			+ "                       (1+lambda) evolution strategy (default 8)\n"
+			+ "  --temperature T      initial temperature of the annealing engine, in percent points\n"
+			+ "                       of similarity (default 0.05)\n"
+			+ "  --cooling R          factor the temperature is multiplied by every step (default 0.9995)\n"
+			+ "  --workers LIST       evaluate offspring on evaluation worker processes, given as a comma\n"
+			+ "                       separated list of host:port, or port for this machine\n"
+			+ "  --batch-size N       offspring sent to a worker at once (default 8)\n"
+			+ "  --islands N          evolve N populations on threads of their own, migrating\n"
+			+ "                       individuals between them (default 1)\n"
+			+ "  --migration-interval N  generations between migrations (default 50)\n"
+			+ "  --migrants N         individuals sent by an island on every migration (default 2)\n"
+			+ "  --topology T         islands receiving migrants, ring or full (default ring)\n"
+			+ "  --generations N      stop after N generations (per island), or as many evaluations\n"
+			+ "                       as N generations have with the other engines\n"
+			+ "  --time SECONDS       stop after the given wall time per image\n"
+			+ "  --similarity P       stop when reaching the given similarity in percent\n"
+			+ "  --output DIR         output directory (default: current directory)\n"
+			+ "  --checkpoint SECONDS write a checkpoint to the output directory at the given interval,\n"
+			+ "                       and resume from it if it already exists\n"
+			+ "  --metrics SECONDS    write the time split and fitness of a generation to a CSV file in\n"
+			+ "                       the output directory at the given interval, 0 for every generation\n"
+			+ "  --frames N           export the fittest image as a PNG frame and a binary genome to\n"
+			+ "                       <name>-frames in the output directory every N generations\n"
+			+ "  --frame-gain P       also export a frame whenever the similarity improved by P percent\n"
+			+ "                       points since the last frame, at full resolution\n"
+			+ "  --frame-interval SECONDS  also export a frame at the given interval\n"
+			+ "At least one stop condition must be given.";
+
+	private EvolutionSettings settings = new EvolutionSettings();
+	private long maxGenerations = Long.MAX_VALUE;
+	private long maxMillis = Long.MAX_VALUE;
+	private double targetSimilarity = 100;
+	private int jobCount = 0;
+	/** Generations without improvement before moving up a pyramid level, 0 if no pyramid is used */
+	private int pyramidStallGenerations = 0;
+	/** Rows in each band of the fitness sample, 0 if every offspring is evaluated exactly */
+	private int sampleSpacing = 0;
+	/** True if evaluations of offspring less fit than the median parent are stopped early */
+	private boolean earlyAbort = false;
+	/** True if offspring are evaluated incrementally from their closest parent */
+	private boolean incremental = false;
+	/** Entries of the fitness cache, 0 if no fitness cache is used */
+	private int fitnessCacheEntries = 0;
+	/** Memory limit of the composite cache in bytes, 0 if no composite cache is used */
+	private long compositeCacheBytes = 0;
+	/** Genes between the composites cached for a parent */
+	private int compositeInterval = 8;
+	/** True if reference images are kept off the heap, and compared tile by tile */
+	private boolean tiled = false;
+	/** Evolution engine: generational, flat, steady-state, hill-climbing, es or annealing */
+	private String engine = "generational";
+	/** Offspring bred every step by the evolution strategy */
+	private int offspringCount = EvolutionStrategy.DEFAULT_OFFSPRING_COUNT;
+	/** Initial temperature and cooling rate of simulated annealing */
+	private double temperature = AnnealingEvolution.DEFAULT_TEMPERATURE;
+	private double coolingRate = AnnealingEvolution.DEFAULT_COOLING_RATE;
+	/** Addresses of the evaluation workers, empty if offspring are evaluated on the worker threads */
+	private List<InetSocketAddress> evaluationWorkers = new ArrayList<>();
+	private int batchSize = RemoteEvaluator.DEFAULT_BATCH_SIZE;
+	private int islandCount = 1;
+	private int migrationInterval = 50;
+	private int migrantCount = 2;
+	private MigrationTopology topology = MigrationTopology.RING;
+	private File outputDirectory = new File(".");
+	/** Time between checkpoints, negative if no checkpoints are written */
+	private long checkpointMillis = -1;
+	/** Time between rows of generation metrics, negative if no metrics are written */
+	private long metricsMillis = -1;
+	/** Generations between frames and similarity gain for a frame, 0 if not used */
+	private long frameGenerations = 0;
+	private double frameGain = 0;
+	/** Time between frames, negative if frames are not exported by time */
+	private long frameMillis = -1;
+	private List<File> referenceFiles = new ArrayList<>();
+
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		CommandLineMain main = new CommandLineMain();
+		try {
+			main.parseArguments(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Error: " + e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+		System.exit(main.run() ? 0 : 2);
+	}
+
+	/**
+	 * Parses the command line arguments into the settings of this program.
+	 * @param args - command line arguments
+	 * @throws IllegalArgumentException if the arguments are invalid
+	 */
+	private void parseArguments(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String argument = args[i];
+			if(!argument.startsWith("--")) {
+				addReferenceFiles(new File(argument));
+				continue;
+			}
+			if(i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value for " + argument);
+			}
+			String value = args[++i];
+			try {
+				switch (argument) {
+				case "--population":
+					settings.setPopulationSize(Integer.parseInt(value));
+					break;
+				case "--genes":
+					settings.setNumberOfGenes(Integer.parseInt(value));
+					break;
+				case "--mutation-rate":
+					settings.setMutationRate(Double.parseDouble(value));
+					break;
+				case "--tournament-size":
+					settings.setTournamentSize(Integer.parseInt(value));
+					break;
+				case "--seed":
+					settings.setSeed(Long.parseLong(value));
+					break;
+				case "--threads":
+					settings.setThreadCount(Integer.parseInt(value));
+					break;
+				case "--jobs":
+					jobCount = Integer.parseInt(value);
+					break;
+				case "--fitness":
+					settings.setFitnessFunction(FitnessFunctions.forName(value));
+					break;
+				case "--pyramid":
+					pyramidStallGenerations = Integer.parseInt(value);
+					if(pyramidStallGenerations < 1) {
+						throw new IllegalArgumentException("Invalid value " + value + " for " + argument);
+					}
+					break;
+				case "--sampling":
+					sampleSpacing = Integer.parseInt(value);
+					if(sampleSpacing < 1) {
+						throw new IllegalArgumentException("Invalid value " + value + " for " + argument);
+					}
+					break;
+				case "--early-abort":
+					if(!value.equals("true") && !value.equals("false")) {
+						throw new IllegalArgumentException("Invalid value " + value + " for " + argument);
+					}
+					earlyAbort = Boolean.parseBoolean(value);
+					break;
+				case "--incremental":
+					if(!value.equals("true") && !value.equals("false")) {
+						throw new IllegalArgumentException("Invalid value " + value + " for " + argument);
+					}
+					incremental = Boolean.parseBoolean(value);
+					break;
+				case "--fitness-cache":
+					fitnessCacheEntries = Integer.parseInt(value);
+					if(fitnessCacheEntries < 0) {
+						throw new IllegalArgumentException("Negative fitness cache size " + value);
+					}
+					break;
+				case "--composite-cache":
+					compositeCacheBytes = Math.round(Double.parseDouble(value) * 1024 * 1024);
+					if(compositeCacheBytes < 0) {
+						throw new IllegalArgumentException("Negative composite cache size " + value);
+					}
+					break;
+				case "--composite-interval":
+					compositeInterval = Integer.parseInt(value);
+					if(compositeInterval < 1) {
+						throw new IllegalArgumentException("Composite interval must be at least 1");
+					}
+					break;
+				case "--tiled":
+					if(!value.equals("true") && !value.equals("false")) {
+						throw new IllegalArgumentException("Invalid value " + value + " for " + argument);
+					}
+					tiled = Boolean.parseBoolean(value);
+					break;
+				case "--engine":
+					if(!Arrays.asList("generational", "flat", "steady-state", "hill-climbing", "es", "annealing").contains(value)) {
+						throw new IllegalArgumentException("Unknown engine " + value);
+					}
+					engine = value;
+					break;
+				case "--offspring":
+					offspringCount = Integer.parseInt(value);
+					if(offspringCount < 1) {
+						throw new IllegalArgumentException("Offspring count must be at least 1");
+					}
+					break;
+				case "--temperature":
+					temperature = Double.parseDouble(value);
+					if(temperature < 0) {
+						throw new IllegalArgumentException("Negative temperature " + value);
+					}
+					break;
+				case "--cooling":
+					coolingRate = Double.parseDouble(value);
+					if(coolingRate <= 0 || coolingRate > 1) {
+						throw new IllegalArgumentException("Cooling rate must be above 0 and at most 1");
+					}
+					break;
+				case "--workers":
+					evaluationWorkers = parseWorkers(value);
+					break;
+				case "--batch-size":
+					batchSize = Integer.parseInt(value);
+					if(batchSize < 1) {
+						throw new IllegalArgumentException("Batch size must be at least 1");
+					}
+					break;
+				case "--islands":
+					islandCount = Integer.parseInt(value);
+					if(islandCount < 1) {
+						throw new IllegalArgumentException("Island count must be at least 1");
+					}
+					break;
+				case "--migration-interval":
+					migrationInterval = Integer.parseInt(value);
+					break;
+				case "--migrants":
+					migrantCount = Integer.parseInt(value);
+					break;
+				case "--topology":
+					if(value.equals("ring")) {
+						topology = MigrationTopology.RING;
+					}
+					else if(value.equals("full")) {
+						topology = MigrationTopology.FULLY_CONNECTED;
+					}
+					else {
+						throw new IllegalArgumentException("Unknown topology " + value);
+					}
+					break;
+				case "--generations":
+					maxGenerations = Long.parseLong(value);
+					break;
+				case "--time":
+					maxMillis = Math.round(Double.parseDouble(value) * 1000);
+					break;
+				case "--similarity":
+					targetSimilarity = Double.parseDouble(value);
+					break;
+				case "--output":
+					outputDirectory = new File(value);
+					break;
+				case "--checkpoint":
+					checkpointMillis = Math.round(Double.parseDouble(value) * 1000);
+					if(checkpointMillis < 0) {
+						throw new IllegalArgumentException("Negative checkpoint interval " + value);
+					}
+					break;
+				case "--metrics":
+					metricsMillis = Math.round(Double.parseDouble(value) * 1000);
+					if(metricsMillis < 0) {
+						throw new IllegalArgumentException("Negative metrics interval " + value);
+					}
+					break;
+				case "--frames":
+					frameGenerations = Long.parseLong(value);
+					if(frameGenerations < 1) {
+						throw new IllegalArgumentException("Invalid value " + value + " for " + argument);
+					}
+					break;
+				case "--frame-gain":
+					frameGain = Double.parseDouble(value);
+					if(!(frameGain > 0)) {
+						throw new IllegalArgumentException("Invalid value " + value + " for " + argument);
+					}
+					break;
+				case "--frame-interval":
+					frameMillis = Math.round(Double.parseDouble(value) * 1000);
+					if(frameMillis < 0) {
+						throw new IllegalArgumentException("Negative frame interval " + value);
+					}
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown option " + argument);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid value " + value + " for " + argument);
+			}
+		}
+		if(referenceFiles.isEmpty()) {
+			throw new IllegalArgumentException("No reference images given");
+		}
+		if(maxGenerations == Long.MAX_VALUE && maxMillis == Long.MAX_VALUE && targetSimilarity >= 100) {
+			throw new IllegalArgumentException("No stop condition given");
+		}
+		boolean frames = frameGenerations > 0 || frameGain > 0 || frameMillis >= 0;
+		if(!engine.equals("generational") && (islandCount > 1 || checkpointMillis >= 0 || metricsMillis >= 0 || frames
+				|| pyramidStallGenerations > 0 || sampleSpacing > 0 || earlyAbort || fitnessCacheEntries > 0 || compositeCacheBytes > 0)) {
+			throw new IllegalArgumentException("Islands, checkpoints, metrics, frames, the resolution pyramid, sampling, "
+					+ "early abort and the caches are only supported with the generational engine");
+		}
+		if(islandCount > 1 && (checkpointMillis >= 0 || metricsMillis >= 0 || frames)) {
+			throw new IllegalArgumentException("Checkpoints, metrics and frames are not supported with islands");
+		}
+		boolean caches = fitnessCacheEntries > 0 || compositeCacheBytes > 0;
+		if(islandCount > 1 && (pyramidStallGenerations > 0 || sampleSpacing > 0 || earlyAbort || incremental || caches)) {
+			throw new IllegalArgumentException("The resolution pyramid, sampling, early abort, incremental evaluation "
+					+ "and the caches are not supported with islands");
+		}
+		if(!evaluationWorkers.isEmpty() && (!engine.equals("generational") || islandCount > 1 || pyramidStallGenerations > 0
+				|| sampleSpacing > 0 || earlyAbort || incremental || caches)) {
+			throw new IllegalArgumentException("Evaluation workers are only supported with the generational engine, "
+					+ "without islands, the resolution pyramid, sampling, early abort, incremental evaluation and the caches");
+		}
+		if(incremental && caches) {
+			throw new IllegalArgumentException("The caches are not used with incremental evaluation");
+		}
+		if(incremental && !engine.equals("generational") && !engine.equals("steady-state")) {
+			throw new IllegalArgumentException("Incremental evaluation is an option of the generational and steady-state "
+					+ "engines, the single parent engines always evaluate incrementally");
+		}
+		if(tiled && (incremental || compositeCacheBytes > 0)) {
+			throw new IllegalArgumentException("Incremental evaluation and the composite cache are not supported with tiled "
+					+ "reference images, since they keep full size images on the heap");
+		}
+		if(tiled && (engine.equals("hill-climbing") || engine.equals("es") || engine.equals("annealing") || engine.equals("flat")
+				|| pyramidStallGenerations > 0 || sampleSpacing > 0 || !evaluationWorkers.isEmpty())) {
+			throw new IllegalArgumentException("Tiled reference images are not supported with the single parent engines, "
+					+ "the flat engine, the resolution pyramid, sampling and evaluation workers");
+		}
+		if(tiled && !(settings.getFitnessFunction() instanceof PixelFitnessFunction)) {
+			throw new IllegalArgumentException("Tiled reference images are not supported with the " 
+					+ settings.getFitnessFunction().getName() + " fitness function, which does not compare single pixels");
+		}
+		if(sampleSpacing > 0 && !(settings.getFitnessFunction() instanceof PixelFitnessFunction)) {
+			throw new IllegalArgumentException("Sampling is not supported with the " + settings.getFitnessFunction().getName() 
+					+ " fitness function, which does not compare single pixels");
+		}
+	}
+
+	/**
+	 * Parses a comma separated list of evaluation worker addresses, each either
+	 * host:port or only a port on this machine.
+	 * @param value - list of addresses
+	 * @return addresses
+	 */
+	private static List<InetSocketAddress> parseWorkers(String value) {
+		List<InetSocketAddress> workers = new ArrayList<>();
+		for (String worker : value.split(",")) {
+			int separator = worker.lastIndexOf(':');
+			String host = separator < 0 ? "localhost" : worker.substring(0, separator);
+			int port = Integer.parseInt(worker.substring(separator + 1));
+			if(host.isEmpty() || port < 1 || port > 65535) {
+				throw new IllegalArgumentException("Invalid worker address " + worker);
+			}
+			workers.add(new InetSocketAddress(host, port));
+		}
+		return workers;
+	}
+
+	/**
+	 * Adds the given image file, or all image files in the given directory, as reference images.
+	 * @param file - image file or directory
+	 */
+	private void addReferenceFiles(File file) {
+		if(file.isDirectory()) {
+			File[] files = file.listFiles(candidate -> candidate.isFile() && isSupportedImage(candidate));
+			Arrays.sort(files);
+			referenceFiles.addAll(Arrays.asList(files));
+		}
+		else if(file.isFile()) {
+			referenceFiles.add(file);
+		}
+		else {
+			throw new IllegalArgumentException("No such file or directory: " + file);
+		}
+	}
+
+	private static boolean isSupportedImage(File file) {
+		String name = file.getName().toLowerCase(Locale.ROOT);
+		for (String extension : supportedFileExtensions) {
+			if(name.endsWith(extension)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Runs all jobs and waits for them to complete.
+	 * @return true if all jobs succeeded
+	 */
+	private boolean run() {
+		if(!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+			System.err.println("Error: Failed to create output directory " + outputDirectory);
+			return false;
+		}
+
+		int threadCount = settings.getThreadCount();
+		ExecutorService workerPool = Executors.newFixedThreadPool(threadCount, new WorkerThreadFactory());
+		ExecutorService jobPool = Executors.newFixedThreadPool(jobCount > 0 ? jobCount : threadCount);
+		StopCondition stopCondition = new StopCondition(maxGenerations, maxMillis, targetSimilarity);
+
+		List<Future<?>> jobs = new ArrayList<>();
+		for (File file : referenceFiles) {
+			jobs.add(jobPool.submit(() -> {
+				runJob(file, stopCondition, workerPool);
+				return null;
+			}));
+		}
+
+		boolean success = true;
+		for (int i = 0; i < jobs.size(); i++) {
+			try {
+				jobs.get(i).get();
+			} catch (ExecutionException e) {
+				System.err.println("Error: " + referenceFiles.get(i) + " failed: " + e.getCause());
+				success = false;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				success = false;
+				break;
+			}
+		}
+		jobPool.shutdownNow();
+		workerPool.shutdownNow();
+		return success;
+	}
+
+	/**
+	 * Evolves a shape image for the given reference image until the stop condition is
+	 * reached, and writes the fittest shape image to the output directory. With 
+	 * checkpoints enabled, the evolution is resumed from an existing checkpoint,
+	 * and the generations of earlier runs count towards the stop condition.
+	 * @param file - reference image file
+	 * @param stopCondition - when to stop
+	 * @param workerPool - shared pool of worker threads
+	 * @throws IOException if the reference image can not be read, or the result can not be written
+	 */
+	private void runJob(File file, StopCondition stopCondition, ExecutorService workerPool) throws IOException {
+		ImageSource referenceImage = tiled ? ShapeImageFiles.readTiledImage(file) : ShapeImageFiles.readImage(file);
+		String name = file.getName().replaceFirst("\\.[^.]*$", "");
+		if(islandCount > 1) {
+			runIslands(file, name, referenceImage, stopCondition);
+			return;
+		}
+		if(!engine.equals("generational")) {
+			runEngine(file, name, createEngine(referenceImage, workerPool), stopCondition);
+			return;
+		}
+		File checkpointFile = new File(outputDirectory, name + ".checkpoint");
+		GeneticAlgorithm evolution;
+		if(checkpointMillis >= 0 && checkpointFile.isFile()) {
+			EvolutionCheckpoint checkpoint = CheckpointFiles.read(checkpointFile, referenceImage);
+			checkpoint.getSettings().setThreadCount(settings.getThreadCount());
+			evolution = new GeneticAlgorithm(referenceImage, checkpoint, workerPool);
+			System.out.println(file.getName() + ": resuming from generation " + checkpoint.getGeneration());
+		}
+		else {
+			evolution = new GeneticAlgorithm(referenceImage, settings, workerPool);
+		}
+		if(pyramidStallGenerations > 0) {
+			evolution.setResolutionPyramid(new ImagePyramid(referenceImage), pyramidStallGenerations, 0.01);
+		}
+		evolution.setSampledEvaluation(sampleSpacing);
+		evolution.setEarlyAbort(earlyAbort);
+		evolution.setIncrementalEvaluation(incremental);
+		if(fitnessCacheEntries > 0) {
+			evolution.setFitnessCache(new FitnessCache(fitnessCacheEntries));
+		}
+		if(compositeCacheBytes > 0) {
+			evolution.setCompositeCache(new CompositeCache(compositeInterval, compositeCacheBytes));
+		}
+		long start = System.currentTimeMillis();
+		ShapeImage fittest;
+		// Closed also when a generation fails, to stop their threads and close their connections
+		try (RemoteEvaluator remoteEvaluator = createRemoteEvaluator(referenceImage, evolution);
+				CheckpointWriter checkpointWriter = checkpointMillis >= 0 ? new CheckpointWriter(checkpointFile, checkpointMillis) : null;
+				MetricsCsvWriter metricsWriter = createMetricsWriter(name);
+				ProgressExporter progressExporter = createProgressExporter(name)) {
+			if(remoteEvaluator != null) {
+				evolution.setBatchEvaluator(remoteEvaluator);
+			}
+			if(metricsWriter != null) {
+				evolution.addGenerationListener(metricsWriter);
+			}
+			
+			fittest = evolution.getFittest();
+			if(progressExporter != null) {
+				progressExporter.export(evolution.getGeneration(), fittest, evolution.getSimilarity(fittest));
+			}
+			while(!stopCondition.isReached(evolution.getGeneration(), System.currentTimeMillis() - start, evolution.getSimilarity(fittest))) {
+				fittest = evolution.runOneGeneration();
+				if(checkpointWriter != null) {
+					checkpointWriter.checkpointIfDue(evolution);
+				}
+				if(progressExporter != null) {
+					progressExporter.exportIfDue(evolution.getGeneration(), fittest, evolution.getSimilarity(fittest));
+				}
+			}
+			if(checkpointWriter != null) {
+				checkpointWriter.checkpoint(evolution);
+			}
+			if(progressExporter != null) {
+				progressExporter.export(evolution.getGeneration(), fittest, evolution.getSimilarity(fittest));
+				if(progressExporter.getDroppedFrames() > 0) {
+					System.out.println(file.getName() + ": dropped " + progressExporter.getDroppedFrames() 
+							+ " frames which could not be written in time");
+				}
+			}
+		} finally {
+			evolution.shutdown();
+		}
+
+		if(pyramidStallGenerations > 0) {
+			// The fitness may be the similarity at a coarse level
+			fittest = new ShapeImage(fittest.getShapes(), 0, fittest.getFitnessReference());
+			fittest.recalculateFitness();
+		}
+		writeResult(file, name, fittest, evolution.getGeneration() + " generations", start);
+	}
+
+	/**
+	 * Creates an evaluator on the evaluation workers given on the command line, null if none were given.
+	 */
+	private RemoteEvaluator createRemoteEvaluator(ImageSource referenceImage, GeneticAlgorithm evolution) throws IOException {
+		if(evaluationWorkers.isEmpty()) {
+			return null;
+		}
+		return new RemoteEvaluator(evaluationWorkers, referenceImage, 
+				evolution.getFittest().getFitnessReference().getFitnessFunction(), batchSize, new ConnectionLogger());
+	}
+
+	/**
+	 * Creates the writer of the metrics of a job, null if metrics are not written.
+	 */
+	private MetricsCsvWriter createMetricsWriter(String name) throws IOException {
+		if(metricsMillis < 0) {
+			return null;
+		}
+		return new MetricsCsvWriter(new File(outputDirectory, name + ".metrics.csv"), metricsMillis);
+	}
+
+	/**
+	 * Creates the exporter of the progress frames of a job, null if frames are not exported.
+	 */
+	private ProgressExporter createProgressExporter(String name) throws IOException {
+		if(frameGenerations == 0 && frameGain == 0 && frameMillis < 0) {
+			return null;
+		}
+		return new ProgressExporter(new File(outputDirectory, name + "-frames"), name, 
+				frameGenerations, frameGain, frameMillis, ProgressExporter.DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Evolves a shape image for the given reference image with the island model,
+	 * until the stop condition is reached, and writes the fittest shape image.
+	 * The islands run on threads of their own, not on the shared pool.
+	 */
+	private void runIslands(File file, String name, ImageSource referenceImage, StopCondition stopCondition) throws IOException {
+		IslandEvolution evolution = new IslandEvolution(referenceImage, settings, islandCount,
+				migrationInterval, migrantCount, topology);
+		long start = System.currentTimeMillis();
+		ShapeImage fittest = evolution.run(stopCondition);
+		writeResult(file, name, fittest, evolution.getGeneration() + " generations", start);
+	}
+
+	/**
+	 * Creates the engine selected on the command line for the given reference image.
+	 * The evolution strategy and the flat engine run their workers on the shared pool, 
+	 * the steady-state workers run on threads of their own, and the other engines on 
+	 * the calling thread.
+	 */
+	private EvolutionEngine createEngine(ImageSource referenceImage, ExecutorService workerPool) {
+		switch (engine) {
+		case "steady-state":
+			SteadyStateEvolution steadyState = new SteadyStateEvolution(referenceImage, settings);
+			steadyState.setIncrementalEvaluation(incremental);
+			return steadyState;
+		case "hill-climbing":
+			return new HillClimbingEvolution(referenceImage, settings);
+		case "es":
+			return new EvolutionStrategy(referenceImage, settings, offspringCount, workerPool);
+		case "flat":
+			return new FlatGeneticAlgorithm(referenceImage, settings, workerPool);
+		case "annealing":
+			return new AnnealingEvolution(referenceImage, settings, temperature, coolingRate);
+		default:
+			return new GeneticAlgorithm(referenceImage, settings, workerPool);
+		}
+	}
+
+	/**
+	 * Evolves a shape image with the given engine until the stop condition is reached,
+	 * and writes the fittest shape image. The generation limit is converted to the same 
+	 * number of evaluations as the generations of the generational engine have.
+	 */
+	private void runEngine(File file, String name, EvolutionEngine evolution, StopCondition stopCondition) throws IOException {
+		long maxEvaluations = stopCondition.getMaxGenerations() == Long.MAX_VALUE ? Long.MAX_VALUE
+				: stopCondition.getMaxGenerations() * (settings.getPopulationSize() - 1);
+		long start = System.currentTimeMillis();
+		ShapeImage fittest;
+		try {
+			fittest = evolution.run(new StopCondition(maxEvaluations, stopCondition.getMaxMillis(), 
+					stopCondition.getTargetSimilarity()));
+		} finally {
+			evolution.shutdown();
+		}
+		writeResult(file, name, fittest, evolution.getEvaluations() + " evaluations", start);
+	}
+
+	/**
+	 * Prints failed and restored connections to evaluation workers.
+	 */
+	private static class ConnectionLogger implements ConnectionListener {
+
+		@Override
+		public void connectionFailed(SocketAddress address, Exception cause) {
+			System.err.println("Evaluation worker " + address + " failed: " + cause);
+		}
+
+		@Override
+		public void connectionRestored(SocketAddress address) {
+			System.err.println("Reconnected evaluation worker " + address);
+		}
+	}
+
+	/**
+	 * Writes the fittest shape image of a job to the output directory as
+	 * a PNG image and a genome text file.
+	 */
+	private void writeResult(File file, String name, ShapeImage fittest, String progress, long start) throws IOException {
+		ShapeImageFiles.writePng(fittest, new File(outputDirectory, name + ".png"));
+		ShapeImageFiles.writeGenome(fittest, new File(outputDirectory, name + ".genome.txt"));
+		System.out.println(String.format(Locale.ROOT, "%s: %s, similarity %.2f%%, %.1f s",
+				file.getName(), progress, fittest.getFitness(), (System.currentTimeMillis() - start) / 1000.0));
+	}
+}
@@ -0,0 +1,93 @@
+package com.github.boemma.genetic.algorithm.main;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+
+import com.github.boemma.genetic.algorithm.remote.ConnectionListener;
+import com.github.boemma.genetic.algorithm.remote.EvaluationServer;
+
+/**
+ * Headless command line program running an evaluation worker, which paints and
+ * scores the offspring sent by {@link CommandLineMain} runs given its address
+ * with the --workers option. The worker keeps running, serving one run after
+ * the other, until it is killed.
+ *
+ * Run with --help for a description of the options.
+ *
+ * @author BoEmma
+ *
+ */
+public class EvaluationWorkerMain {
+
+	private static final String USAGE =
+			"Usage: EvaluationWorkerMain [options]\n"
+			+ "Options:\n"
+			+ "  --port N             port to listen on (default 7070)\n"
+			+ "  --bind ADDRESS       address to listen on, 0.0.0.0 to accept connections from other\n"
+			+ "                       machines (default: loopback address, only this machine)";
+
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		int port = 7070;
+		InetAddress bindAddress = InetAddress.getLoopbackAddress();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String argument = args[i];
+				if(argument.equals("--help")) {
+					System.out.println(USAGE);
+					return;
+				}
+				if(i + 1 >= args.length) {
+					throw new IllegalArgumentException("Missing value for " + argument);
+				}
+				String value = args[++i];
+				switch (argument) {
+				case "--port":
+					try {
+						port = Integer.parseInt(value);
+					} catch (NumberFormatException e) {
+						port = -1;
+					}
+					if(port < 0 || port > 65535) {
+						throw new IllegalArgumentException("Invalid value " + value + " for " + argument);
+					}
+					break;
+				case "--bind":
+					try {
+						bindAddress = InetAddress.getByName(value);
+					} catch (UnknownHostException e) {
+						throw new IllegalArgumentException("Unknown address " + value);
+					}
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown option " + argument);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println("Error: " + e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+
+		try (EvaluationServer server = new EvaluationServer(bindAddress, port)) {
+			server.setConnectionListener(new ConnectionListener() {
+				@Override
+				public void connectionFailed(SocketAddress address, Exception cause) {
+					System.err.println("Evaluation connection " + address + " failed: " + cause);
+				}
+
+				@Override
+				public void connectionRestored(SocketAddress address) {
+					// Workers do not reconnect
+				}
+			});
+			System.out.println("Evaluation worker listening on " + bindAddress.getHostAddress() + ":" + server.getPort());
+			server.serve();
+		} catch (IOException e) {
+			System.err.println("Error: " + e.getMessage());
+			System.exit(2);
+		}
+	}
+}
@@ -4,8 +4,9 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 
+import com.github.boemma.genetic.algorithm.EvolutionSettings;
 import com.github.boemma.genetic.algorithm.GeneticAlgorithm;
-import com.github.boemma.ui.javafx.JavaFXPaintUtils;
+import com.github.boemma.ui.javafx.EvolutionRenderer;
 import com.github.boemma.ui.javafx.ReferenceImage;
 import com.sun.media.jfxmedia.logging.Logger;
 
@@ -81,6 +82,9 @@ public class Main extends Application {
 	private static final int NROFGENES_MAX_VALUE = 500;
 	private static final double MUTATIONRATE_MAX_VALUE = 1;
 	
+	/** Maximum number of times per second the evolving image is repainted */
+	private static final int MAX_FRAMES_PER_SECOND = 30;
+	
 	/** Status labels */
 	@FXML
 	private Label nrOfGenerationsLabel;
@@ -240,8 +244,9 @@ public class Main extends Application {
 	}
 	
 	/**
-	 * Start the evolution of the triangle images. After each completed generation,
-	 * the image with the highest fitness will be drawn on the screen.
+	 * Start the evolution of the triangle images. The image with the highest fitness
+	 * is drawn on the screen at most {@value #MAX_FRAMES_PER_SECOND} times per second,
+	 * so that the evolution never waits for the screen to be updated.
 	 */
 	@FXML 
 	protected void runEvolution() {
@@ -257,32 +262,31 @@ public class Main extends Application {
 			
 			ReferenceImage.getInstance().setImage(originalImage.getImage());
 			
-			GeneticAlgorithm evolution = new GeneticAlgorithm(getLabelValueAsInt(populationSizeLabel), 
-																getLabelValueAsInt(nrOfGenesLabel), 
-																	getLabelValueAsDouble(mutationRateLabel));
+			EvolutionSettings settings = new EvolutionSettings()
+											.setPopulationSize(getLabelValueAsInt(populationSizeLabel))
+											.setNumberOfGenes(getLabelValueAsInt(nrOfGenesLabel))
+											.setMutationRate(getLabelValueAsDouble(mutationRateLabel))
+											.setFitnessFunction(ReferenceImage.getInstance().getFitnessFunction());
+			GeneticAlgorithm evolution = new GeneticAlgorithm(ReferenceImage.getInstance().getFitnessReference(), settings, null);
+			EvolutionRenderer renderer = new EvolutionRenderer(evolvingImage, nrOfGenerationsLabel, similarityLabel, MAX_FRAMES_PER_SECOND);
+			renderer.start();
 			
 			// A task to be executed in a separate non-ui thread to avoid blocking the ui
 			Task<Void> task = new Task<Void>() {
 				@Override
 				protected Void call() throws Exception {
 					do{
-						evolution.runOneGeneration();
-						JavaFXPaintUtils.paintShapeImageOnJavaFXCanvas(evolution.getFittest(), evolvingImage, true);
-					
-						// We need to wait for the ui thread to update labels
-						Platform.runLater(new Runnable() {
-							@Override
-							public void run() {
-								updateLabelIntegerValue(nrOfGenerationsLabel, 1, 0, Integer.MAX_VALUE);
-								double similarity = evolution.getFittest().getFitness();
-								double roundedSimilarity = Math.round(similarity * 100.0) / 100.0;
-								similarityLabel.setText(Double.toString(roundedSimilarity));
-							}
-						});
+						renderer.publish(evolution.runOneGeneration(), evolution.getGeneration());
 					}
 					while(!evolution.isEvolutionCompleted() && !evolutionStatus.equals(EVOLUTION_STATUS.STOPPED));
 					
+					evolution.shutdown();
 					updateEvolutionStatus(EVOLUTION_STATUS.NOT_RUNNING);
+					// Show the last generation, which may have been published after the last frame
+					Platform.runLater(() -> {
+						renderer.stop();
+						renderer.show();
+					});
 					return null;
 				}
 			};
@@ -0,0 +1,117 @@
+package com.github.boemma.genetic.algorithm.population;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.boemma.genetic.algorithm.gene.Shape;
+
+/**
+ * Bounded cache of the fitness of evaluated shape images, keyed by a 64-bit
+ * hash of their genes. A shape image identical to one evaluated before can take 
+ * its fitness from the cache instead of being painted and compared again.
+ * 
+ * The genes of every cached shape image are kept to verify that a hit is not 
+ * a hash collision. Genes must therefore not be changed after a shape image 
+ * has been put in the cache. When full, the least recently used entry is evicted.
+ * The cache can be shared between threads.
+ * 
+ * @author BoEmma
+ *
+ */
+public class FitnessCache {
+
+	private final LinkedHashMap<Long, Entry> entries;
+	
+	private final AtomicLong lookups = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	
+	/**
+	 * Create a new fitness cache holding at most the given number of entries.
+	 * @param maxEntries - maximum number of cached shape images
+	 */
+	public FitnessCache(final int maxEntries) {
+		entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+	
+	/**
+	 * Looks up the fitness of a shape image with the same genes as the given one,
+	 * and sets it as the fitness of the given shape image if found.
+	 * @param shapeImage - shape image to look up
+	 * @param genomeHash - hash of the genes of the shape image, see {@link ShapeImage#genomeHash()}
+	 * @return true if the fitness was found, false if the shape image must be evaluated
+	 */
+	public boolean lookup(ShapeImage shapeImage, long genomeHash) {
+		lookups.incrementAndGet();
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(genomeHash);
+		}
+		if(entry == null || !Arrays.equals(entry.shapes, shapeImage.getShapes())) {
+			return false;
+		}
+		hits.incrementAndGet();
+		shapeImage.setFitness(entry.fitness);
+		return true;
+	}
+	
+	/**
+	 * Puts the fitness of the given evaluated shape image in the cache.
+	 * @param shapeImage - evaluated shape image
+	 * @param genomeHash - hash of the genes of the shape image, see {@link ShapeImage#genomeHash()}
+	 */
+	public void put(ShapeImage shapeImage, long genomeHash) {
+		Entry entry = new Entry(shapeImage.getShapes(), shapeImage.getFitness());
+		synchronized (entries) {
+			entries.put(genomeHash, entry);
+		}
+	}
+	
+	/**
+	 * Removes all entries, for example when fitness is calculated differently
+	 * from now on. The counters are not reset.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+	
+	/**
+	 * Returns the total number of lookups.
+	 * @return lookup count
+	 */
+	public long getLookupCount() {
+		return lookups.get();
+	}
+	
+	/**
+	 * Returns the total number of lookups which found a fitness.
+	 * @return hit count
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+	
+	/**
+	 * A cached fitness, with the genes it belongs to.
+	 */
+	private static class Entry {
+		
+		private final Shape[] shapes;
+		private final double fitness;
+		
+		private Entry(Shape[] shapes, double fitness) {
+			this.shapes = shapes;
+			this.fitness = fitness;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package com.github.boemma.genetic.algorithm.population;
+
+/**
+ * Ranking index of the fitness of the individuals of a {@link Population}. The
+ * fitness values are kept in a primitive array, updated as individuals are set,
+ * so that selection never has to follow references to the individuals.
+ *
+ * Individuals are set concurrently by the workers breeding a generation, so the
+ * index of the fittest individual and the rank order are not updated on every
+ * change. They are calculated on the first query after a change, once per
+ * generation, and then returned from the cache.
+ *
+ * @author BoEmma
+ *
+ */
+class FitnessRanking {
+
+	/** Fitness of every individual, by index in the population */
+	private final double[] fitness;
+	/** Index of the fittest individual, -1 if not calculated since the last change */
+	private int fittestIndex = -1;
+	/** Indices of the individuals from the fittest to the least fit, null if not sorted since the last change */
+	private int[] order;
+
+	/**
+	 * Create a ranking of a population of the given size, with all fitness values 0.
+	 * @param size - size of the population
+	 */
+	FitnessRanking(int size) {
+		fitness = new double[size];
+	}
+
+	/**
+	 * Sets the fitness of an individual.
+	 * @param index - index in the population
+	 * @param value - fitness of the individual
+	 */
+	synchronized void setFitness(int index, double value) {
+		fitness[index] = value;
+		fittestIndex = -1;
+		order = null;
+	}
+
+	/**
+	 * Returns the fitness of an individual. Only reads the array, so it can be called
+	 * without locking by workers selecting parents while no individuals are being set.
+	 * @param index - index in the population
+	 * @return fitness
+	 */
+	double getFitness(int index) {
+		return fitness[index];
+	}
+
+	/**
+	 * Returns the index of the fittest individual, the first one if several are equally fit.
+	 * @return index in the population
+	 */
+	synchronized int getFittestIndex() {
+		if(fittestIndex < 0) {
+			int fittest = 0;
+			for (int i = 1; i < fitness.length; i++) {
+				if(fitness[i] > fitness[fittest]) {
+					fittest = i;
+				}
+			}
+			fittestIndex = fittest;
+		}
+		return fittestIndex;
+	}
+
+	/**
+	 * Returns the index of the individual at the given rank. Equally fit individuals
+	 * are ranked in the order of their indices.
+	 * @param rank - rank, 0 being the fittest individual
+	 * @return index in the population
+	 */
+	synchronized int getIndex(int rank) {
+		if(order == null) {
+			order = sort();
+		}
+		return order[rank];
+	}
+
+	/**
+	 * Sorts the indices of the individuals by decreasing fitness, with a stable
+	 * merge sort on primitive arrays.
+	 */
+	private int[] sort() {
+		int[] sorted = new int[fitness.length];
+		int[] buffer = new int[fitness.length];
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = i;
+		}
+		for (int width = 1; width < sorted.length; width *= 2) {
+			for (int from = 0; from < sorted.length; from += 2 * width) {
+				int middle = Math.min(from + width, sorted.length);
+				int to = Math.min(from + 2 * width, sorted.length);
+				int left = from;
+				int right = middle;
+				for (int i = from; i < to; i++) {
+					if(right >= to || (left < middle && fitness[sorted[left]] >= fitness[sorted[right]])) {
+						buffer[i] = sorted[left++];
+					}
+					else {
+						buffer[i] = sorted[right++];
+					}
+				}
+			}
+			int[] swap = sorted;
+			sorted = buffer;
+			buffer = swap;
+		}
+		return sorted;
+	}
+
+	/**
+	 * Returns the number of ranked individuals.
+	 * @return size of the population
+	 */
+	int size() {
+		return fitness.length;
+	}
+}
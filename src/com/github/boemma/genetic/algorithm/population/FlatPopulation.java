@@ -0,0 +1,253 @@
+package com.github.boemma.genetic.algorithm.population;
+
+import java.util.SplittableRandom;
+
+import com.github.boemma.genetic.algorithm.gene.Color;
+import com.github.boemma.genetic.algorithm.gene.Shape;
+import com.github.boemma.image.FitnessReference;
+import com.github.boemma.image.ShapeRasterizer;
+
+/**
+ * A population of shape images stored as flat primitive arrays instead of
+ * objects. The genes of all individuals are kept in one array per gene property,
+ * with the genes of individual i starting at index i * numberOfGenes.
+ *
+ * Two generations are kept, the current one and the next one. Offspring are bred
+ * into the next generation, and {@link #swap()} makes it the current one, reusing
+ * the arrays of the old generation for the one after. Nothing is allocated while
+ * breeding and evaluating, except when creating shape image views for the UI.
+ *
+ * For now, all shapes are triangles, like in {@link ShapeImage}.
+ *
+ * @author BoEmma
+ *
+ */
+public class FlatPopulation {
+
+	/** Number of corners of each shape */
+	public static final int CORNERS = 3;
+
+	private final int size;
+	private final int numberOfGenes;
+
+	/** Image specifications */
+	private final int imageWidth;
+	private final int imageHeight;
+
+	/** Gene properties of both generations, indexed by generation first */
+	private final double[][] xCoordinates = new double[2][];
+	private final double[][] yCoordinates = new double[2][];
+	/** Colors packed as 0xRRGGBB */
+	private final int[][] colors = new int[2][];
+	private final double[][] alphas = new double[2][];
+	private final double[][] fitness = new double[2][];
+
+	/** Index of the current generation, 0 or 1 */
+	private int current = 0;
+
+	/**
+	 * Create a new population of the given size with random genes. The fitness of
+	 * the individuals is not calculated, see {@link #evaluate(int, ShapeRasterizer, FitnessReference)}.
+	 * @param size - size of population
+	 * @param numberOfGenes - number of genes (shapes) for each individual
+	 * @param imageWidth - width of the shape images
+	 * @param imageHeight - height of the shape images
+	 * @param random - random source for the genes
+	 */
+	public FlatPopulation(int size, int numberOfGenes, int imageWidth, int imageHeight, SplittableRandom random) {
+		this.size = size;
+		this.numberOfGenes = numberOfGenes;
+		this.imageWidth = imageWidth;
+		this.imageHeight = imageHeight;
+
+		for (int generation = 0; generation < 2; generation++) {
+			xCoordinates[generation] = new double[size * numberOfGenes * CORNERS];
+			yCoordinates[generation] = new double[size * numberOfGenes * CORNERS];
+			colors[generation] = new int[size * numberOfGenes];
+			alphas[generation] = new double[size * numberOfGenes];
+			fitness[generation] = new double[size];
+		}
+
+		for (int gene = 0; gene < size * numberOfGenes; gene++) {
+			colors[current][gene] = (random.nextInt(256) << 16) | (random.nextInt(256) << 8) | random.nextInt(256);
+			alphas[current][gene] = random.nextDouble();
+			for (int corner = 0; corner < CORNERS; corner++) {
+				xCoordinates[current][gene * CORNERS + corner] = random.nextInt(imageWidth);
+			}
+			for (int corner = 0; corner < CORNERS; corner++) {
+				yCoordinates[current][gene * CORNERS + corner] = random.nextInt(imageHeight);
+			}
+		}
+	}
+
+	/**
+	 * Makes the next generation the current one. The old current generation
+	 * will be overwritten when breeding the next one.
+	 */
+	public void swap() {
+		current = 1 - current;
+	}
+
+	/**
+	 * Copies all genes and the fitness of an individual of the current generation
+	 * to the next generation.
+	 * @param source - index in the current generation
+	 * @param target - index in the next generation
+	 */
+	public void copyToNext(int source, int target) {
+		int next = 1 - current;
+		System.arraycopy(xCoordinates[current], source * numberOfGenes * CORNERS,
+							xCoordinates[next], target * numberOfGenes * CORNERS, numberOfGenes * CORNERS);
+		System.arraycopy(yCoordinates[current], source * numberOfGenes * CORNERS,
+							yCoordinates[next], target * numberOfGenes * CORNERS, numberOfGenes * CORNERS);
+		System.arraycopy(colors[current], source * numberOfGenes, colors[next], target * numberOfGenes, numberOfGenes);
+		System.arraycopy(alphas[current], source * numberOfGenes, alphas[next], target * numberOfGenes, numberOfGenes);
+		fitness[next][target] = fitness[current][source];
+	}
+
+	/**
+	 * Copies one gene of an individual of the current generation to
+	 * the same gene of an individual in the next generation.
+	 * @param source - index in the current generation
+	 * @param target - index in the next generation
+	 * @param gene - gene index
+	 */
+	public void copyGeneToNext(int source, int target, int gene) {
+		int next = 1 - current;
+		int from = source * numberOfGenes + gene;
+		int to = target * numberOfGenes + gene;
+		System.arraycopy(xCoordinates[current], from * CORNERS, xCoordinates[next], to * CORNERS, CORNERS);
+		System.arraycopy(yCoordinates[current], from * CORNERS, yCoordinates[next], to * CORNERS, CORNERS);
+		colors[next][to] = colors[current][from];
+		alphas[next][to] = alphas[current][from];
+	}
+
+	/**
+	 * Paints an individual of the next generation and calculates its fitness.
+	 * @param target - index in the next generation
+	 * @param rasterizer - rasterizer with the same size as the shape images
+	 * @param reference - image to compare with, prepared for the fitness function
+	 */
+	public void evaluateNext(int target, ShapeRasterizer rasterizer, FitnessReference reference) {
+		evaluate(1 - current, target, rasterizer, reference);
+	}
+
+	/**
+	 * Paints an individual of the current generation and calculates its fitness.
+	 * @param index - index in the current generation
+	 * @param rasterizer - rasterizer with the same size as the shape images
+	 * @param reference - image to compare with, prepared for the fitness function
+	 */
+	public void evaluate(int index, ShapeRasterizer rasterizer, FitnessReference reference) {
+		evaluate(current, index, rasterizer, reference);
+	}
+
+	private void evaluate(int generation, int index, ShapeRasterizer rasterizer, FitnessReference reference) {
+		rasterizer.clear();
+		for (int gene = index * numberOfGenes; gene < (index + 1) * numberOfGenes; gene++) {
+			rasterizer.fillPolygon(xCoordinates[generation], yCoordinates[generation], gene * CORNERS, CORNERS,
+					colors[generation][gene], ShapeRasterizer.toAlpha(alphas[generation][gene]),
+					0, 0, imageWidth, imageHeight);
+		}
+		fitness[generation][index] = reference.compare(rasterizer.getPixels());
+	}
+
+	/**
+	 * Returns the index of the individual with the highest fitness in the current generation.
+	 * @return index of fittest individual
+	 */
+	public int getFittestIndex() {
+		int fittest = 0;
+		for (int i = 1; i < size; i++) {
+			if(fitness[current][i] > fitness[current][fittest]) {
+				fittest = i;
+			}
+		}
+		return fittest;
+	}
+
+	/**
+	 * Returns the fitness of an individual in the current generation.
+	 * @param index - index in the current generation
+	 * @return fitness
+	 */
+	public double getFitness(int index) {
+		return fitness[current][index];
+	}
+
+	/**
+	 * Creates a shape image with the genes and fitness of an individual in the
+	 * current generation, for example for drawing it in the UI. The shape image
+	 * is a copy and is not updated when the population changes.
+	 * @param index - index in the current generation
+	 * @param reference - image the individuals are compared with
+	 * @return shape image view of the individual
+	 */
+	public ShapeImage toShapeImage(int index, FitnessReference reference) {
+		ShapeImage shapeImage = new ShapeImage(numberOfGenes, reference);
+		for (int i = 0; i < numberOfGenes; i++) {
+			int gene = index * numberOfGenes + i;
+			int rgb = colors[current][gene];
+			Color color = new Color((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF, alphas[current][gene]);
+			double[] x = new double[CORNERS];
+			double[] y = new double[CORNERS];
+			System.arraycopy(xCoordinates[current], gene * CORNERS, x, 0, CORNERS);
+			System.arraycopy(yCoordinates[current], gene * CORNERS, y, 0, CORNERS);
+			shapeImage.setShape(i, new Shape(x, y, color));
+		}
+		shapeImage.setFitness(fitness[current][index]);
+		return shapeImage;
+	}
+
+	/**
+	 * Returns the x-coordinates of all genes in the next generation, for mutating them in place.
+	 * The corners of gene g of individual i start at index (i * numberOfGenes + g) * CORNERS.
+	 * @return x-coordinates of the next generation
+	 */
+	public double[] getNextXCoordinates() {
+		return xCoordinates[1 - current];
+	}
+
+	/**
+	 * Returns the y-coordinates of all genes in the next generation, for mutating them in place.
+	 * The corners of gene g of individual i start at index (i * numberOfGenes + g) * CORNERS.
+	 * @return y-coordinates of the next generation
+	 */
+	public double[] getNextYCoordinates() {
+		return yCoordinates[1 - current];
+	}
+
+	/**
+	 * Returns the colors, packed as 0xRRGGBB, of all genes in the next generation,
+	 * for mutating them in place. Gene g of individual i is at index i * numberOfGenes + g.
+	 * @return colors of the next generation
+	 */
+	public int[] getNextColors() {
+		return colors[1 - current];
+	}
+
+	/**
+	 * Returns the alpha values of all genes in the next generation, for mutating
+	 * them in place. Gene g of individual i is at index i * numberOfGenes + g.
+	 * @return alpha values of the next generation
+	 */
+	public double[] getNextAlphas() {
+		return alphas[1 - current];
+	}
+
+	/**
+	 * Get the size of this population.
+	 * @return number of individuals
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Get the number of genes of each individual.
+	 * @return number of genes
+	 */
+	public int getNumberOfGenes() {
+		return numberOfGenes;
+	}
+}
@@ -1,9 +1,17 @@
 package com.github.boemma.genetic.algorithm.population;
 
-import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import com.github.boemma.image.FitnessReference;
+import com.github.boemma.image.ShapeRasterizer;
 
 /**
- * A population of shape images.
+ * A population of shape images. The fitness of the individuals is kept in a
+ * ranking index as they are set, giving the fittest individuals and parent 
+ * selection without going through the individuals themselves.
+ * 
+ * An individual whose fitness is recalculated after it was set must be set again,
+ * or updated with {@link #updateFitness(int)}.
  * 
  * @author BoEmma
  *
@@ -12,23 +20,37 @@ public class Population {
 
 	/** The shape images */
 	private ShapeImage[] images;
+	/** Fitness of the shape images, and their order by fitness */
+	private final FitnessRanking ranking;
+	
+	/**
+	 * Create a new, empty population of the given size.
+	 * 
+	 * @param size - size of population
+	 */
+	public Population(int size) {
+		images = new ShapeImage[size];
+		ranking = new FitnessRanking(size);
+	}
 	
 	/**
 	 * Create a new population of the given size, where each
-	 * individual will have the given number of genes. 
+	 * individual is initialized with the given number of random genes,
+	 * and its fitness is calculated. 
 	 * 
 	 * @param size - size of population
 	 * @param numberOfGenes - number of genes (shapes) for each individual
-	 * @param initialize - true if the individuals of the population should be initialized
+	 * @param reference - image the individuals are compared with, prepared for the fitness function
+	 * @param random - random source for the genes
 	 */
-	public Population(int size, int numberOfGenes, boolean initializeIndividuals) {	
+	public Population(int size, int numberOfGenes, FitnessReference reference, SplittableRandom random) {	
 		images = new ShapeImage[size];
-		if(initializeIndividuals) {
-			for (int i = 0; i < size; i++) {
-				ShapeImage image = new ShapeImage(numberOfGenes, true);
-				images[i] = image;
-				image.recalculateFitness();
-			}
+		ranking = new FitnessRanking(size);
+		ShapeRasterizer rasterizer = new ShapeRasterizer(reference.getWidth(), reference.getHeight());
+		for (int i = 0; i < size; i++) {
+			ShapeImage image = new ShapeImage(numberOfGenes, reference, random);
+			image.recalculateFitness(rasterizer);
+			setShapeImage(i, image);
 		}
     }
 	
@@ -37,18 +59,139 @@ public class Population {
 	 * @return individual (shape image) with highest fitness
 	 */
 	public ShapeImage getFittest() {
-		return Arrays.stream(images).max((shapeImage1, shapeImage2) 
-				-> Double.compare(shapeImage1.getFitness(), shapeImage2.getFitness())).get();
+		return images[ranking.getFittestIndex()];
+	}
+	
+	/**
+	 * Get the index of the individual with the highest fitness, the first
+	 * one if several are equally fit.
+	 * @return index in population
+	 */
+	public int getFittestIndex() {
+		return ranking.getFittestIndex();
+	}
+	
+	/**
+	 * Get the given number of individuals with the highest fitness, fittest first,
+	 * for example to carry over to the next generation.
+	 * @param count - number of individuals, at most the population size
+	 * @return the fittest shape images
+	 */
+	public ShapeImage[] getFittest(int count) {
+		ShapeImage[] fittest = new ShapeImage[Math.min(count, images.length)];
+		for (int rank = 0; rank < fittest.length; rank++) {
+			fittest[rank] = getRankedShapeImage(rank);
+		}
+		return fittest;
+	}
+	
+	/**
+	 * Gets the individual at the given rank. Equally fit individuals are
+	 * ranked in the order of their indices.
+	 * @param rank - rank, 0 being the fittest individual
+	 * @return shape image at the given rank
+	 */
+	public ShapeImage getRankedShapeImage(int rank) {
+		return images[ranking.getIndex(rank)];
+	}
+	
+	/**
+	 * Gets the index of the individual at the given rank.
+	 * @param rank - rank, 0 being the fittest individual
+	 * @return index in population
+	 */
+	public int getRankedIndex(int rank) {
+		return ranking.getIndex(rank);
+	}
+	
+	/**
+	 * Gets the fitness of the individual at the given rank.
+	 * @param rank - rank, 0 being the fittest individual
+	 * @return fitness
+	 */
+	public double getRankedFitness(int rank) {
+		return ranking.getFitness(ranking.getIndex(rank));
+	}
+	
+	/**
+	 * Gets the fitness of the individual with the given index, as it was when set.
+	 * @param index - index in population
+	 * @return fitness
+	 */
+	public double getFitness(int index) {
+		return ranking.getFitness(index);
+	}
+	
+	/**
+	 * Selects the fittest of a number of randomly chosen individuals, the first
+	 * one drawn if several are equally fit.
+	 * @param random - random source choosing the individuals
+	 * @param tournamentSize - number of individuals taking part
+	 * @return the winning shape image
+	 */
+	public ShapeImage selectByTournament(SplittableRandom random, int tournamentSize) {
+		int winner = -1;
+		for (int i = 0; i < tournamentSize; i++) {
+			int candidate = random.nextInt(images.length);
+			if(winner < 0 || ranking.getFitness(winner) < ranking.getFitness(candidate)) {
+				winner = candidate;
+			}
+		}
+		return images[winner];
+	}
+	
+	/**
+	 * Selects an individual with linear ranking, where the probability of an
+	 * individual decreases linearly with its rank. With selection pressure 2, the
+	 * fittest individual is twice as likely as an average one, and the least fit is 
+	 * never selected. With selection pressure 1, all individuals are equally likely.
+	 * @param random - random source
+	 * @param selectionPressure - expected number of selections of the fittest individual per 
+	 * 					population size selections, between 1 and 2
+	 * @return the selected shape image
+	 */
+	public ShapeImage selectByRank(SplittableRandom random, double selectionPressure) {
+		if(selectionPressure < 1 || selectionPressure > 2) {
+			throw new IllegalArgumentException("Selection pressure " + selectionPressure + " must be between 1 and 2!");
+		}
+		double u = random.nextDouble();
+		// Inverse of the cumulative distribution s*x - (s-1)*x^2 of the relative rank x
+		double x = selectionPressure == 1 ? u : (selectionPressure 
+				- Math.sqrt(selectionPressure * selectionPressure - 4 * (selectionPressure - 1) * u)) / (2 * (selectionPressure - 1));
+		return getRankedShapeImage(Math.min(images.length - 1, (int) (x * images.length)));
+	}
+	
+	/**
+	 * Selects one of the given number of fittest individuals, with equal probability.
+	 * @param random - random source
+	 * @param count - number of the fittest individuals to choose from
+	 * @return the selected shape image
+	 */
+	public ShapeImage selectByTruncation(SplittableRandom random, int count) {
+		if(count < 1 || count > images.length) {
+			throw new IllegalArgumentException("Truncation count " + count + " must be between 1 and the population size!");
+		}
+		return getRankedShapeImage(random.nextInt(count));
 	}
 	
 	/**
 	 * Add the given shape image to the population at the specified
-	 * index.
+	 * index. Individuals at different indices can be set from different threads.
 	 * @param index - index in population
 	 * @param image - image to add to population
 	 */
 	public void setShapeImage(int index, ShapeImage image) {
 		images[index] = image;
+		ranking.setFitness(index, image.getFitness());
+	}
+	
+	/**
+	 * Updates the ranking after the fitness of the individual with the given
+	 * index has been recalculated.
+	 * @param index - index in population
+	 */
+	public void updateFitness(int index) {
+		ranking.setFitness(index, images[index].getFitness());
 	}
 	
 	/**
@@ -59,4 +202,12 @@ public class Population {
 	public ShapeImage getShapeImageIndividual(int index) {
 		return images[index];
 	}
+	
+	/**
+	 * Get the size of this population.
+	 * @return number of individuals
+	 */
+	public int getSize() {
+		return images.length;
+	}
 }
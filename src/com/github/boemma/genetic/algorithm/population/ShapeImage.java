@@ -1,16 +1,17 @@
 package com.github.boemma.genetic.algorithm.population;
 
-import java.util.Random;
-import java.util.concurrent.CountDownLatch;
+import java.util.SplittableRandom;
 
 import com.github.boemma.genetic.algorithm.gene.Color;
 import com.github.boemma.genetic.algorithm.gene.Shape;
-import com.github.boemma.ui.javafx.JavaFXImageComparator;
-import com.github.boemma.ui.javafx.JavaFXPaintUtils;
-import com.github.boemma.ui.javafx.ReferenceImage;
-
-import javafx.application.Platform;
-import javafx.scene.image.Image;
+import com.github.boemma.image.BoundedComparison;
+import com.github.boemma.image.CompositeCache;
+import com.github.boemma.image.FitnessReference;
+import com.github.boemma.image.ImagePyramid;
+import com.github.boemma.image.ImageSource;
+import com.github.boemma.image.IncrementalRender;
+import com.github.boemma.image.PixelSample;
+import com.github.boemma.image.ShapeRasterizer;
 
 /**
  * A representation of an image consisting of a number of 
@@ -30,61 +31,227 @@ public class ShapeImage {
 	
 	/** The current fitness of this individual */
 	private double fitness;
+	/** True if the fitness is only an estimate from a sample of the pixels */
+	private boolean fitnessEstimated;
+	
+	/** Rendered pixels and tile differences, only kept with incremental evaluation */
+	private IncrementalRender render;
 	
 	/** Image specifications */
 	private int imageHeight;
 	private int imageWidth;
+	
+	/** The image this shape image is compared with when calculating its fitness, prepared for a fitness function */
+	private FitnessReference reference;
 
 	/**
-	 * Create a new shape image with the given number of genes (shapes).
+	 * Create a new shape image with the given number of genes (shapes), 
+	 * with the same size as the given reference image. The genes are not initialized.
 	 * @param numberOfGenes - number of genes/shapes
-	 * @param initializeGenes - true if initialize with random genes
+	 * @param reference - image to compare with when calculating the fitness
 	 */
-	public ShapeImage(int numberOfGenes, boolean initializeGenes) {
+	public ShapeImage(int numberOfGenes, FitnessReference reference) {
 		this.shapes = new Shape[numberOfGenes];
-		this.imageHeight = ReferenceImage.getInstance().getImageHeight();
-		this.imageWidth = ReferenceImage.getInstance().getImageWidth();
+		this.reference = reference;
+		this.imageHeight = reference.getHeight();
+		this.imageWidth = reference.getWidth();
+	}
 	
-		if(initializeGenes) {
-			Random random = new Random();
+	/**
+	 * Create a new shape image with the given number of random genes (shapes), 
+	 * with the same size as the given reference image.
+	 * @param numberOfGenes - number of genes/shapes
+	 * @param reference - image to compare with when calculating the fitness
+	 * @param random - random source for the genes
+	 */
+	public ShapeImage(int numberOfGenes, FitnessReference reference, SplittableRandom random) {
+		this(numberOfGenes, reference);
 		
-			for(int i = 0; i<numberOfGenes; i++) {
-				Color color = new Color(random.nextInt(256), random.nextInt(256), 
-											random.nextInt(256), random.nextDouble());
-				//TODO: For now, only create triangles, but can easily extended to use shapes with n number of corners
-				//Pass number of corners as argument to the constructor
-				shapes[i] = new Shape(new double[]{random.nextInt(imageWidth), random.nextInt(imageWidth), random.nextInt(imageWidth)}, 
-					new double[]{random.nextInt(imageHeight), random.nextInt(imageHeight), random.nextInt(imageHeight)}, color);
-			}
-		}	
+		for(int i = 0; i<numberOfGenes; i++) {
+			Color color = new Color(random.nextInt(256), random.nextInt(256), 
+										random.nextInt(256), random.nextDouble());
+			//TODO: For now, only create triangles, but can easily extended to use shapes with n number of corners
+			//Pass number of corners as argument to the constructor
+			shapes[i] = new Shape(new double[]{random.nextInt(imageWidth), random.nextInt(imageWidth), random.nextInt(imageWidth)}, 
+				new double[]{random.nextInt(imageHeight), random.nextInt(imageHeight), random.nextInt(imageHeight)}, color);
+		}
 	}
 	
 	/**
-	 * Recalculates the fitness of this shape image.
+	 * Create a shape image with the given genes and an already calculated fitness,
+	 * for example when restoring a saved population. The genes are not copied.
+	 * @param shapes - genes/shapes
+	 * @param fitness - fitness of the genes compared with the reference image
+	 * @param reference - image to compare with when calculating the fitness
+	 */
+	public ShapeImage(Shape[] shapes, double fitness, FitnessReference reference) {
+		this(0, reference);
+		this.shapes = shapes;
+		this.fitness = fitness;
+	}
+	
+	/**
+	 * Recalculates the fitness of this shape image, using a new rasterizer.
+	 * When recalculating the fitness of many shape images, prefer 
+	 * {@link #recalculateFitness(ShapeRasterizer)} with a reused rasterizer.
 	 */
 	public void recalculateFitness() {
-		if(Platform.isFxApplicationThread()) {
-			Image image = JavaFXPaintUtils.paintShapeImageAsJavaFXImage(this);
-			fitness = JavaFXImageComparator.compareWithReferenceImage(image);
+		recalculateFitness(new ShapeRasterizer(imageWidth, imageHeight));
+	}
+	
+	/**
+	 * Recalculates the fitness of this shape image by painting it with the given
+	 * rasterizer. Can be called from any thread, as long as the rasterizer 
+	 * is not used by another thread at the same time.
+	 * @param rasterizer - rasterizer with the same size as this shape image
+	 */
+	public void recalculateFitness(ShapeRasterizer rasterizer) {
+		recalculateFitness(rasterizer, reference, 0);
+	}
+	
+	/**
+	 * Recalculates the fitness of this shape image by painting it with the given
+	 * rasterizer, and comparing it with the given target instead of the reference image.
+	 * The comparison stops early if the fitness is found to be below the given minimum,
+	 * and the fitness is then only an upper bound, see {@link #isFitnessEstimated()}.
+	 * @param rasterizer - rasterizer with the same size as the target
+	 * @param target - the reference image, or a level of its {@link ImagePyramid} matching the rasterizer,
+	 * 					prepared for the same fitness function as the reference image
+	 * @param minFitness - fitness below which the shape image is rejected, 0 to always calculate it exactly
+	 */
+	public void recalculateFitness(ShapeRasterizer rasterizer, FitnessReference target, double minFitness) {
+		setFitness(target.compare(shapes, rasterizer, minFitness));
+		render = null;
+	}
+	
+	/**
+	 * Recalculates the fitness of this shape image incrementally, and keeps the
+	 * rendered pixels for images derived from this one. If the given parent has kept 
+	 * its render, only the parts of the image covered by genes differing from the 
+	 * parent are repainted and compared. Otherwise, the whole image is.
+	 * @param rasterizer - rasterizer with the same size as this shape image
+	 * @param parent - shape image this one was derived from, or null
+	 */
+	public void recalculateFitness(ShapeRasterizer rasterizer, ShapeImage parent) {
+		recalculateFitness(rasterizer, parent, reference, 0);
+	}
+	
+	/**
+	 * Recalculates the fitness of this shape image incrementally like
+	 * {@link #recalculateFitness(ShapeRasterizer, ShapeImage)}, comparing it with 
+	 * the given target instead of the reference image. The render of the parent
+	 * must have been compared with the same target. When derived from the parent,
+	 * rendering stops early if the fitness is found to be below the given minimum, 
+	 * and the fitness is then only an upper bound, see {@link #isFitnessEstimated()}.
+	 * @param rasterizer - rasterizer with the same size as the target
+	 * @param parent - shape image this one was derived from, or null
+	 * @param target - the reference image, or a level of its {@link ImagePyramid} matching the rasterizer,
+	 * 					prepared for the same fitness function as the reference image
+	 * @param minFitness - fitness below which the shape image is rejected, 0 to always calculate it exactly
+	 */
+	public void recalculateFitness(ShapeRasterizer rasterizer, ShapeImage parent, FitnessReference target, double minFitness) {
+		if(parent != null && parent.render != null) {
+			render = parent.render.derive(parent.shapes, shapes, rasterizer, target, target.toDifference(minFitness));
 		}
 		else {
-			ShapeImage thisImage = this;
-			final CountDownLatch latch = new CountDownLatch(1);
-			Platform.runLater(new Runnable() {
-				@Override
-				public void run() {
-					Image image = JavaFXPaintUtils.paintShapeImageAsJavaFXImage(thisImage);
-					fitness = JavaFXImageComparator.compareWithReferenceImage(image);
-					latch.countDown();
-				}
-			});
-	
-			try {
-				latch.await();
-			} catch (InterruptedException e) {}
+			render = IncrementalRender.render(shapes, rasterizer, target);
+		}
+		fitness = render.getSimilarity();
+		fitnessEstimated = !render.isComplete();
+		if(fitnessEstimated) {
+			render = null;
 		}
 	}
 	
+	/**
+	 * Recalculates the fitness of this shape image, resuming painting from a cached
+	 * intermediate composite of the given parent when they share a prefix of genes.
+	 * @param rasterizer - rasterizer with the same size as this shape image
+	 * @param parent - shape image this one was derived from
+	 * @param compositeCache - cache of intermediate composites
+	 */
+	public void recalculateFitness(ShapeRasterizer rasterizer, ShapeImage parent, CompositeCache compositeCache) {
+		recalculateFitness(rasterizer, parent, compositeCache, reference, 0);
+	}
+	
+	/**
+	 * Recalculates the fitness of this shape image with a cache of intermediate composites
+	 * like {@link #recalculateFitness(ShapeRasterizer, ShapeImage, CompositeCache)}, 
+	 * comparing it with the given target instead of the reference image. The cache 
+	 * must only hold composites painted with rasterizers of the same size and scale.
+	 * The comparison stops early if the fitness is found to be below the given minimum,
+	 * and the fitness is then only an upper bound, see {@link #isFitnessEstimated()}.
+	 * @param rasterizer - rasterizer with the same size as the target
+	 * @param parent - shape image this one was derived from
+	 * @param compositeCache - cache of intermediate composites
+	 * @param target - the reference image, or a level of its {@link ImagePyramid} matching the rasterizer,
+	 * 					prepared for the same fitness function as the reference image
+	 * @param minFitness - fitness below which the shape image is rejected, 0 to always calculate it exactly
+	 */
+	public void recalculateFitness(ShapeRasterizer rasterizer, ShapeImage parent, CompositeCache compositeCache, 
+			FitnessReference target, double minFitness) {
+		int[] pixels = compositeCache.paint(shapes, parent, parent.shapes, rasterizer);
+		setFitness(target.compare(pixels, minFitness));
+		render = null;
+	}
+	
+	/**
+	 * Returns the number of leading genes this shape image shares with the given one.
+	 * @param other - shape image with the same number of genes
+	 * @return number of identical genes before the first differing one
+	 */
+	public int countSharedPrefix(ShapeImage other) {
+		int count = 0;
+		while(count < shapes.length && shapes[count].equals(other.shapes[count])) {
+			count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Calculates a 64-bit hash of the genes of this shape image. Shape images
+	 * with equal genes have the same hash.
+	 * @return genome hash
+	 */
+	public long genomeHash() {
+		long hash = 0x9E3779B97F4A7C15L;
+		for (Shape shape : shapes) {
+			for (int i = 0; i < shape.getXCoordinates().length; i++) {
+				hash = mix(hash, Double.doubleToLongBits(shape.getXCoordinates()[i]));
+				hash = mix(hash, Double.doubleToLongBits(shape.getYCoordinates()[i]));
+			}
+			Color color = shape.getColor();
+			hash = mix(hash, (color.getRed() << 16) | (color.getGreen() << 8) | color.getBlue());
+			hash = mix(hash, Double.doubleToLongBits(color.getAlpha()));
+		}
+		return hash;
+	}
+	
+	/**
+	 * Mixes a value into a hash, using the finalizer of the SplitMix64 generator.
+	 */
+	private static long mix(long hash, long value) {
+		long z = hash + value * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	/**
+	 * Returns the number of genes this shape image shares with the given one.
+	 * @param other - shape image with the same number of genes
+	 * @return number of identical genes at the same index
+	 */
+	public int countSharedGenes(ShapeImage other) {
+		int count = 0;
+		for (int i = 0; i < shapes.length; i++) {
+			if(shapes[i].equals(other.shapes[i])) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
 	/**
 	 * Returns the fitness of this shape image.
 	 * @return fitness
@@ -93,6 +260,45 @@ public class ShapeImage {
 		return fitness;
 	}
 	
+	/**
+	 * Sets the fitness of this shape image, when it has been calculated elsewhere,
+	 * for example by another process. 
+	 * @param fitness - fitness
+	 */
+	public void setFitness(double fitness) {
+		this.fitness = fitness;
+		this.fitnessEstimated = false;
+	}
+	
+	/**
+	 * Sets the fitness of this shape image from a comparison which may have stopped
+	 * early, in which case the fitness is only an upper bound.
+	 */
+	private void setFitness(BoundedComparison comparison) {
+		this.fitness = comparison.getSimilarity();
+		this.fitnessEstimated = !comparison.isComplete();
+	}
+	
+	/**
+	 * Sets an estimate of the fitness of this shape image, for example from
+	 * a {@link PixelSample}, instead of calculating it exactly.
+	 * @param fitness - estimated fitness
+	 */
+	public void setEstimatedFitness(double fitness) {
+		this.fitness = fitness;
+		this.fitnessEstimated = true;
+		this.render = null;
+	}
+	
+	/**
+	 * Checks if the fitness of this shape image is only an estimate, or an upper
+	 * bound because it was rejected during an early stopped evaluation.
+	 * @return true if the fitness is estimated, false if it has been calculated exactly
+	 */
+	public boolean isFitnessEstimated() {
+		return fitnessEstimated;
+	}
+	
 	/**
 	 * Get all the shapes(genes) of this shape image.
 	 * @return all shapes
@@ -119,6 +325,22 @@ public class ShapeImage {
 		shapes[index] = shape;
 	}
 	
+	/**
+	 * Get the image this shape image is compared with.
+	 * @return reference image
+	 */
+	public ImageSource getReferenceImage() {
+		return reference.getImage();
+	}
+	
+	/**
+	 * Get the image this shape image is compared with, prepared for the fitness function.
+	 * @return prepared reference image
+	 */
+	public FitnessReference getFitnessReference() {
+		return reference;
+	}
+	
 	/**
 	 * Get the height of this shape image.
 	 * @return height
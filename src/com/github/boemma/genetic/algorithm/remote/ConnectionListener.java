@@ -0,0 +1,29 @@
+package com.github.boemma.genetic.algorithm.remote;
+
+import java.net.SocketAddress;
+
+/**
+ * Listener notified when a connection between an evaluation worker and a
+ * coordinator fails or is restored, for example to log it. Failed connections
+ * are handled by {@link RemoteEvaluator} and {@link EvaluationServer} themselves,
+ * so the listener only reports them.
+ *
+ * @author BoEmma
+ *
+ */
+public interface ConnectionListener {
+
+	/**
+	 * Called when a connection failed. Can be called from any thread.
+	 * @param address - address of the other side of the connection
+	 * @param cause - why the connection failed
+	 */
+	void connectionFailed(SocketAddress address, Exception cause);
+
+	/**
+	 * Called when a coordinator connected to a worker again, after the connection failed.
+	 * Can be called from any thread.
+	 * @param address - address of the worker
+	 */
+	void connectionRestored(SocketAddress address);
+}
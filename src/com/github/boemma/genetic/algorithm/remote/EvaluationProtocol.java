@@ -0,0 +1,160 @@
+package com.github.boemma.genetic.algorithm.remote;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import com.github.boemma.genetic.algorithm.io.GenomeEncoding;
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+import com.github.boemma.image.FitnessFunction;
+import com.github.boemma.image.ImageSource;
+import com.github.boemma.image.PixelImage;
+
+/**
+ * Messages exchanged between a {@link RemoteEvaluator} and an {@link EvaluationServer}
+ * over a socket. All values are big-endian.
+ *
+ * <pre>
+ * coordinator, once after connecting:
+ *   int    magic number 0x45534957 ("ESIW")
+ *   int    protocol version
+ *   UTF    fitness function name
+ *   int    image width, image height
+ *   int    reference pixels[width * height], packed as ARGB
+ * worker, once the reference image has been prepared:
+ *   int    magic number, protocol version
+ * coordinator, for each batch:
+ *   int    batch id
+ *   int    number of shape images
+ *   for each shape image:
+ *     int    number of genes
+ *     genes, see {@link GenomeEncoding}
+ * worker, for each batch in the order they were sent:
+ *   int    batch id
+ *   int    number of shape images
+ *   double fitness of each shape image
+ * </pre>
+ *
+ * The coordinator closes the connection when done.
+ *
+ * @author BoEmma
+ *
+ */
+final class EvaluationProtocol {
+
+	static final int MAGIC = 0x45534957;
+	static final int VERSION = 1;
+	/** Largest image accepted by a worker, to reject garbage before allocating its pixels */
+	private static final int MAX_PIXELS = 1 << 28;
+
+	private EvaluationProtocol() {
+	}
+
+	/**
+	 * Writes the reference image and fitness function a worker evaluates with.
+	 */
+	static void writeReference(ImageSource referenceImage, FitnessFunction fitnessFunction, DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeUTF(fitnessFunction.getName());
+		out.writeInt(referenceImage.getWidth());
+		out.writeInt(referenceImage.getHeight());
+		int[] row = new int[referenceImage.getWidth()];
+		for (int y = 0; y < referenceImage.getHeight(); y++) {
+			referenceImage.getRows(y, 1, row);
+			for (int pixel : row) {
+				out.writeInt(pixel);
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * Reads the header of the reference image message, up to the fitness function name.
+	 * @return fitness function name
+	 */
+	static String readReferenceHeader(DataInputStream in) throws IOException {
+		readMagic(in);
+		return in.readUTF();
+	}
+
+	/**
+	 * Reads the reference image following the header.
+	 */
+	static PixelImage readReferenceImage(DataInputStream in) throws IOException {
+		int width = in.readInt();
+		int height = in.readInt();
+		if(width < 1 || height < 1 || (long) width * height > MAX_PIXELS) {
+			throw new IOException("Invalid reference image size " + width + "x" + height);
+		}
+		int[] pixels = new int[width * height];
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = in.readInt();
+		}
+		return new PixelImage(width, height, pixels);
+	}
+
+	/**
+	 * Writes the acknowledgement of a worker which is ready to evaluate.
+	 */
+	static void writeReady(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.flush();
+	}
+
+	/**
+	 * Reads and checks the magic number and protocol version.
+	 */
+	static void readMagic(DataInputStream in) throws IOException {
+		if(in.readInt() != MAGIC) {
+			throw new IOException("Not an evaluation protocol connection");
+		}
+		int version = in.readInt();
+		if(version != VERSION) {
+			throw new IOException("Unsupported evaluation protocol version " + version);
+		}
+	}
+
+	/**
+	 * Writes a batch of shape images to evaluate, without flushing.
+	 */
+	static void writeBatch(int batchId, ShapeImage[] shapeImages, int from, int to, DataOutputStream out) throws IOException {
+		out.writeInt(batchId);
+		out.writeInt(to - from);
+		for (int i = from; i < to; i++) {
+			out.writeInt(shapeImages[i].getShapes().length);
+			GenomeEncoding.write(shapeImages[i].getShapes(), out);
+		}
+	}
+
+	/**
+	 * Writes the fitness values of an evaluated batch.
+	 */
+	static void writeResult(int batchId, double[] fitness, DataOutputStream out) throws IOException {
+		out.writeInt(batchId);
+		out.writeInt(fitness.length);
+		for (double value : fitness) {
+			out.writeDouble(value);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Reads the fitness values of the given batch.
+	 * @throws IOException if the result is not the one of the expected batch
+	 */
+	static double[] readResult(int batchId, int count, DataInputStream in) throws IOException {
+		int resultId = in.readInt();
+		int resultCount = in.readInt();
+		if(resultId != batchId || resultCount != count) {
+			throw new IOException("Expected result of batch " + batchId + " with " + count
+					+ " shape images, got batch " + resultId + " with " + resultCount);
+		}
+		double[] fitness = new double[count];
+		for (int i = 0; i < count; i++) {
+			fitness[i] = in.readDouble();
+		}
+		return fitness;
+	}
+}
@@ -0,0 +1,140 @@
+package com.github.boemma.genetic.algorithm.remote;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import com.github.boemma.genetic.algorithm.gene.Shape;
+import com.github.boemma.genetic.algorithm.io.GenomeEncoding;
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+import com.github.boemma.image.FitnessFunctions;
+import com.github.boemma.image.FitnessReference;
+import com.github.boemma.image.ShapeRasterizer;
+
+/**
+ * Evaluation worker, serving {@link RemoteEvaluator} coordinators connecting over
+ * TCP. Every connection gets the reference image from its coordinator, keeps its
+ * own copy of it prepared for the fitness function, and then paints and scores the
+ * batches of shape images it receives, one after the other, on a thread of its own.
+ * Several coordinators can be served at the same time, each with its own reference.
+ *
+ * @author BoEmma
+ *
+ */
+public class EvaluationServer implements Closeable {
+
+	/** Largest number of shape images or genes accepted in a batch, to reject garbage */
+	private static final int MAX_COUNT = 1 << 20;
+
+	private final ServerSocket serverSocket;
+	/** Listener notified of failed connections, null if they are not reported */
+	private volatile ConnectionListener connectionListener;
+
+	/**
+	 * Create a new evaluation server listening on the given address and port.
+	 * @param bindAddress - address to listen on, the loopback address to only serve this machine
+	 * @param port - port to listen on, 0 for any free port
+	 * @throws IOException if the port can not be opened
+	 */
+	public EvaluationServer(InetAddress bindAddress, int port) throws IOException {
+		serverSocket = new ServerSocket(port, 50, bindAddress);
+	}
+
+	/**
+	 * Accepts and serves connections until the server is closed.
+	 * @throws IOException if accepting connections fails
+	 */
+	public void serve() throws IOException {
+		while(!serverSocket.isClosed()) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (IOException e) {
+				if(serverSocket.isClosed()) {
+					return;
+				}
+				throw e;
+			}
+			Thread thread = new Thread(() -> handle(socket), "evaluation-" + socket.getRemoteSocketAddress());
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Serves one coordinator until it closes the connection.
+	 */
+	private void handle(Socket socket) {
+		try (Socket connection = socket;
+				DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16));
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream(), 1 << 16))) {
+			connection.setTcpNoDelay(true);
+			String fitnessFunction = EvaluationProtocol.readReferenceHeader(in);
+			FitnessReference reference = FitnessFunctions.forName(fitnessFunction).prepare(EvaluationProtocol.readReferenceImage(in));
+			ShapeRasterizer rasterizer = new ShapeRasterizer(reference.getWidth(), reference.getHeight());
+			EvaluationProtocol.writeReady(out);
+
+			while(true) {
+				int batchId;
+				try {
+					batchId = in.readInt();
+				} catch (EOFException e) {
+					// The coordinator is done
+					return;
+				}
+				double[] fitness = new double[readCount(in)];
+				for (int i = 0; i < fitness.length; i++) {
+					Shape[] shapes = GenomeEncoding.read(readCount(in), in);
+					ShapeImage shapeImage = new ShapeImage(shapes, 0, reference);
+					shapeImage.recalculateFitness(rasterizer);
+					fitness[i] = shapeImage.getFitness();
+				}
+				EvaluationProtocol.writeResult(batchId, fitness, out);
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			ConnectionListener listener = connectionListener;
+			if(listener != null) {
+				listener.connectionFailed(socket.getRemoteSocketAddress(), e);
+			}
+		}
+	}
+
+	private static int readCount(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		if(count < 0 || count > MAX_COUNT) {
+			throw new IOException("Invalid count " + count);
+		}
+		return count;
+	}
+
+	/**
+	 * Sets the listener notified when the connection to a coordinator fails.
+	 * @param connectionListener - listener, or null to not report failed connections
+	 */
+	public void setConnectionListener(ConnectionListener connectionListener) {
+		this.connectionListener = connectionListener;
+	}
+
+	/**
+	 * Returns the port the server is listening on.
+	 * @return port
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Stops accepting connections. Connections being served are served until the coordinator closes them.
+	 */
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+	}
+}
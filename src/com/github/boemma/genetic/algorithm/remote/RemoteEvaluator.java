@@ -0,0 +1,313 @@
+package com.github.boemma.genetic.algorithm.remote;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.github.boemma.genetic.algorithm.BatchEvaluator;
+import com.github.boemma.genetic.algorithm.WorkerThreadFactory;
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+import com.github.boemma.image.FitnessFunction;
+import com.github.boemma.image.ImageSource;
+
+/**
+ * Evaluates shape images on worker processes running an {@link EvaluationServer},
+ * on this machine or on others. The offspring of a generation are split into
+ * batches, which are sent to whichever worker is ready for more, so faster
+ * workers get more of them. Every worker has a few batches in flight, so that it
+ * can start on the next batch while the result of the previous one travels back.
+ *
+ * A worker which fails, or does not answer in time, is dropped and the batches it
+ * had in flight are sent to the other workers. Dropped workers are reconnected
+ * from time to time, also during a generation, so restarted workers rejoin the run.
+ * When no worker is left, evaluation waits for one to be restarted for a few
+ * reconnect intervals. Evaluation only fails when no worker came back by then,
+ * or a batch failed on several workers. Failures are reported to the
+ * {@link ConnectionListener}, if one is set.
+ *
+ * @author BoEmma
+ *
+ */
+public class RemoteEvaluator implements BatchEvaluator, AutoCloseable {
+
+	public static final int DEFAULT_BATCH_SIZE = 8;
+	/** Number of batches sent to a worker before waiting for the first result */
+	private static final int PIPELINE_DEPTH = 2;
+	/** Number of workers a batch is tried on before evaluation fails */
+	private static final int MAX_ATTEMPTS = 3;
+	private static final int CONNECT_TIMEOUT = 5000;
+	private static final int READ_TIMEOUT = 120000;
+	/** Milliseconds between attempts to reconnect a dropped worker */
+	private static final long RECONNECT_INTERVAL = 10000;
+
+	private final ImageSource referenceImage;
+	private final FitnessFunction fitnessFunction;
+	private final int batchSize;
+	private final List<Connection> connections = new ArrayList<>();
+	private final ExecutorService executor;
+	private int nextBatchId;
+	/** Listener notified of failed and restored connections, null if they are not reported */
+	private volatile ConnectionListener connectionListener;
+
+	/**
+	 * Create a new remote evaluator, connecting to the given workers and sending them the reference image.
+	 * @param workers - addresses of the workers
+	 * @param referenceImage - full resolution reference image
+	 * @param fitnessFunction - fitness function to evaluate with
+	 * @param batchSize - number of shape images sent to a worker at once
+	 * @param connectionListener - listener notified of failed and restored connections, or null
+	 * @throws IOException if none of the workers could be connected
+	 */
+	public RemoteEvaluator(List<InetSocketAddress> workers, ImageSource referenceImage, FitnessFunction fitnessFunction, 
+			int batchSize, ConnectionListener connectionListener) throws IOException {
+		if(workers.isEmpty()) {
+			throw new IllegalArgumentException("At least one worker is needed !");
+		}
+		if(batchSize < 1) {
+			throw new IllegalArgumentException("The batch size must be at least 1 !");
+		}
+		this.referenceImage = referenceImage;
+		this.fitnessFunction = fitnessFunction;
+		this.batchSize = batchSize;
+		this.connectionListener = connectionListener;
+		IOException failure = null;
+		for (InetSocketAddress worker : workers) {
+			Connection connection = new Connection(worker);
+			connections.add(connection);
+			try {
+				connection.connect();
+			} catch (IOException e) {
+				connection.fail(e);
+				failure = e;
+			}
+		}
+		if(countLiveConnections() == 0) {
+			throw new IOException("No evaluation worker could be connected", failure);
+		}
+		executor = Executors.newFixedThreadPool(workers.size(), new WorkerThreadFactory());
+	}
+
+	@Override
+	public void evaluate(ShapeImage[] shapeImages) {
+		Queue<Batch> pending = new ConcurrentLinkedQueue<>();
+		for (int from = 0; from < shapeImages.length; from += batchSize) {
+			pending.add(new Batch(nextBatchId++, from, Math.min(from + batchSize, shapeImages.length)));
+		}
+		// Rounds in a row without any worker left
+		int idleRounds = 0;
+		// Batches of a failing worker are put back while the others may have finished already, so repeat until none are left
+		while(!pending.isEmpty()) {
+			reconnect();
+			List<Callable<Void>> tasks = new ArrayList<>();
+			for (Connection connection : connections) {
+				if(connection.isLive()) {
+					tasks.add(() -> {
+						connection.evaluate(shapeImages, pending);
+						return null;
+					});
+				}
+			}
+			if(tasks.isEmpty()) {
+				if(++idleRounds > MAX_ATTEMPTS) {
+					throw new IllegalStateException("All evaluation workers failed");
+				}
+				// Give restarted workers a chance to rejoin before failing
+				try {
+					Thread.sleep(RECONNECT_INTERVAL);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for evaluation workers", e);
+				}
+				continue;
+			}
+			idleRounds = 0;
+			try {
+				for (Future<Void> future : executor.invokeAll(tasks)) {
+					future.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while evaluating", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Evaluation failed", e.getCause());
+			}
+			for (Batch batch : pending) {
+				if(batch.attempts >= MAX_ATTEMPTS) {
+					throw new IllegalStateException("Batch " + batch.id + " failed on " + batch.attempts + " workers");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reconnects the dropped workers whose last attempt is long enough ago.
+	 */
+	private void reconnect() {
+		long now = System.currentTimeMillis();
+		for (Connection connection : connections) {
+			if(!connection.isLive() && now - connection.failedAt >= RECONNECT_INTERVAL) {
+				try {
+					connection.connect();
+					ConnectionListener listener = connectionListener;
+					if(listener != null) {
+						listener.connectionRestored(connection.address);
+					}
+				} catch (IOException e) {
+					connection.fail(e);
+				}
+			}
+		}
+	}
+
+	private int countLiveConnections() {
+		int count = 0;
+		for (Connection connection : connections) {
+			if(connection.isLive()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Closes the connections to the workers, which then wait for the next coordinator.
+	 */
+	@Override
+	public void close() {
+		executor.shutdownNow();
+		for (Connection connection : connections) {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Range of shape images sent to a worker together.
+	 */
+	private static class Batch {
+
+		private final int id;
+		private final int from;
+		private final int to;
+		/** Number of workers which failed evaluating this batch */
+		private volatile int attempts;
+
+		private Batch(int id, int from, int to) {
+			this.id = id;
+			this.from = from;
+			this.to = to;
+		}
+	}
+
+	/**
+	 * Connection to one worker, used by one thread at a time.
+	 */
+	private class Connection {
+
+		private final InetSocketAddress address;
+		private Socket socket;
+		private DataInputStream in;
+		private DataOutputStream out;
+		/** Time of the last failure, to delay reconnecting */
+		private volatile long failedAt;
+
+		private Connection(InetSocketAddress address) {
+			this.address = address;
+		}
+
+		private void connect() throws IOException {
+			close();
+			Socket newSocket = new Socket();
+			try {
+				newSocket.connect(address, CONNECT_TIMEOUT);
+				newSocket.setTcpNoDelay(true);
+				newSocket.setSoTimeout(READ_TIMEOUT);
+				DataOutputStream newOut = new DataOutputStream(new BufferedOutputStream(newSocket.getOutputStream(), 1 << 16));
+				DataInputStream newIn = new DataInputStream(new BufferedInputStream(newSocket.getInputStream(), 1 << 16));
+				EvaluationProtocol.writeReference(referenceImage, fitnessFunction, newOut);
+				EvaluationProtocol.readMagic(newIn);
+				out = newOut;
+				in = newIn;
+				socket = newSocket;
+			} catch (IOException e) {
+				newSocket.close();
+				throw e;
+			}
+		}
+
+		private boolean isLive() {
+			return socket != null;
+		}
+
+		/**
+		 * Sends batches from the pending queue to the worker, keeping up to {@link #PIPELINE_DEPTH}
+		 * of them in flight, until none are left. On failure, the batches in flight are put back.
+		 */
+		private void evaluate(ShapeImage[] shapeImages, Queue<Batch> pending) {
+			Queue<Batch> inFlight = new ArrayDeque<>(PIPELINE_DEPTH);
+			try {
+				while(true) {
+					while(inFlight.size() < PIPELINE_DEPTH) {
+						Batch batch = pending.poll();
+						if(batch == null) {
+							break;
+						}
+						inFlight.add(batch);
+						EvaluationProtocol.writeBatch(batch.id, shapeImages, batch.from, batch.to, out);
+					}
+					if(inFlight.isEmpty()) {
+						return;
+					}
+					out.flush();
+					Batch batch = inFlight.peek();
+					double[] fitness = EvaluationProtocol.readResult(batch.id, batch.to - batch.from, in);
+					for (int i = 0; i < fitness.length; i++) {
+						shapeImages[batch.from + i].setFitness(fitness[i]);
+					}
+					inFlight.poll();
+				}
+			} catch (IOException e) {
+				fail(e);
+				for (Batch batch : inFlight) {
+					batch.attempts++;
+					pending.add(batch);
+				}
+			}
+		}
+
+		private void fail(IOException e) {
+			ConnectionListener listener = connectionListener;
+			if(listener != null) {
+				listener.connectionFailed(address, e);
+			}
+			close();
+			failedAt = System.currentTimeMillis();
+		}
+
+		private void close() {
+			if(socket != null) {
+				try {
+					socket.close();
+				} catch (IOException e) {
+					// Nothing left to do with a connection which does not even close
+				}
+				socket = null;
+				in = null;
+				out = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package com.github.boemma.image;
+
+/**
+ * Fitness function summing the absolute differences of the red, green and blue 
+ * values of every pixel (L1 distance). The default fitness function. Compares 
+ * with the fastest available {@link PixelKernel}.
+ * 
+ * @author BoEmma
+ *
+ */
+public class AbsoluteDifferenceFitness extends PixelFitnessFunction {
+
+	/**
+	 * Create the absolute difference fitness function, see {@link FitnessFunctions#ABSOLUTE_DIFFERENCE}.
+	 */
+	AbsoluteDifferenceFitness() {
+		super("l1", 3 * 255);
+	}
+	
+	@Override
+	public long difference(int[] pixels, int[] referencePixels, int from, int to) {
+		return PixelImageComparator.difference(pixels, referencePixels, from, to);
+	}
+}
@@ -0,0 +1,45 @@
+package com.github.boemma.image;
+
+/**
+ * The result of comparing an image with a reference image, stopping as soon
+ * as the similarity is known to be below a minimum. A comparison which ran
+ * to the end is complete, and its similarity is exact, even when it is below
+ * the minimum. A comparison which stopped early is incomplete, and its
+ * similarity is only an upper bound, below the minimum.
+ *
+ * @author BoEmma
+ *
+ */
+public final class BoundedComparison {
+
+	private final double similarity;
+	private final boolean complete;
+
+	/**
+	 * Create a new comparison result.
+	 * @param similarity - similarity in percent, or an upper bound of it if incomplete
+	 * @param complete - false if the comparison stopped early
+	 */
+	public BoundedComparison(double similarity, boolean complete) {
+		this.similarity = similarity;
+		this.complete = complete;
+	}
+
+	/**
+	 * Returns the similarity to the reference image in percent. For an
+	 * incomplete comparison, this is an upper bound of the similarity.
+	 * @return similarity
+	 */
+	public double getSimilarity() {
+		return similarity;
+	}
+
+	/**
+	 * Checks if the comparison ran to the end, or stopped early because the
+	 * similarity was known to be below the minimum.
+	 * @return true if complete, false if the similarity is only an upper bound
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+}
@@ -0,0 +1,215 @@
+package com.github.boemma.image;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.boemma.genetic.algorithm.gene.Shape;
+
+/**
+ * Cache of intermediate composites of shape images. Shapes are painted in
+ * order, so the image after painting shape k only depends on shapes 0..k.
+ * For a cached parent, the composite after every checkpoint interval of shapes
+ * is kept, and a child sharing a prefix of shapes with the parent resumes
+ * painting from the nearest checkpoint instead of from a blank image.
+ *
+ * A parent is cached the second time a child misses it, so that only parents
+ * which are selected repeatedly (like the elite) take up memory. Entries are
+ * evicted least recently used first when the memory limit is reached.
+ *
+ * Parents are identified by identity, so a parent must not change its shapes
+ * after it has been used with this cache. The cache can be shared between threads.
+ *
+ * @author BoEmma
+ *
+ */
+public class CompositeCache {
+
+	/** Maximum number of parents remembered as missed once */
+	private static final int MAX_MISSED_PARENTS = 4096;
+
+	private final int checkpointInterval;
+	private final long maxBytes;
+	private long usedBytes;
+
+	/** Checkpoint composites for each cached parent, in least recently used order */
+	private final LinkedHashMap<Object, int[][]> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/** Parents which have been missed once, and will be cached when missed again */
+	private final LinkedHashMap<Object, Boolean> missedParents = new LinkedHashMap<Object, Boolean>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Object, Boolean> eldest) {
+			return size() > MAX_MISSED_PARENTS;
+		}
+	};
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong skippedShapes = new AtomicLong();
+
+	/**
+	 * Create a new composite cache.
+	 * @param checkpointInterval - number of shapes between checkpoints
+	 * @param maxBytes - maximum memory used by cached composites in bytes
+	 */
+	public CompositeCache(int checkpointInterval, long maxBytes) {
+		if(checkpointInterval < 1) {
+			throw new IllegalArgumentException("Checkpoint interval " + checkpointInterval + " must be at least 1!");
+		}
+		this.checkpointInterval = checkpointInterval;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Paints the given shapes with the given rasterizer, resuming from a checkpoint
+	 * of the given parent if it is cached and shares a prefix of shapes with them.
+	 *
+	 * @param shapes - shapes to paint
+	 * @param parent - identity of the parent
+	 * @param parentShapes - shapes of the parent, same number as the shapes to paint
+	 * @param rasterizer - rasterizer to paint with
+	 *
+	 * @return the buffer of the rasterizer with the painted pixels
+	 */
+	public int[] paint(Shape[] shapes, Object parent, Shape[] parentShapes, ShapeRasterizer rasterizer) {
+		int prefix = 0;
+		while(prefix < shapes.length && shapes[prefix].equals(parentShapes[prefix])) {
+			prefix++;
+		}
+		if(prefix < checkpointInterval) {
+			// Not even the first checkpoint can be used
+			return rasterizer.paint(shapes);
+		}
+
+		int[][] checkpoints = get(parent);
+		if(checkpoints == null) {
+			misses.incrementAndGet();
+			if(!missedBefore(parent)) {
+				return rasterizer.paint(shapes);
+			}
+			checkpoints = paintCheckpoints(parentShapes, rasterizer);
+			put(parent, checkpoints);
+		}
+		else {
+			hits.incrementAndGet();
+		}
+
+		int checkpoint = Math.min(prefix / checkpointInterval, checkpoints.length);
+		int from = checkpoint * checkpointInterval;
+		System.arraycopy(checkpoints[checkpoint - 1], 0, rasterizer.getPixels(), 0, rasterizer.getPixels().length);
+		skippedShapes.addAndGet(from);
+		return rasterizer.paint(shapes, from, shapes.length);
+	}
+
+	/**
+	 * Paints the given shapes from scratch, keeping a copy of the composite
+	 * at every checkpoint.
+	 */
+	private int[][] paintCheckpoints(Shape[] shapes, ShapeRasterizer rasterizer) {
+		int[][] checkpoints = new int[shapes.length / checkpointInterval][];
+		rasterizer.clear();
+		for (int i = 0; i < checkpoints.length; i++) {
+			rasterizer.paint(shapes, i * checkpointInterval, (i + 1) * checkpointInterval);
+			checkpoints[i] = rasterizer.getPixels().clone();
+		}
+		return checkpoints;
+	}
+
+	private synchronized int[][] get(Object parent) {
+		return entries.get(parent);
+	}
+
+	/**
+	 * Remembers that the given parent has been missed.
+	 * @return true if it had been missed before
+	 */
+	private synchronized boolean missedBefore(Object parent) {
+		return missedParents.put(parent, Boolean.TRUE) != null;
+	}
+
+	private synchronized void put(Object parent, int[][] checkpoints) {
+		long bytes = sizeInBytes(checkpoints);
+		if(bytes > maxBytes) {
+			return;
+		}
+		int[][] previous = entries.put(parent, checkpoints);
+		if(previous != null) {
+			usedBytes -= sizeInBytes(previous);
+		}
+		missedParents.remove(parent);
+		usedBytes += bytes;
+
+		Iterator<int[][]> iterator = entries.values().iterator();
+		while(usedBytes > maxBytes && iterator.hasNext()) {
+			usedBytes -= sizeInBytes(iterator.next());
+			iterator.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	private static long sizeInBytes(int[][] checkpoints) {
+		return checkpoints.length == 0 ? 0 : 4L * checkpoints.length * checkpoints[0].length;
+	}
+
+	/**
+	 * Removes all cached composites. The counters are not reset.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		missedParents.clear();
+		usedBytes = 0;
+	}
+
+	/**
+	 * Returns the number of times painting resumed from a cached checkpoint.
+	 * @return hit count
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of times a parent with a usable prefix was not cached.
+	 * @return miss count
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of parents evicted to stay within the memory limit.
+	 * @return eviction count
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * Returns the total number of shapes that did not have to be painted
+	 * thanks to cached checkpoints.
+	 * @return skipped shape count
+	 */
+	public long getSkippedShapeCount() {
+		return skippedShapes.get();
+	}
+
+	/**
+	 * Returns the memory currently used by cached composites.
+	 * @return used memory in bytes
+	 */
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	/**
+	 * Returns the number of shapes between checkpoints.
+	 * @return checkpoint interval
+	 */
+	public int getCheckpointInterval() {
+		return checkpointInterval;
+	}
+}
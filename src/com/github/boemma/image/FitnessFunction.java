@@ -0,0 +1,29 @@
+package com.github.boemma.image;
+
+/**
+ * A measure of how similar a painted image is to a reference image, in percent. 
+ * Everything a fitness function needs to know about a reference image is 
+ * precomputed once by {@link #prepare(ImageSource)}, so that comparing a painted 
+ * image only has to look at its own pixels.
+ * 
+ * Fitness functions are stateless and can be shared between threads. 
+ * See {@link FitnessFunctions} for the built-in ones.
+ * 
+ * @author BoEmma
+ *
+ */
+public interface FitnessFunction {
+
+	/**
+	 * Returns the name of this fitness function, used on the command line and in checkpoints.
+	 * @return fitness function name
+	 */
+	String getName();
+	
+	/**
+	 * Precomputes the data this fitness function needs about the given reference image.
+	 * @param referenceImage - image to compare painted images with
+	 * @return prepared reference image, which can be shared between threads
+	 */
+	FitnessReference prepare(ImageSource referenceImage);
+}
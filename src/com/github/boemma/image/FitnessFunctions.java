@@ -0,0 +1,59 @@
+package com.github.boemma.image;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The built-in fitness functions, which can be looked up by name.
+ * 
+ * @author BoEmma
+ *
+ */
+public class FitnessFunctions {
+
+	/** Absolute RGB difference, the default */
+	public static final FitnessFunction ABSOLUTE_DIFFERENCE = new AbsoluteDifferenceFitness();
+	/** Squared RGB difference */
+	public static final FitnessFunction SQUARED_DIFFERENCE = new SquaredDifferenceFitness();
+	/** Absolute RGB difference weighted by the contribution of every channel to the brightness */
+	public static final FitnessFunction LUMA_WEIGHTED_DIFFERENCE = new LumaWeightedFitness();
+	/** Structural similarity of the brightness in windows of 8x8 pixels */
+	public static final FitnessFunction STRUCTURAL_SIMILARITY = new StructuralSimilarityFitness();
+	
+	private static final List<FitnessFunction> ALL = Collections.unmodifiableList(Arrays.asList(
+			ABSOLUTE_DIFFERENCE, SQUARED_DIFFERENCE, LUMA_WEIGHTED_DIFFERENCE, STRUCTURAL_SIMILARITY));
+	
+	private FitnessFunctions() {
+	}
+	
+	/**
+	 * Returns the default fitness function.
+	 * @return absolute RGB difference
+	 */
+	public static FitnessFunction getDefault() {
+		return ABSOLUTE_DIFFERENCE;
+	}
+	
+	/**
+	 * Returns the built-in fitness function with the given name.
+	 * @param name - name of the fitness function, see {@link FitnessFunction#getName()}
+	 * @return fitness function
+	 */
+	public static FitnessFunction forName(String name) {
+		for (FitnessFunction fitnessFunction : ALL) {
+			if(fitnessFunction.getName().equals(name)) {
+				return fitnessFunction;
+			}
+		}
+		throw new IllegalArgumentException("Unknown fitness function " + name + "!");
+	}
+	
+	/**
+	 * Returns all built-in fitness functions.
+	 * @return unmodifiable list of fitness functions
+	 */
+	public static List<FitnessFunction> getAll() {
+		return ALL;
+	}
+}
@@ -0,0 +1,211 @@
+package com.github.boemma.image;
+
+import com.github.boemma.genetic.algorithm.gene.Shape;
+
+/**
+ * A reference image prepared for a {@link FitnessFunction}, comparing painted 
+ * images with it. The difference of an image is summed over windows of pixels, 
+ * so the difference of a rectangle aligned with the windows can be calculated 
+ * on its own, and differences of adjacent rectangles add up.
+ * 
+ * A prepared reference is never modified, so it can be shared between threads.
+ * 
+ * @author BoEmma
+ *
+ */
+public abstract class FitnessReference {
+
+	/** Minimum number of pixels compared between checks of the bound of a bounded comparison */
+	private static final int BOUND_CHECK_INTERVAL = 4096;
+	
+	private final FitnessFunction fitnessFunction;
+	private final ImageSource image;
+	private final int width;
+	private final int height;
+	private final int windowSize;
+	private final long maxPixelDifference;
+	
+	/**
+	 * Create a new prepared reference image.
+	 * @param fitnessFunction - fitness function the image was prepared for
+	 * @param image - reference image
+	 * @param windowSize - width and height of the windows the difference is summed over, 1 for single pixels
+	 * @param maxPixelDifference - largest difference of a single pixel, the difference at 0% similarity
+	 */
+	protected FitnessReference(FitnessFunction fitnessFunction, ImageSource image, int windowSize, long maxPixelDifference) {
+		if(windowSize < 1) {
+			throw new IllegalArgumentException("Window size " + windowSize + " must be at least 1!");
+		}
+		this.fitnessFunction = fitnessFunction;
+		this.image = image;
+		this.width = image.getWidth();
+		this.height = image.getHeight();
+		this.windowSize = windowSize;
+		this.maxPixelDifference = maxPixelDifference;
+	}
+	
+	/**
+	 * Difference between the given pixels and the reference image within the given 
+	 * rectangle, which must be aligned with the windows: its left and top edges must 
+	 * be multiples of the window size, and so must its right and bottom edges, unless 
+	 * they are the edges of the image.
+	 * @param pixels - pixels packed as ARGB, same size as the reference image
+	 * @param x0 - left edge (inclusive)
+	 * @param y0 - top edge (inclusive)
+	 * @param x1 - right edge (exclusive)
+	 * @param y1 - bottom edge (exclusive)
+	 * 
+	 * @return summed difference, between 0 and the max pixel difference per pixel
+	 */
+	public abstract long difference(int[] pixels, int x0, int y0, int x1, int y1);
+	
+	/**
+	 * Difference between the given pixels and the whole reference image.
+	 * @param pixels - pixels packed as ARGB, same size as the reference image
+	 * 
+	 * @return summed difference
+	 */
+	public long difference(int[] pixels) {
+		return difference(pixels, 0, 0, width, height);
+	}
+	
+	/**
+	 * Compare the given pixels with the reference image.
+	 * @param pixels - pixels packed as ARGB, same size as the reference image
+	 * 
+	 * @return similarity between pixels and reference image in percent
+	 */
+	public double compare(int[] pixels) {
+		if(pixels.length != width * height) {
+			throw new IllegalArgumentException("Images dimensions mismatch!");
+		}
+		return toSimilarity(difference(pixels));
+	}
+	
+	/**
+	 * Compare the given pixels with the reference image like {@link #compare(int[])}, 
+	 * but stop as soon as the similarity is known to be below the given minimum.
+	 * The image is compared in bands of rows, aligned with the windows.
+	 * @param pixels - pixels packed as ARGB, same size as the reference image
+	 * @param minSimilarity - similarity in percent below which the comparison may stop
+	 * 
+	 * @return comparison with the similarity, an upper bound of it below the minimum if stopped early
+	 */
+	public BoundedComparison compare(int[] pixels, double minSimilarity) {
+		if(pixels.length != width * height) {
+			throw new IllegalArgumentException("Images dimensions mismatch!");
+		}
+		int bandRows = (BOUND_CHECK_INTERVAL + width - 1) / width;
+		bandRows = (bandRows + windowSize - 1) / windowSize * windowSize;
+		long maxDifference = toDifference(minSimilarity);
+		long difference = 0;
+		int y = 0;
+		for (; y < height && difference <= maxDifference; y += bandRows) {
+			difference += difference(pixels, 0, y, width, Math.min(height, y + bandRows));
+		}
+		return new BoundedComparison(toSimilarity(difference), y >= height);
+	}
+	
+	/**
+	 * Paints the given shapes with the given rasterizer and compares them with the 
+	 * reference image like {@link #compare(int[], double)}. References which are not
+	 * kept on the heap paint and compare the image piece by piece instead, without
+	 * using the buffer of the rasterizer.
+	 * @param shapes - shapes to paint
+	 * @param rasterizer - rasterizer of the same size as the reference image
+	 * @param minSimilarity - similarity in percent below which the comparison may stop
+	 * 
+	 * @return comparison with the similarity, an upper bound of it below the minimum if stopped early
+	 */
+	public BoundedComparison compare(Shape[] shapes, ShapeRasterizer rasterizer, double minSimilarity) {
+		return compare(rasterizer.paint(shapes), minSimilarity);
+	}
+	
+	/**
+	 * Converts a difference of the whole image into a similarity in percent.
+	 * @param difference - summed difference
+	 * 
+	 * @return similarity in percent
+	 */
+	public double toSimilarity(long difference) {
+		return toSimilarity(difference, width * height);
+	}
+	
+	/**
+	 * Converts a difference summed over the given number of pixels into a similarity in percent.
+	 * @param difference - summed difference
+	 * @param pixelCount - number of pixels the difference was summed over
+	 * 
+	 * @return similarity in percent
+	 */
+	public double toSimilarity(long difference, int pixelCount) {
+		double n = (double) pixelCount * maxPixelDifference;
+		double p1 = difference / n;
+		return 100 - (p1 * 100.0);
+	}
+	
+	/**
+	 * Converts a similarity in percent into the largest difference of the whole 
+	 * image with at least that similarity. The difference is rounded up, so that
+	 * the difference of an image is never below the one of its own similarity,
+	 * which could be the case after rounding errors of the conversions, and an 
+	 * image exactly as similar as a bound is not rejected.
+	 * @param similarity - similarity in percent
+	 * 
+	 * @return summed difference, Long.MAX_VALUE if the similarity is 0 or less
+	 */
+	public long toDifference(double similarity) {
+		if(similarity <= 0) {
+			return Long.MAX_VALUE;
+		}
+		return (long) Math.ceil((100 - similarity) / 100.0 * (width * height) * maxPixelDifference);
+	}
+	
+	/**
+	 * Returns the fitness function this reference image was prepared for.
+	 * @return fitness function
+	 */
+	public FitnessFunction getFitnessFunction() {
+		return fitnessFunction;
+	}
+	
+	/**
+	 * Returns the reference image.
+	 * @return reference image
+	 */
+	public ImageSource getImage() {
+		return image;
+	}
+	
+	/**
+	 * Returns the width of the reference image.
+	 * @return width
+	 */
+	public int getWidth() {
+		return width;
+	}
+	
+	/**
+	 * Returns the height of the reference image.
+	 * @return height
+	 */
+	public int getHeight() {
+		return height;
+	}
+	
+	/**
+	 * Returns the width and height of the windows the difference is summed over.
+	 * @return window size, 1 if the difference is summed over single pixels
+	 */
+	public int getWindowSize() {
+		return windowSize;
+	}
+	
+	/**
+	 * Returns the largest difference of a single pixel.
+	 * @return max pixel difference
+	 */
+	public long getMaxPixelDifference() {
+		return maxPixelDifference;
+	}
+}
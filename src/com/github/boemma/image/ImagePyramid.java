@@ -0,0 +1,162 @@
+package com.github.boemma.image;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Downsampled versions of an image, from the coarsest level to the full
+ * resolution. Shape images can be compared with a coarse level instead of the
+ * full image, by painting them with a {@link ShapeRasterizer} with the scale of
+ * the level, which costs a fraction of the pixels.
+ *
+ * Every level is downsampled from the full image by averaging square blocks
+ * of pixels. The blocks in the last column and row may be smaller.
+ *
+ * @author BoEmma
+ *
+ */
+public class ImagePyramid {
+
+	/** Downsampling factors of the default levels: 1/8, 1/4, 1/2 and full resolution */
+	public static final int[] DEFAULT_FACTORS = {8, 4, 2, 1};
+
+	/** Levels smaller than this in width or height are left out */
+	private static final int MIN_LEVEL_SIZE = 16;
+
+	private final ImageSource[] levels;
+	private final int[] factors;
+
+	/**
+	 * Create a pyramid of the given image with the default levels.
+	 * @param image - full resolution image
+	 */
+	public ImagePyramid(ImageSource image) {
+		this(image, DEFAULT_FACTORS);
+	}
+
+	/**
+	 * Create a pyramid of the given image, with one level for each of the given
+	 * downsampling factors, leaving out levels which would be too small to be useful.
+	 * @param image - full resolution image
+	 * @param factors - downsampling factors in decreasing order, ending with 1
+	 */
+	public ImagePyramid(ImageSource image, int... factors) {
+		if(factors.length == 0 || factors[factors.length - 1] != 1) {
+			throw new IllegalArgumentException("The last downsampling factor must be 1!");
+		}
+		List<Integer> usedFactors = new ArrayList<>();
+		for (int i = 0; i < factors.length; i++) {
+			if(i > 0 && factors[i] >= factors[i - 1]) {
+				throw new IllegalArgumentException("Downsampling factors must be decreasing!");
+			}
+			if(factors[i] == 1 || (image.getWidth() / factors[i] >= MIN_LEVEL_SIZE
+					&& image.getHeight() / factors[i] >= MIN_LEVEL_SIZE)) {
+				usedFactors.add(factors[i]);
+			}
+		}
+		this.levels = new ImageSource[usedFactors.size()];
+		this.factors = new int[usedFactors.size()];
+		for (int i = 0; i < levels.length; i++) {
+			this.factors[i] = usedFactors.get(i);
+			levels[i] = downsample(image, this.factors[i]);
+		}
+	}
+
+	/**
+	 * Downsamples the given image by averaging blocks of pixels, reading it one
+	 * row of blocks at a time.
+	 * @param image - image to downsample
+	 * @param factor - width and height of the blocks
+	 * @return downsampled image, the given image if the factor is 1
+	 */
+	public static ImageSource downsample(ImageSource image, int factor) {
+		if(factor == 1) {
+			return image;
+		}
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int levelWidth = (width + factor - 1) / factor;
+		int levelHeight = (height + factor - 1) / factor;
+		int[] source = new int[factor * width];
+		int[] pixels = new int[levelWidth * levelHeight];
+
+		for (int levelY = 0; levelY < levelHeight; levelY++) {
+			int y0 = levelY * factor;
+			int y1 = Math.min(height, y0 + factor);
+			image.getRows(y0, y1 - y0, source);
+			for (int levelX = 0; levelX < levelWidth; levelX++) {
+				int red = 0;
+				int green = 0;
+				int blue = 0;
+				int count = 0;
+				for (int y = 0; y < y1 - y0; y++) {
+					for (int x = levelX * factor; x < Math.min(width, (levelX + 1) * factor); x++) {
+						int pixel = source[y * width + x];
+						red += (pixel >> 16) & 0xFF;
+						green += (pixel >> 8) & 0xFF;
+						blue += pixel & 0xFF;
+						count++;
+					}
+				}
+				pixels[levelY * levelWidth + levelX] = 0xFF000000
+						| ((red + count / 2) / count) << 16
+						| ((green + count / 2) / count) << 8
+						| ((blue + count / 2) / count);
+			}
+		}
+		return new PixelImage(levelWidth, levelHeight, pixels);
+	}
+
+	/**
+	 * Returns the number of levels.
+	 * @return level count
+	 */
+	public int getLevelCount() {
+		return levels.length;
+	}
+
+	/**
+	 * Returns the image of a level, level 0 being the coarsest one.
+	 * @param level - level index
+	 * @return downsampled image
+	 */
+	public ImageSource getLevel(int level) {
+		return levels[level];
+	}
+
+	/**
+	 * Returns the downsampling factor of a level.
+	 * @param level - level index
+	 * @return width and height of the blocks of pixels averaged, 1 at full resolution
+	 */
+	public int getFactor(int level) {
+		return factors[level];
+	}
+
+	/**
+	 * Returns the factor shape coordinates are multiplied with when painting them
+	 * at a level.
+	 * @param level - level index
+	 * @return scale of the level
+	 */
+	public double getScale(int level) {
+		return 1.0 / factors[level];
+	}
+
+	/**
+	 * Creates a rasterizer painting shapes at a level.
+	 * @param level - level index
+	 * @return rasterizer of the size and scale of the level
+	 */
+	public ShapeRasterizer createRasterizer(int level) {
+		return new ShapeRasterizer(levels[level].getWidth(), levels[level].getHeight(), getScale(level));
+	}
+
+	/**
+	 * Returns the full resolution image, which is the last level.
+	 * @return full resolution image
+	 */
+	public ImageSource getFullResolution() {
+		return levels[levels.length - 1];
+	}
+}
@@ -0,0 +1,33 @@
+package com.github.boemma.image;
+
+/**
+ * An image whose pixels can be read row by row, wherever they are stored:
+ * in an array on the heap, see {@link PixelImage}, or off the heap in tiles,
+ * see {@link TiledPixelImage}. Reference images are prepared for a
+ * {@link FitnessFunction} from an image source.
+ * 
+ * @author BoEmma
+ *
+ */
+public interface ImageSource {
+
+	/**
+	 * Get the width of this image.
+	 * @return width
+	 */
+	int getWidth();
+	
+	/**
+	 * Get the height of this image.
+	 * @return height
+	 */
+	int getHeight();
+	
+	/**
+	 * Copies whole rows of pixels into the given array. Can be called from any thread.
+	 * @param y - first row
+	 * @param rowCount - number of rows
+	 * @param pixels - array receiving the pixels packed as ARGB, row by row, the width of this image each
+	 */
+	void getRows(int y, int rowCount, int[] pixels);
+}
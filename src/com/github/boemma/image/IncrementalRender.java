@@ -0,0 +1,398 @@
+package com.github.boemma.image;
+
+import java.util.Arrays;
+
+import com.github.boemma.genetic.algorithm.gene.Shape;
+
+/**
+ * The rendered pixels of a shape image together with its difference to
+ * the reference image, summed per tile of a coarse grid over the image.
+ * The tiles are aligned with the windows of every built-in {@link FitnessFunction}.
+ *
+ * A render of an image derived from another image, differing in only a few
+ * shapes, is created by copying the render of the other image and repainting
+ * and comparing only the tiles covered by the changed shapes. The tiles
+ * covered by each shape are kept with the render, so that only those of the
+ * changed shapes are calculated again.
+ *
+ * A render is never modified after it has been created, so it can be shared
+ * between threads and between identical images.
+ *
+ * Every render keeps all its pixels on the heap, also when the reference image
+ * is a {@link TiledPixelImage}, so incremental evaluation does not keep the heap
+ * small for very large images.
+ *
+ * @author BoEmma
+ *
+ */
+public class IncrementalRender {
+
+	/** Width and height of a tile in pixels */
+	public static final int TILE_SIZE = 32;
+
+	private final int[] pixels;
+	private final long[] tileDifferences;
+	/** Tiles overlapped by each shape, four values per shape, see {@link TileGrid#tileBounds(Shape, int[], int)} */
+	private final int[] shapeTileBounds;
+	private final long difference;
+	/** Similarity corresponding to the difference */
+	private final double similarity;
+	/** False if rendering stopped early, and the difference is only a lower bound */
+	private final boolean complete;
+
+	private IncrementalRender(int[] pixels, long[] tileDifferences, int[] shapeTileBounds, long difference, 
+			boolean complete, FitnessReference reference) {
+		this.pixels = pixels;
+		this.tileDifferences = tileDifferences;
+		this.shapeTileBounds = shapeTileBounds;
+		this.difference = difference;
+		this.similarity = reference.toSimilarity(difference);
+		this.complete = complete;
+	}
+
+	/**
+	 * Paints all the given shapes and compares every tile with the reference image.
+	 * @param shapes - shapes to paint
+	 * @param rasterizer - rasterizer of the same size as the reference image
+	 * @param reference - reference image to compare with, prepared for a fitness function
+	 *
+	 * @return new render
+	 */
+	public static IncrementalRender render(Shape[] shapes, ShapeRasterizer rasterizer, FitnessReference reference) {
+		int[] pixels = new int[reference.getWidth() * reference.getHeight()];
+		int[] ownPixels = rasterizer.getPixels();
+		rasterizer.setPixels(pixels);
+		rasterizer.paint(shapes);
+		rasterizer.setPixels(ownPixels);
+
+		TileGrid grid = new TileGrid(reference, rasterizer.getScale());
+		long[] tileDifferences = new long[grid.tileCount];
+		long difference = 0;
+		for (int tile = 0; tile < grid.tileCount; tile++) {
+			tileDifferences[tile] = grid.difference(tile, pixels);
+			difference += tileDifferences[tile];
+		}
+		int[] shapeTileBounds = new int[4 * shapes.length];
+		for (int i = 0; i < shapes.length; i++) {
+			grid.tileBounds(shapes[i], shapeTileBounds, 4 * i);
+		}
+		return new IncrementalRender(pixels, tileDifferences, shapeTileBounds, difference, true, reference);
+	}
+
+	/**
+	 * Creates the render of an image derived from the image with the given render.
+	 * Only tiles overlapped by shapes differing between the two images, before or after
+	 * the change, are repainted and compared.
+	 *
+	 * @param parentShapes - shapes of the image the parent render belongs to
+	 * @param shapes - shapes of the derived image, same number as the parent shapes
+	 * @param rasterizer - rasterizer of the same size as the reference image
+	 * @param reference - reference image to compare with, the same as this render was compared with
+	 *
+	 * @return render of the derived image, this render if no shape differs
+	 */
+	public IncrementalRender derive(Shape[] parentShapes, Shape[] shapes, ShapeRasterizer rasterizer,
+			FitnessReference reference) {
+		return derive(parentShapes, shapes, rasterizer, reference, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Creates the render of a derived image like {@link #derive(Shape[], Shape[], ShapeRasterizer, FitnessReference)},
+	 * but stops as soon as the difference of the derived image is known to be above the 
+	 * given bound. The rows of dirty tiles are repainted and compared one at a time, those
+	 * where this render has the highest difference first, since changes there are most 
+	 * likely to make a difference. A stopped render is incomplete: its difference is only
+	 * a lower bound, above the given one, and it must not be derived from.
+	 *
+	 * @param parentShapes - shapes of the image the parent render belongs to
+	 * @param shapes - shapes of the derived image, same number as the parent shapes
+	 * @param rasterizer - rasterizer of the same size as the reference image
+	 * @param reference - reference image to compare with, the same as this render was compared with
+	 * @param maxDifference - difference above which the derived image is rejected
+	 *
+	 * @return render of the derived image, this render if no shape differs
+	 */
+	public IncrementalRender derive(Shape[] parentShapes, Shape[] shapes, ShapeRasterizer rasterizer,
+			FitnessReference reference, long maxDifference) {
+		TileGrid grid = new TileGrid(reference, rasterizer.getScale());
+		boolean[] dirty = new boolean[grid.tileCount];
+		// The bounds of the parent shapes are kept, only those of the changed shapes are calculated
+		int[] newShapeTileBounds = null;
+		for (int i = 0; i < shapes.length; i++) {
+			if(!shapes[i].equals(parentShapes[i])) {
+				if(newShapeTileBounds == null) {
+					newShapeTileBounds = shapeTileBounds.clone();
+				}
+				grid.markTiles(shapeTileBounds, 4 * i, dirty);
+				grid.tileBounds(shapes[i], newShapeTileBounds, 4 * i);
+				grid.markTiles(newShapeTileBounds, 4 * i, dirty);
+			}
+		}
+		if(newShapeTileBounds == null) {
+			return this;
+		}
+
+		// Difference of the clean tiles, a lower bound until all dirty tiles are compared.
+		// Rows are ordered by the difference of their dirty tiles, plus one per dirty tile
+		// so that only rows without dirty tiles are zero.
+		long knownDifference = difference;
+		long[] rowDifferences = new long[grid.rows];
+		for (int tile = 0; tile < grid.tileCount; tile++) {
+			if(dirty[tile]) {
+				knownDifference -= tileDifferences[tile];
+				rowDifferences[tile / grid.columns] += tileDifferences[tile] + 1;
+			}
+		}
+		int[] rowOrder = sortByDecreasingValue(rowDifferences);
+		int[] rowShapeStarts = new int[grid.rows + 1];
+		int[] rowShapes = indexShapesByRow(newShapeTileBounds, rowDifferences, rowShapeStarts);
+
+		int[] newPixels = pixels.clone();
+		long[] newTileDifferences = tileDifferences.clone();
+		int[] ownPixels = rasterizer.getPixels();
+		rasterizer.setPixels(newPixels);
+		try {
+			for (int row : rowOrder) {
+				if(rowDifferences[row] == 0) {
+					// Rows without dirty tiles are sorted last
+					break;
+				}
+				knownDifference += deriveRow(row, dirty, shapes, newShapeTileBounds, rowShapes, rowShapeStarts, 
+						grid, rasterizer, newPixels, newTileDifferences);
+				if(knownDifference > maxDifference) {
+					return new IncrementalRender(newPixels, newTileDifferences, newShapeTileBounds, knownDifference, false, reference);
+				}
+			}
+		} finally {
+			rasterizer.setPixels(ownPixels);
+		}
+		return new IncrementalRender(newPixels, newTileDifferences, newShapeTileBounds, knownDifference, true, reference);
+	}
+
+	/**
+	 * Lists the shapes overlapping each row of tiles with dirty tiles, so that repainting
+	 * a row only looks at the shapes overlapping it. The shapes of a row are listed in 
+	 * painting order, from the index stored for the row in the given starts array to
+	 * the one stored for the next row.
+	 * @param shapeTileBounds - tile bounds of the shapes, 4 per shape
+	 * @param rowDifferences - differences of the rows, 0 for rows without dirty tiles
+	 * @param rowShapeStarts - array receiving the start of the shapes of every row, one longer than the rows
+	 * @return indices of the shapes of all rows, row by row
+	 */
+	private static int[] indexShapesByRow(int[] shapeTileBounds, long[] rowDifferences, int[] rowShapeStarts) {
+		for (int offset = 0; offset < shapeTileBounds.length; offset += 4) {
+			if(shapeTileBounds[offset] <= shapeTileBounds[offset + 2]) {
+				for (int row = shapeTileBounds[offset + 1]; row <= shapeTileBounds[offset + 3]; row++) {
+					if(rowDifferences[row] != 0) {
+						rowShapeStarts[row + 1]++;
+					}
+				}
+			}
+		}
+		for (int row = 0; row < rowDifferences.length; row++) {
+			rowShapeStarts[row + 1] += rowShapeStarts[row];
+		}
+		int[] rowShapes = new int[rowShapeStarts[rowDifferences.length]];
+		int[] next = Arrays.copyOf(rowShapeStarts, rowDifferences.length);
+		for (int offset = 0; offset < shapeTileBounds.length; offset += 4) {
+			if(shapeTileBounds[offset] <= shapeTileBounds[offset + 2]) {
+				for (int row = shapeTileBounds[offset + 1]; row <= shapeTileBounds[offset + 3]; row++) {
+					if(rowDifferences[row] != 0) {
+						rowShapes[next[row]++] = offset / 4;
+					}
+				}
+			}
+		}
+		return rowShapes;
+	}
+
+	/**
+	 * Repaints and compares the dirty tiles of one row of tiles. The shapes overlapping
+	 * the row are painted in order, each clipped to the runs of dirty tiles it overlaps.
+	 * @return summed difference of the dirty tiles of the row
+	 */
+	private static long deriveRow(int row, boolean[] dirty, Shape[] shapes, int[] shapeTileBounds, int[] rowShapes,
+			int[] rowShapeStarts, TileGrid grid, ShapeRasterizer rasterizer, int[] newPixels, long[] newTileDifferences) {
+		for (int tile = row * grid.columns; tile < (row + 1) * grid.columns; tile++) {
+			if(dirty[tile]) {
+				rasterizer.clear(grid.x0(tile), grid.y0(tile), grid.x1(tile), grid.y1(tile));
+			}
+		}
+		for (int k = rowShapeStarts[row]; k < rowShapeStarts[row + 1]; k++) {
+			int i = rowShapes[k];
+			int offset = 4 * i;
+			int lastColumn = shapeTileBounds[offset + 2];
+			int column = shapeTileBounds[offset];
+			while(column <= lastColumn) {
+				if(!dirty[row * grid.columns + column]) {
+					column++;
+					continue;
+				}
+				int runStart = column;
+				while(column <= lastColumn && dirty[row * grid.columns + column]) {
+					column++;
+				}
+				int first = row * grid.columns + runStart;
+				int last = row * grid.columns + column - 1;
+				rasterizer.fillShape(shapes[i], grid.x0(first), grid.y0(first), grid.x1(last), grid.y1(last));
+			}
+		}
+		long rowDifference = 0;
+		for (int tile = row * grid.columns; tile < (row + 1) * grid.columns; tile++) {
+			if(dirty[tile]) {
+				newTileDifferences[tile] = grid.difference(tile, newPixels);
+				rowDifference += newTileDifferences[tile];
+			}
+		}
+		return rowDifference;
+	}
+
+	/**
+	 * Returns the indices of the given values, ordered by decreasing value.
+	 */
+	private static int[] sortByDecreasingValue(long[] values) {
+		int[] order = new int[values.length];
+		for (int i = 0; i < order.length; i++) {
+			int j = i;
+			while(j > 0 && values[order[j - 1]] < values[i]) {
+				order[j] = order[j - 1];
+				j--;
+			}
+			order[j] = i;
+		}
+		return order;
+	}
+
+	/**
+	 * Returns the rendered pixels, packed as ARGB. The array must not be modified.
+	 * @return pixels
+	 */
+	public int[] getPixels() {
+		return pixels;
+	}
+
+	/**
+	 * Returns the summed difference to the reference image for each tile,
+	 * row by row. The array must not be modified.
+	 * @return difference per tile
+	 */
+	public long[] getTileDifferences() {
+		return tileDifferences;
+	}
+
+	/**
+	 * Returns the summed difference to the reference image.
+	 * @return difference
+	 */
+	public long getDifference() {
+		return difference;
+	}
+
+	/**
+	 * Checks if this render is complete, or if rendering stopped early because
+	 * the difference went over a bound.
+	 * @return true if complete, false if the difference is only a lower bound
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Returns the similarity to the reference image in percent. For an
+	 * incomplete render, this is an upper bound of the similarity.
+	 * @return similarity
+	 */
+	public double getSimilarity() {
+		return similarity;
+	}
+
+	/**
+	 * A grid of tiles covering an image. Tiles in the last column and row
+	 * may be smaller than the others.
+	 */
+	static class TileGrid {
+
+		final FitnessReference reference;
+		final int width;
+		final int height;
+		final int columns;
+		final int rows;
+		final int tileCount;
+		/** Factor the coordinates of the shapes are multiplied with */
+		final double scale;
+
+		TileGrid(FitnessReference reference, double scale) {
+			if(TILE_SIZE % reference.getWindowSize() != 0) {
+				throw new IllegalArgumentException("Tile size " + TILE_SIZE + " is not a multiple of the window size " 
+						+ reference.getWindowSize() + " of the fitness function!");
+			}
+			this.reference = reference;
+			this.width = reference.getWidth();
+			this.height = reference.getHeight();
+			this.scale = scale;
+			this.columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+			this.rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+			this.tileCount = columns * rows;
+		}
+
+		int x0(int tile) {
+			return (tile % columns) * TILE_SIZE;
+		}
+
+		int y0(int tile) {
+			return (tile / columns) * TILE_SIZE;
+		}
+
+		int x1(int tile) {
+			return Math.min(width, x0(tile) + TILE_SIZE);
+		}
+
+		int y1(int tile) {
+			return Math.min(height, y0(tile) + TILE_SIZE);
+		}
+
+		/**
+		 * Stores the first and last column and row of the tiles overlapped by the bounding 
+		 * box of the given shape at the given offset, as {column0, row0, column1, row1}.
+		 * The range is empty (column0 > column1) if the shape is outside the image.
+		 */
+		void tileBounds(Shape shape, int[] bounds, int offset) {
+			double minX = Double.MAX_VALUE;
+			double minY = Double.MAX_VALUE;
+			double maxX = -Double.MAX_VALUE;
+			double maxY = -Double.MAX_VALUE;
+			for (int i = 0; i < shape.getXCoordinates().length; i++) {
+				minX = Math.min(minX, shape.getXCoordinates()[i]);
+				maxX = Math.max(maxX, shape.getXCoordinates()[i]);
+				minY = Math.min(minY, shape.getYCoordinates()[i]);
+				maxY = Math.max(maxY, shape.getYCoordinates()[i]);
+			}
+			int x0 = Math.max(0, (int) Math.floor(minX * scale));
+			int y0 = Math.max(0, (int) Math.floor(minY * scale));
+			int x1 = Math.min(width - 1, (int) Math.ceil(maxX * scale));
+			int y1 = Math.min(height - 1, (int) Math.ceil(maxY * scale));
+			bounds[offset] = x0 / TILE_SIZE;
+			bounds[offset + 1] = y0 / TILE_SIZE;
+			bounds[offset + 2] = x1 / TILE_SIZE;
+			bounds[offset + 3] = y1 / TILE_SIZE;
+		}
+
+		/**
+		 * Marks the tiles within the bounds stored at the given offset as dirty.
+		 */
+		void markTiles(int[] bounds, int offset, boolean[] dirty) {
+			for (int row = bounds[offset + 1]; row <= bounds[offset + 3]; row++) {
+				for (int column = bounds[offset]; column <= bounds[offset + 2]; column++) {
+					dirty[row * columns + column] = true;
+				}
+			}
+		}
+
+		/**
+		 * Summed difference between the given pixels and the reference image within the given tile.
+		 */
+		long difference(int tile, int[] pixels) {
+			return reference.difference(pixels, x0(tile), y0(tile), x1(tile), y1(tile));
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package com.github.boemma.image;
+
+/**
+ * Fitness function summing the absolute differences of the red, green and blue 
+ * values of every pixel, weighted by how much each channel contributes to the 
+ * brightness (luma) of a pixel, with the BT.601 weights 0.299, 0.587 and 0.114.
+ * The eye is most sensitive to differences in brightness, so green errors weigh 
+ * about five times as much as blue ones.
+ * 
+ * @author BoEmma
+ *
+ */
+public class LumaWeightedFitness extends PixelFitnessFunction {
+
+	/** BT.601 luma weights, in thousandths */
+	private static final int RED_WEIGHT = 299;
+	private static final int GREEN_WEIGHT = 587;
+	private static final int BLUE_WEIGHT = 114;
+	
+	/**
+	 * Create the luma weighted fitness function, see {@link FitnessFunctions#LUMA_WEIGHTED_DIFFERENCE}.
+	 */
+	LumaWeightedFitness() {
+		super("luma", 255 * (RED_WEIGHT + GREEN_WEIGHT + BLUE_WEIGHT));
+	}
+	
+	@Override
+	public long difference(int[] pixels, int[] referencePixels, int from, int to) {
+		long difference = 0;
+		for (int i = from; i < to; i++) {
+			int argb1 = pixels[i];
+			int argb2 = referencePixels[i];
+			difference += RED_WEIGHT * Math.abs(((argb1 >> 16) & 0xFF) - ((argb2 >> 16) & 0xFF))
+						+ GREEN_WEIGHT * Math.abs(((argb1 >> 8) & 0xFF) - ((argb2 >> 8) & 0xFF))
+						+ BLUE_WEIGHT * Math.abs((argb1 & 0xFF) - (argb2 & 0xFF));
+		}
+		return difference;
+	}
+}
@@ -0,0 +1,174 @@
+package com.github.boemma.image;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.github.boemma.genetic.algorithm.gene.Shape;
+
+/**
+ * A fitness function summing a difference of every single pixel to the pixel at
+ * the same position of the reference image. Such a difference can be calculated 
+ * for any set of pixels, for example a random sample of rows, see {@link PixelSample}.
+ * 
+ * @author BoEmma
+ *
+ */
+public abstract class PixelFitnessFunction implements FitnessFunction {
+
+	private final String name;
+	private final long maxPixelDifference;
+	
+	/**
+	 * Create a new pixel fitness function.
+	 * @param name - name of the fitness function
+	 * @param maxPixelDifference - largest difference of a single pixel
+	 */
+	protected PixelFitnessFunction(String name, long maxPixelDifference) {
+		this.name = name;
+		this.maxPixelDifference = maxPixelDifference;
+	}
+	
+	/**
+	 * Sum of the differences of the pixels in the given index range.
+	 * @param pixels - pixels packed as ARGB
+	 * @param referencePixels - reference pixels packed as ARGB
+	 * @param from - first index (inclusive)
+	 * @param to - last index (exclusive)
+	 * 
+	 * @return summed difference, between 0 and the max pixel difference per pixel
+	 */
+	public abstract long difference(int[] pixels, int[] referencePixels, int from, int to);
+	
+	/**
+	 * Returns the largest difference of a single pixel.
+	 * @return max pixel difference
+	 */
+	public long getMaxPixelDifference() {
+		return maxPixelDifference;
+	}
+	
+	@Override
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Nothing needs to be precomputed, the pixels of the reference image are compared directly,
+	 * or tile by tile if the reference image is a {@link TiledPixelImage}. Other images are
+	 * read into a {@link PixelImage} first.
+	 */
+	@Override
+	public FitnessReference prepare(ImageSource referenceImage) {
+		if(referenceImage instanceof TiledPixelImage) {
+			return new TiledReference((TiledPixelImage) referenceImage);
+		}
+		return new PixelReference(PixelImage.of(referenceImage));
+	}
+	
+	/**
+	 * A reference image compared pixel by pixel, with windows of a single pixel.
+	 */
+	private class PixelReference extends FitnessReference {
+		
+		private final int[] referencePixels;
+		private final int width;
+		
+		private PixelReference(PixelImage referenceImage) {
+			super(PixelFitnessFunction.this, referenceImage, 1, maxPixelDifference);
+			this.referencePixels = referenceImage.getPixels();
+			this.width = referenceImage.getWidth();
+		}
+		
+		@Override
+		public long difference(int[] pixels, int x0, int y0, int x1, int y1) {
+			if(x0 == 0 && x1 == width) {
+				// Whole rows are contiguous
+				return PixelFitnessFunction.this.difference(pixels, referencePixels, y0 * width, y1 * width);
+			}
+			long difference = 0;
+			for (int y = y0; y < y1; y++) {
+				difference += PixelFitnessFunction.this.difference(pixels, referencePixels, y * width + x0, y * width + x1);
+			}
+			return difference;
+		}
+	}
+	
+	/**
+	 * A reference image kept off the heap, compared tile by tile. Shape images are
+	 * painted one tile at a time into a buffer of the size of a tile, so comparing
+	 * them takes the same memory for any size of the image. The tile buffers are
+	 * reused, every thread comparing at the same time taking a pair of its own.
+	 */
+	private class TiledReference extends FitnessReference {
+		
+		private final TiledPixelImage image;
+		/** Pairs of buffers for a painted tile and its reference, not in use by any thread */
+		private final Queue<int[][]> tileBuffers = new ConcurrentLinkedQueue<>();
+		
+		private TiledReference(TiledPixelImage referenceImage) {
+			super(PixelFitnessFunction.this, referenceImage, 1, maxPixelDifference);
+			this.image = referenceImage;
+		}
+		
+		@Override
+		public long difference(int[] pixels, int x0, int y0, int x1, int y1) {
+			int[][] buffers = takeTileBuffers();
+			int[] tile = buffers[0];
+			int[] referenceTile = buffers[1];
+			int width = image.getWidth();
+			long difference = 0;
+			for (int tileY = y0 / TiledPixelImage.TILE_SIZE; tileY * TiledPixelImage.TILE_SIZE < y1; tileY++) {
+				int tileY0 = tileY * TiledPixelImage.TILE_SIZE;
+				int tileHeight = image.getTileHeight(tileY);
+				for (int tileX = x0 / TiledPixelImage.TILE_SIZE; tileX * TiledPixelImage.TILE_SIZE < x1; tileX++) {
+					int tileX0 = tileX * TiledPixelImage.TILE_SIZE;
+					int tileWidth = image.getTileWidth(tileX);
+					image.getTile(tileX, tileY, referenceTile);
+					int fromX = Math.max(x0, tileX0);
+					int toX = Math.min(x1, tileX0 + tileWidth);
+					for (int y = Math.max(y0, tileY0); y < Math.min(y1, tileY0 + tileHeight); y++) {
+						int from = (y - tileY0) * tileWidth + fromX - tileX0;
+						System.arraycopy(pixels, y * width + fromX, tile, from, toX - fromX);
+						difference += PixelFitnessFunction.this.difference(tile, referenceTile, from, from + toX - fromX);
+					}
+				}
+			}
+			tileBuffers.add(buffers);
+			return difference;
+		}
+		
+		/**
+		 * Paints and compares the shape image one tile at a time, in rows of tiles,
+		 * stopping once the difference is above the one of the minimum similarity.
+		 */
+		@Override
+		public BoundedComparison compare(Shape[] shapes, ShapeRasterizer rasterizer, double minSimilarity) {
+			int[][] buffers = takeTileBuffers();
+			long maxDifference = toDifference(minSimilarity);
+			long difference = 0;
+			int tileY = 0;
+			for (; tileY < image.getTileRows() && difference <= maxDifference; tileY++) {
+				int y0 = tileY * TiledPixelImage.TILE_SIZE;
+				int y1 = y0 + image.getTileHeight(tileY);
+				for (int tileX = 0; tileX < image.getTileColumns(); tileX++) {
+					int x0 = tileX * TiledPixelImage.TILE_SIZE;
+					int x1 = x0 + image.getTileWidth(tileX);
+					rasterizer.paintTile(shapes, x0, y0, x1, y1, buffers[0]);
+					image.getTile(tileX, tileY, buffers[1]);
+					difference += PixelFitnessFunction.this.difference(buffers[0], buffers[1], 0, (x1 - x0) * (y1 - y0));
+				}
+			}
+			tileBuffers.add(buffers);
+			return new BoundedComparison(toSimilarity(difference), tileY >= image.getTileRows());
+		}
+		
+		private int[][] takeTileBuffers() {
+			int[][] buffers = tileBuffers.poll();
+			if(buffers == null) {
+				int tilePixels = TiledPixelImage.TILE_SIZE * TiledPixelImage.TILE_SIZE;
+				buffers = new int[][] {new int[tilePixels], new int[tilePixels]};
+			}
+			return buffers;
+		}
+	}
+}
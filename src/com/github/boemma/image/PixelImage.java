@@ -0,0 +1,73 @@
+package com.github.boemma.image;
+
+/**
+ * An image stored as packed ARGB pixels in a primitive array, row by row.
+ * Independent of any UI toolkit, so it can be read from any thread.
+ * Large images can be kept off the heap instead, see {@link TiledPixelImage}.
+ * 
+ * @author BoEmma
+ *
+ */
+public class PixelImage implements ImageSource {
+
+	private final int width;
+	private final int height;
+	private final int[] pixels;
+	
+	/**
+	 * Create a new pixel image with the given size and pixels.
+	 * @param width - width in pixels
+	 * @param height - height in pixels
+	 * @param pixels - pixels packed as ARGB, row by row
+	 */
+	public PixelImage(int width, int height, int[] pixels) {
+		if(pixels.length != width * height) {
+			throw new IllegalArgumentException(
+					"Pixel count " + pixels.length + " does not match size " + width + "x" + height + "!");
+		}
+		this.width = width;
+		this.height = height;
+		this.pixels = pixels;
+	}
+	
+	/**
+	 * Reads all pixels of the given image into a pixel image on the heap.
+	 * @param image - image to read
+	 * @return the given image if it is a pixel image, otherwise a copy of its pixels
+	 */
+	public static PixelImage of(ImageSource image) {
+		if(image instanceof PixelImage) {
+			return (PixelImage) image;
+		}
+		int[] pixels = new int[image.getWidth() * image.getHeight()];
+		image.getRows(0, image.getHeight(), pixels);
+		return new PixelImage(image.getWidth(), image.getHeight(), pixels);
+	}
+	
+	@Override
+	public int getWidth() {
+		return width;
+	}
+	
+	@Override
+	public int getHeight() {
+		return height;
+	}
+	
+	@Override
+	public void getRows(int y, int rowCount, int[] pixels) {
+		if(y < 0 || rowCount < 0 || y + rowCount > height) {
+			throw new IllegalArgumentException("Rows " + y + " to " + (y + rowCount) + " do not fit the image!");
+		}
+		System.arraycopy(this.pixels, y * width, pixels, 0, rowCount * width);
+	}
+	
+	/**
+	 * Returns the pixels of this image packed as ARGB, row by row.
+	 * The array must not be modified.
+	 * @return pixels
+	 */
+	public int[] getPixels() {
+		return pixels;
+	}
+}
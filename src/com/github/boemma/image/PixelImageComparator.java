@@ -0,0 +1,56 @@
+package com.github.boemma.image;
+
+/**
+ * Utility class for comparing images stored as packed ARGB pixels, 
+ * using integer math only.
+ * 
+ * @author BoEmma
+ *
+ */
+public class PixelImageComparator {
+
+	private static final PixelKernel KERNEL = PixelKernels.get();
+
+	/**
+	 * Compare the given pixels with the pixels of the given reference image, 
+	 * looking at the RGB value differences for each pixel.
+	 * @param pixels - pixels packed as ARGB, same size as the reference image
+	 * @param referenceImage - image to compare with
+	 * 
+	 * @return similarity between pixels and reference image in percent
+	 */
+	public static double compare(int[] pixels, PixelImage referenceImage) {
+		if(pixels.length != referenceImage.getPixels().length) {
+			throw new IllegalArgumentException("Images dimensions mismatch!");
+		}
+		long difference = difference(pixels, referenceImage.getPixels(), 0, pixels.length);
+		return toSimilarity(difference, pixels.length);
+	}
+	
+	/**
+	 * Sum of the absolute differences of the red, green and blue values 
+	 * of the pixels in the given index range, with the fastest available {@link PixelKernel}.
+	 * @param pixels - pixels packed as ARGB
+	 * @param referencePixels - pixels packed as ARGB to compare with
+	 * @param from - first index (inclusive)
+	 * @param to - last index (exclusive)
+	 * 
+	 * @return summed difference, between 0 and 3 * 255 per pixel
+	 */
+	public static long difference(int[] pixels, int[] referencePixels, int from, int to) {
+		return KERNEL.difference(pixels, referencePixels, from, to);
+	}
+	
+	/**
+	 * Converts a summed difference into a similarity in percent.
+	 * @param difference - summed RGB difference
+	 * @param pixelCount - number of pixels the difference was summed over
+	 * 
+	 * @return similarity in percent
+	 */
+	public static double toSimilarity(long difference, int pixelCount) {
+		double n  = (double) pixelCount * 3 * 255;
+		double p1 = difference / n;
+		return 100 - (p1 * 100.0);
+	}
+}
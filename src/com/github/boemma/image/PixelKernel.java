@@ -0,0 +1,41 @@
+package com.github.boemma.image;
+
+/**
+ * The inner loops of painting and comparing packed ARGB pixels. Implementations
+ * must give bit-identical results, so that the choice of kernel never changes 
+ * the outcome of an evolution. Use {@link PixelKernels#get()} to get the fastest 
+ * kernel available on the running JVM.
+ * 
+ * @author BoEmma
+ *
+ */
+public interface PixelKernel {
+
+	/**
+	 * Sum of the absolute differences of the RGB channels of the pixels in the given index range.
+	 * @param pixels - pixels packed as ARGB
+	 * @param referencePixels - reference pixels packed as ARGB
+	 * @param from - first index (inclusive)
+	 * @param to - last index (exclusive)
+	 * 
+	 * @return summed RGB difference
+	 */
+	long difference(int[] pixels, int[] referencePixels, int from, int to);
+	
+	/**
+	 * Blends the given color into the pixels in the given index range, rounding 
+	 * every channel to the nearest integer.
+	 * @param pixels - packed ARGB pixels
+	 * @param from - first index (inclusive)
+	 * @param to - last index (exclusive)
+	 * @param rgb - color packed as 0xRRGGBB
+	 * @param alpha - alpha value between 0 and 255
+	 */
+	void blendSpan(int[] pixels, int from, int to, int rgb, int alpha);
+	
+	/**
+	 * Returns a short name of this kernel, for logging.
+	 * @return kernel name
+	 */
+	String getName();
+}
@@ -0,0 +1,54 @@
+package com.github.boemma.image;
+
+/**
+ * Chooses the pixel kernel used for painting and comparing. The vectorized kernel 
+ * is compiled separately, from the src-vector directory, since it needs JDK 17 
+ * or later and the incubating Vector API. It is loaded by name if it has been
+ * compiled, and the JVM was started with {@code --add-modules jdk.incubator.vector}.
+ * Otherwise, or if the system property {@value #VECTOR_PROPERTY} is false, 
+ * the scalar kernel is used.
+ * 
+ * @author BoEmma
+ *
+ */
+public class PixelKernels {
+
+	/** System property disabling the vectorized kernel when set to false */
+	public static final String VECTOR_PROPERTY = "evolvingshapeimages.vector";
+	
+	private static final String VECTOR_KERNEL_CLASS = "com.github.boemma.image.VectorPixelKernel";
+	
+	private static final PixelKernel SCALAR = new ScalarPixelKernel();
+	private static final PixelKernel SELECTED = selectKernel();
+	
+	private PixelKernels() {
+	}
+	
+	/**
+	 * Returns the fastest kernel available on this JVM.
+	 * @return vectorized kernel if available, otherwise the scalar kernel
+	 */
+	public static PixelKernel get() {
+		return SELECTED;
+	}
+	
+	/**
+	 * Returns the scalar kernel, which is always available.
+	 * @return scalar kernel
+	 */
+	public static PixelKernel scalar() {
+		return SCALAR;
+	}
+	
+	private static PixelKernel selectKernel() {
+		if("false".equalsIgnoreCase(System.getProperty(VECTOR_PROPERTY))) {
+			return SCALAR;
+		}
+		try {
+			return (PixelKernel) Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			// Not compiled, or the Vector API module is not available
+			return SCALAR;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package com.github.boemma.image;
+
+import java.util.SplittableRandom;
+
+/**
+ * A stratified random sample of the rows of a reference image, for estimating
+ * the similarity of a shape image without painting and comparing all its pixels.
+ * The image is divided into bands of rows, and one random row is taken from each.
+ * Painting whole rows with {@link ShapeRasterizer#paintSamples} costs about the
+ * fraction of sampled rows of a full paint, and gives exactly the same pixels.
+ * Sampling single rows needs a {@link PixelFitnessFunction}, comparing single pixels.
+ *
+ * The difference of a sampled image is kept per row, so that the standard error
+ * of an estimate can be calculated from the variation between the rows. The estimates
+ * of two similar images on the same sample can also be compared, with a much
+ * smaller error than their individual estimates have.
+ *
+ * @author BoEmma
+ *
+ */
+public class PixelSample {
+
+	/** Indices of the sampled rows */
+	final int[] rows;
+	/** Reference pixels of the sampled rows, one row after the other, packed as ARGB */
+	private final int[] referencePixels;
+	/** Reference image the sample was taken from, prepared for a pixel fitness function */
+	private final FitnessReference reference;
+	private final PixelFitnessFunction fitnessFunction;
+	private final int width;
+	/** Number of rows of the whole image */
+	private final int height;
+
+	/**
+	 * Create a new sample of the given image, with one random row in each band
+	 * of the given number of rows.
+	 * @param reference - image to sample, prepared for a {@link PixelFitnessFunction}
+	 * @param spacing - number of rows in each band
+	 * @param random - random source choosing the rows
+	 */
+	public PixelSample(FitnessReference reference, int spacing, SplittableRandom random) {
+		if(spacing < 1) {
+			throw new IllegalArgumentException("Sample spacing " + spacing + " must be at least 1!");
+		}
+		if(!(reference.getFitnessFunction() instanceof PixelFitnessFunction)) {
+			throw new IllegalArgumentException("Fitness function " + reference.getFitnessFunction().getName() 
+					+ " does not compare single pixels!");
+		}
+		this.reference = reference;
+		this.fitnessFunction = (PixelFitnessFunction) reference.getFitnessFunction();
+		ImageSource referenceImage = reference.getImage();
+		width = referenceImage.getWidth();
+		height = referenceImage.getHeight();
+		rows = new int[(height + spacing - 1) / spacing];
+		referencePixels = new int[rows.length * width];
+		int[] row = new int[width];
+		for (int i = 0; i < rows.length; i++) {
+			int y0 = i * spacing;
+			rows[i] = y0 + random.nextInt(Math.min(height, y0 + spacing) - y0);
+			referenceImage.getRows(rows[i], 1, row);
+			System.arraycopy(row, 0, referencePixels, i * width, width);
+		}
+	}
+
+	/**
+	 * Compares the sampled rows painted with {@link ShapeRasterizer#paintSamples} with
+	 * the reference image, row by row.
+	 * @param samplePixels - painted rows, packed as ARGB
+	 * @param rowDifferences - array receiving the summed difference of every sampled row
+	 */
+	public void compare(int[] samplePixels, long[] rowDifferences) {
+		for (int i = 0; i < rows.length; i++) {
+			rowDifferences[i] = fitnessFunction.difference(samplePixels, referencePixels, i * width, (i + 1) * width);
+		}
+	}
+
+	/**
+	 * Estimates the similarity of a whole image from the differences of its sampled rows.
+	 * @param rowDifferences - differences of the sampled rows, see {@link #compare(int[], long[])}
+	 * @return estimated similarity in percent
+	 */
+	public double estimateSimilarity(long[] rowDifferences) {
+		long difference = 0;
+		for (int i = 0; i < rows.length; i++) {
+			difference += rowDifferences[i];
+		}
+		return reference.toSimilarity(difference, rows.length * width);
+	}
+
+	/**
+	 * Estimates the standard error of {@link #estimateSimilarity(long[])}, or, given the
+	 * row differences of a base image, of the difference between the estimates of the
+	 * two images. Treating the stratified sample as a simple random sample of rows
+	 * overestimates the error, so the estimate is conservative.
+	 * @param rowDifferences - differences of the sampled rows of an image
+	 * @param baseRowDifferences - differences of the sampled rows of a base image, or null
+	 * @return standard error in percent points
+	 */
+	public double estimateStandardError(long[] rowDifferences, long[] baseRowDifferences) {
+		int n = rows.length;
+		if(n < 2) {
+			return 100;
+		}
+		double sum = 0;
+		double sumOfSquares = 0;
+		for (int i = 0; i < n; i++) {
+			double difference = baseRowDifferences == null ? rowDifferences[i] : rowDifferences[i] - baseRowDifferences[i];
+			sum += difference;
+			sumOfSquares += difference * difference;
+		}
+		double variance = Math.max(0, (sumOfSquares - sum * sum / n) / (n - 1));
+		double finitePopulation = 1 - (double) n / height;
+		return 100.0 / (reference.getMaxPixelDifference() * width) * Math.sqrt(variance / n * finitePopulation);
+	}
+
+	/**
+	 * Returns the number of sampled rows.
+	 * @return number of rows
+	 */
+	public int getRowCount() {
+		return rows.length;
+	}
+
+	/**
+	 * Returns the number of sampled pixels, the size of the buffer needed for painting them.
+	 * @return sample size
+	 */
+	public int size() {
+		return referencePixels.length;
+	}
+}
@@ -0,0 +1,44 @@
+package com.github.boemma.image;
+
+/**
+ * Pixel kernel processing one pixel at a time, with integer math only.
+ * Runs on every JVM, and is the reference for the other kernels.
+ * 
+ * @author BoEmma
+ *
+ */
+public class ScalarPixelKernel implements PixelKernel {
+
+	@Override
+	public long difference(int[] pixels, int[] referencePixels, int from, int to) {
+		long difference = 0;
+		for (int i = from; i < to; i++) {
+			int argb1 = pixels[i];
+			int argb2 = referencePixels[i];
+			difference += Math.abs(((argb1 >> 16) & 0xFF) - ((argb2 >> 16) & 0xFF))
+						+ Math.abs(((argb1 >> 8) & 0xFF) - ((argb2 >> 8) & 0xFF))
+						+ Math.abs((argb1 & 0xFF) - (argb2 & 0xFF));
+		}
+		return difference;
+	}
+
+	@Override
+	public void blendSpan(int[] pixels, int from, int to, int rgb, int alpha) {
+		int inverse = 255 - alpha;
+		int red = ((rgb >> 16) & 0xFF) * alpha;
+		int green = ((rgb >> 8) & 0xFF) * alpha;
+		int blue = (rgb & 0xFF) * alpha;
+		for(int i = from; i < to; i++) {
+			int pixel = pixels[i];
+			int r = (red + ((pixel >> 16) & 0xFF) * inverse + 127) / 255;
+			int g = (green + ((pixel >> 8) & 0xFF) * inverse + 127) / 255;
+			int b = (blue + (pixel & 0xFF) * inverse + 127) / 255;
+			pixels[i] = 0xFF000000 | (r << 16) | (g << 8) | b;
+		}
+	}
+
+	@Override
+	public String getName() {
+		return "scalar";
+	}
+}
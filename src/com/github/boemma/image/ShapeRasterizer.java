@@ -0,0 +1,422 @@
+package com.github.boemma.image;
+
+import java.util.Arrays;
+
+import com.github.boemma.genetic.algorithm.gene.Color;
+import com.github.boemma.genetic.algorithm.gene.Shape;
+
+/**
+ * Pure Java rasterizer drawing shapes into a reusable buffer of packed
+ * ARGB pixels. It does not depend on any UI toolkit, so it can be used
+ * from any thread, but one instance must not be shared between threads.
+ *
+ * Shapes are filled by sampling pixel centers and alpha blended with
+ * integer math onto an opaque white background, which is how a JavaFX
+ * canvas snapshot of a shape image looks.
+ *
+ * @author BoEmma
+ *
+ */
+public class ShapeRasterizer {
+
+	/** Background color of a rendered shape image (opaque white) */
+	public static final int BACKGROUND = 0xFFFFFFFF;
+
+	private static final PixelKernel KERNEL = PixelKernels.get();
+
+	private int width;
+	private int height;
+	/** Factor the coordinates of the shapes are multiplied with when painting */
+	private double scale;
+
+	/** The rendered pixels, packed as ARGB, row by row, allocated when first painted into */
+	private int[] pixels;
+
+	/** Scratch buffer for edge crossings of the current scanline */
+	private double[] crossings = new double[8];
+
+	/** True if the time spent painting is measured */
+	private boolean timed;
+	/** Time spent painting since the last reset, in nanoseconds */
+	private long paintNanos;
+
+	/**
+	 * Create a new rasterizer with a buffer of the given size.
+	 * @param width - width of the buffer in pixels
+	 * @param height - height of the buffer in pixels
+	 */
+	public ShapeRasterizer(int width, int height) {
+		this(width, height, 1);
+	}
+
+	/**
+	 * Create a new rasterizer with a buffer of the given size, painting shapes
+	 * with their coordinates multiplied by the given scale. Used to paint shape
+	 * images at a lower resolution, see {@link ImagePyramid}.
+	 * @param width - width of the buffer in pixels
+	 * @param height - height of the buffer in pixels
+	 * @param scale - factor for the coordinates of the shapes
+	 */
+	public ShapeRasterizer(int width, int height, double scale) {
+		this.width = width;
+		this.height = height;
+		this.scale = scale;
+	}
+
+	/**
+	 * Makes this rasterizer paint into the given buffer instead of its own,
+	 * for callers keeping rendered pixels around.
+	 * @param pixels - buffer of the same size as this rasterizer
+	 */
+	public void setPixels(int[] pixels) {
+		if(pixels.length != width * height) {
+			throw new IllegalArgumentException("Buffer size " + pixels.length + " does not match rasterizer size!");
+		}
+		this.pixels = pixels;
+	}
+	
+	/**
+	 * Paints the given shapes, in order, on a cleared buffer.
+	 * @param shapes - shapes to be painted
+	 *
+	 * @return the buffer with the painted pixels
+	 */
+	public int[] paint(Shape[] shapes) {
+		clear();
+		return paint(shapes, 0, shapes.length);
+	}
+
+	/**
+	 * Paints the shapes in the given index range, in order, on top of the
+	 * current content of the buffer.
+	 * @param shapes - shapes to be painted
+	 * @param from - index of the first shape to paint (inclusive)
+	 * @param to - index of the last shape to paint (exclusive)
+	 *
+	 * @return the buffer with the painted pixels
+	 */
+	public int[] paint(Shape[] shapes, int from, int to) {
+		for(int i = from; i < to; i++) {
+			fillShape(shapes[i], 0, 0, width, height);
+		}
+		return getPixels();
+	}
+
+	/**
+	 * Fills the whole buffer with the background color.
+	 */
+	public void clear() {
+		long start = timed ? System.nanoTime() : 0;
+		Arrays.fill(getPixels(), BACKGROUND);
+		if(timed) {
+			paintNanos += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Fills the given rectangle with the background color.
+	 * @param x0 - left edge (inclusive)
+	 * @param y0 - top edge (inclusive)
+	 * @param x1 - right edge (exclusive)
+	 * @param y1 - bottom edge (exclusive)
+	 */
+	public void clear(int x0, int y0, int x1, int y1) {
+		long start = timed ? System.nanoTime() : 0;
+		int[] pixels = getPixels();
+		for(int y = y0; y < y1; y++) {
+			Arrays.fill(pixels, y * width + x0, y * width + x1, BACKGROUND);
+		}
+		if(timed) {
+			paintNanos += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Fills the given shape, clipped to the given rectangle.
+	 * @param shape - shape to fill
+	 * @param clipX0 - left edge of the clip rectangle (inclusive)
+	 * @param clipY0 - top edge of the clip rectangle (inclusive)
+	 * @param clipX1 - right edge of the clip rectangle (exclusive)
+	 * @param clipY1 - bottom edge of the clip rectangle (exclusive)
+	 */
+	public void fillShape(Shape shape, int clipX0, int clipY0, int clipX1, int clipY1) {
+		long start = timed ? System.nanoTime() : 0;
+		Color color = shape.getColor();
+		int rgb = (color.getRed() << 16) | (color.getGreen() << 8) | color.getBlue();
+		fillPolygon(shape.getXCoordinates(), shape.getYCoordinates(), 0, shape.getXCoordinates().length,
+				rgb, toAlpha(color.getAlpha()), clipX0, clipY0, clipX1, clipY1);
+		if(timed) {
+			paintNanos += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Fills a polygon, clipped to the given rectangle, by blending the given color
+	 * into the buffer. The corners are read from the coordinate arrays starting at
+	 * the given offset, so the arrays may hold more than one polygon. The coordinates
+	 * are multiplied by the scale of this rasterizer, the clip rectangle is not.
+	 *
+	 * @param xCoordinates - x-coordinates of the corners
+	 * @param yCoordinates - y-coordinates of the corners
+	 * @param offset - index of the first corner in the coordinate arrays
+	 * @param corners - number of corners
+	 * @param rgb - color packed as 0xRRGGBB
+	 * @param alpha - alpha value between 0 and 255
+	 * @param clipX0 - left edge of the clip rectangle (inclusive)
+	 * @param clipY0 - top edge of the clip rectangle (inclusive)
+	 * @param clipX1 - right edge of the clip rectangle (exclusive)
+	 * @param clipY1 - bottom edge of the clip rectangle (exclusive)
+	 */
+	public void fillPolygon(double[] xCoordinates, double[] yCoordinates, int offset, int corners,
+			int rgb, int alpha, int clipX0, int clipY0, int clipX1, int clipY1) {
+		if(alpha == 0 || corners < 3) {
+			return;
+		}
+
+		double minY = Double.MAX_VALUE;
+		double maxY = -Double.MAX_VALUE;
+		for(int i = offset; i < offset + corners; i++) {
+			minY = Math.min(minY, yCoordinates[i] * scale);
+			maxY = Math.max(maxY, yCoordinates[i] * scale);
+		}
+
+		// Only rows whose pixel centers are inside the polygon are filled
+		int startY = Math.max(clipY0, (int) Math.ceil(minY - 0.5));
+		int endY = Math.min(clipY1, (int) Math.ceil(maxY - 0.5));
+		if(crossings.length < corners) {
+			crossings = new double[corners];
+		}
+
+		int[] pixels = getPixels();
+		for(int y = startY; y < endY; y++) {
+			fillScanline(xCoordinates, yCoordinates, offset, corners, y, rgb, alpha, clipX0, clipX1, pixels, y * width);
+		}
+	}
+
+	/**
+	 * Fills the pixels of one row whose centers are inside the given polygon.
+	 * @param y - row to fill
+	 * @param target - buffer to blend the color into
+	 * @param rowStart - index of the first pixel of the row in the buffer
+	 */
+	private void fillScanline(double[] xCoordinates, double[] yCoordinates, int offset, int corners, int y,
+			int rgb, int alpha, int clipX0, int clipX1, int[] target, int rowStart) {
+		double sampleY = y + 0.5;
+		int count = 0;
+		for(int i = 0; i < corners; i++) {
+			int a = offset + i;
+			int b = offset + (i + 1) % corners;
+			double ay = yCoordinates[a] * scale;
+			double by = yCoordinates[b] * scale;
+			if((ay <= sampleY && by > sampleY) || (by <= sampleY && ay > sampleY)) {
+				double t = (sampleY - ay) / (by - ay);
+				double ax = xCoordinates[a] * scale;
+				crossings[count++] = ax + t * (xCoordinates[b] * scale - ax);
+			}
+		}
+		sortCrossings(count);
+
+		for(int i = 0; i + 1 < count; i += 2) {
+			int startX = Math.max(clipX0, (int) Math.ceil(crossings[i] - 0.5));
+			int endX = Math.min(clipX1, (int) Math.ceil(crossings[i + 1] - 0.5));
+			blendSpan(target, rowStart + startX, rowStart + endX, rgb, alpha);
+		}
+	}
+
+	/**
+	 * Paints the given shapes, in order, on the sampled rows only. The rows are
+	 * painted exactly like {@link #paint(Shape[])} paints them, one after the other
+	 * into the given buffer. The buffer of this rasterizer is not used.
+	 * @param shapes - shapes to be painted
+	 * @param sample - rows to paint, within the size of this rasterizer
+	 * @param samplePixels - buffer for the painted rows, at least as large as the sample
+	 */
+	public void paintSamples(Shape[] shapes, PixelSample sample, int[] samplePixels) {
+		long start = timed ? System.nanoTime() : 0;
+		int[] rows = sample.rows;
+		Arrays.fill(samplePixels, 0, rows.length * width, BACKGROUND);
+		for (Shape shape : shapes) {
+			Color color = shape.getColor();
+			int alpha = toAlpha(color.getAlpha());
+			double[] xCoordinates = shape.getXCoordinates();
+			double[] yCoordinates = shape.getYCoordinates();
+			int corners = xCoordinates.length;
+			if(alpha == 0 || corners < 3) {
+				continue;
+			}
+			int rgb = (color.getRed() << 16) | (color.getGreen() << 8) | color.getBlue();
+
+			double minY = Double.MAX_VALUE;
+			double maxY = -Double.MAX_VALUE;
+			for (int i = 0; i < corners; i++) {
+				minY = Math.min(minY, yCoordinates[i] * scale);
+				maxY = Math.max(maxY, yCoordinates[i] * scale);
+			}
+			if(crossings.length < corners) {
+				crossings = new double[corners];
+			}
+			for (int i = 0; i < rows.length; i++) {
+				double sampleY = rows[i] + 0.5;
+				if(sampleY >= minY && sampleY < maxY) {
+					fillScanline(xCoordinates, yCoordinates, 0, corners, rows[i], rgb, alpha, 0, width, samplePixels, i * width);
+				}
+			}
+		}
+		if(timed) {
+			paintNanos += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Paints the given shapes, in order, on the given rectangle only. The pixels are
+	 * painted exactly like {@link #paint(Shape[])} paints them, row by row into the
+	 * given buffer, as wide as the rectangle. The buffer of this rasterizer is not used,
+	 * so a rasterizer painting only tiles never allocates one. See {@link TiledPixelImage}.
+	 * @param shapes - shapes to be painted
+	 * @param x0 - left edge (inclusive)
+	 * @param y0 - top edge (inclusive)
+	 * @param x1 - right edge (exclusive)
+	 * @param y1 - bottom edge (exclusive)
+	 * @param tilePixels - buffer for the painted rectangle, at least as large as the rectangle
+	 */
+	public void paintTile(Shape[] shapes, int x0, int y0, int x1, int y1, int[] tilePixels) {
+		long start = timed ? System.nanoTime() : 0;
+		int tileWidth = x1 - x0;
+		Arrays.fill(tilePixels, 0, tileWidth * (y1 - y0), BACKGROUND);
+		for (Shape shape : shapes) {
+			Color color = shape.getColor();
+			int alpha = toAlpha(color.getAlpha());
+			double[] xCoordinates = shape.getXCoordinates();
+			double[] yCoordinates = shape.getYCoordinates();
+			int corners = xCoordinates.length;
+			if(alpha == 0 || corners < 3) {
+				continue;
+			}
+
+			double minX = Double.MAX_VALUE;
+			double maxX = -Double.MAX_VALUE;
+			double minY = Double.MAX_VALUE;
+			double maxY = -Double.MAX_VALUE;
+			for (int i = 0; i < corners; i++) {
+				minX = Math.min(minX, xCoordinates[i] * scale);
+				maxX = Math.max(maxX, xCoordinates[i] * scale);
+				minY = Math.min(minY, yCoordinates[i] * scale);
+				maxY = Math.max(maxY, yCoordinates[i] * scale);
+			}
+			// Same rows as filling the whole shape, clipped to the tile. Shapes are only skipped
+			// if they are a pixel off the tile, since edge crossings may round beyond the corners.
+			int startY = Math.max(y0, (int) Math.ceil(minY - 0.5));
+			int endY = Math.min(y1, (int) Math.ceil(maxY - 0.5));
+			if(startY >= endY || maxX + 1 < x0 || minX - 1 > x1) {
+				continue;
+			}
+			if(crossings.length < corners) {
+				crossings = new double[corners];
+			}
+			int rgb = (color.getRed() << 16) | (color.getGreen() << 8) | color.getBlue();
+			for (int y = startY; y < endY; y++) {
+				fillScanline(xCoordinates, yCoordinates, 0, corners, y, rgb, alpha, x0, x1, tilePixels, (y - y0) * tileWidth - x0);
+			}
+		}
+		if(timed) {
+			paintNanos += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Blends the given color into the pixels in the given index range, with the
+	 * fastest available {@link PixelKernel}.
+	 * @param pixels - packed ARGB pixels
+	 * @param from - first index (inclusive)
+	 * @param to - last index (exclusive)
+	 * @param rgb - color packed as 0xRRGGBB
+	 * @param alpha - alpha value between 0 and 255
+	 */
+	static void blendSpan(int[] pixels, int from, int to, int rgb, int alpha) {
+		KERNEL.blendSpan(pixels, from, to, rgb, alpha);
+	}
+
+	/**
+	 * Converts an alpha value between 0 and 1 to an integer alpha between 0 and 255.
+	 * @param alpha - alpha value between 0 and 1
+	 * @return alpha value between 0 and 255
+	 */
+	public static int toAlpha(double alpha) {
+		return (int) Math.round(alpha * 255);
+	}
+
+	/**
+	 * Insertion sort of the crossings of the current scanline. There are
+	 * only a few of them (two for a triangle), so this is the fastest option.
+	 * @param count - number of crossings
+	 */
+	private void sortCrossings(int count) {
+		for(int i = 1; i < count; i++) {
+			double value = crossings[i];
+			int j = i - 1;
+			while(j >= 0 && crossings[j] > value) {
+				crossings[j + 1] = crossings[j];
+				j--;
+			}
+			crossings[j + 1] = value;
+		}
+	}
+
+	/**
+	 * Returns the buffer with the rendered pixels, packed as ARGB.
+	 * @return pixels
+	 */
+	public int[] getPixels() {
+		if(pixels == null) {
+			pixels = new int[width * height];
+		}
+		return pixels;
+	}
+
+	/**
+	 * Get the width of the buffer.
+	 * @return width
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Get the height of the buffer.
+	 * @return height
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the factor the coordinates of shapes are multiplied with when painting.
+	 * @return scale, 1 when painting at full resolution
+	 */
+	public double getScale() {
+		return scale;
+	}
+
+	/**
+	 * Makes this rasterizer measure the time spent painting and clearing, or stop measuring it.
+	 * @param timed - true to measure painting time
+	 */
+	public void setTimed(boolean timed) {
+		this.timed = timed;
+	}
+
+	/**
+	 * Returns the time spent painting and clearing while timed, since the last reset.
+	 * @return painting time in nanoseconds
+	 */
+	public long getPaintNanos() {
+		return paintNanos;
+	}
+
+	/**
+	 * Resets the measured painting time to zero.
+	 */
+	public void resetPaintNanos() {
+		paintNanos = 0;
+	}
+}
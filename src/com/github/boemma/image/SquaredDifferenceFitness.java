@@ -0,0 +1,34 @@
+package com.github.boemma.image;
+
+/**
+ * Fitness function summing the squared differences of the red, green and blue 
+ * values of every pixel (squared L2 distance). Large errors weigh more than with
+ * the absolute difference, so a few badly matching areas are punished more than 
+ * a slight mismatch everywhere.
+ * 
+ * @author BoEmma
+ *
+ */
+public class SquaredDifferenceFitness extends PixelFitnessFunction {
+
+	/**
+	 * Create the squared difference fitness function, see {@link FitnessFunctions#SQUARED_DIFFERENCE}.
+	 */
+	SquaredDifferenceFitness() {
+		super("l2", 3 * 255 * 255);
+	}
+	
+	@Override
+	public long difference(int[] pixels, int[] referencePixels, int from, int to) {
+		long difference = 0;
+		for (int i = from; i < to; i++) {
+			int argb1 = pixels[i];
+			int argb2 = referencePixels[i];
+			int red = ((argb1 >> 16) & 0xFF) - ((argb2 >> 16) & 0xFF);
+			int green = ((argb1 >> 8) & 0xFF) - ((argb2 >> 8) & 0xFF);
+			int blue = (argb1 & 0xFF) - (argb2 & 0xFF);
+			difference += red * red + green * green + blue * blue;
+		}
+		return difference;
+	}
+}
@@ -0,0 +1,170 @@
+package com.github.boemma.image;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Fitness function based on the structural similarity index (SSIM) of the 
+ * brightness (luma) of the images, which compares the mean, contrast and 
+ * structure of small windows rather than single pixels, and follows the 
+ * perceived similarity of images more closely than pixel differences do.
+ * 
+ * The SSIM is calculated in non-overlapping windows of 8x8 pixels, so that the 
+ * windows of the reference image can be precomputed: its luma plane, and the 
+ * mean and variance of every window. Comparing an image then takes one pass over 
+ * its pixels, summing the luma, squared luma and luma product with the reference
+ * of every window, which is about as fast as the absolute difference.
+ * 
+ * The difference of a window is (1 - SSIM) / 2 per pixel, in units of 1/{@value #SCALE}.
+ * The similarity in percent is therefore the mean SSIM of the pixels, mapped from
+ * -1..1 to 0..100.
+ * 
+ * @author BoEmma
+ *
+ */
+public class StructuralSimilarityFitness implements FitnessFunction {
+
+	/** Width and height of the windows, a power of two */
+	static final int WINDOW_SIZE = 8;
+	private static final int WINDOW_SHIFT = 3;
+	/** Difference of a single pixel with an SSIM of -1 */
+	private static final int SCALE = 1 << 16;
+	
+	/** Constants stabilizing the division for dark and flat windows, (0.01 * 255)^2 and (0.03 * 255)^2 */
+	private static final double C1 = 6.5025;
+	private static final double C2 = 58.5225;
+	
+	/**
+	 * Create the structural similarity fitness function, see {@link FitnessFunctions#STRUCTURAL_SIMILARITY}.
+	 */
+	StructuralSimilarityFitness() {
+	}
+	
+	@Override
+	public String getName() {
+		return "ssim";
+	}
+	
+	/**
+	 * Precomputes the luma plane and window statistics of the reference image, 
+	 * which are kept on the heap, reading the image row by row.
+	 */
+	@Override
+	public FitnessReference prepare(ImageSource referenceImage) {
+		return new WindowReference(referenceImage);
+	}
+	
+	/**
+	 * Luma of a pixel between 0 and 255, with the BT.601 weights in 8-bit fixed point.
+	 */
+	private static int luma(int argb) {
+		return (77 * ((argb >> 16) & 0xFF) + 150 * ((argb >> 8) & 0xFF) + 29 * (argb & 0xFF) + 128) >> 8;
+	}
+	
+	/**
+	 * A reference image with its luma plane, and the mean and variance of the luma
+	 * of every window, precomputed. The sums of a row of windows are collected in
+	 * buffers which are reused, every thread comparing at the same time taking
+	 * a set of its own.
+	 */
+	private class WindowReference extends FitnessReference {
+		
+		private final int width;
+		private final int height;
+		private final int columns;
+		private final int[] referenceLuma;
+		/** Mean and variance of the luma of every window, row by row */
+		private final double[] means;
+		private final double[] variances;
+		/** Sets of buffers for the sums, squared sums and products of a row of windows, not in use by any thread */
+		private final Queue<int[][]> sumBuffers = new ConcurrentLinkedQueue<>();
+		
+		private WindowReference(ImageSource referenceImage) {
+			super(StructuralSimilarityFitness.this, referenceImage, WINDOW_SIZE, SCALE);
+			width = referenceImage.getWidth();
+			height = referenceImage.getHeight();
+			columns = (width + WINDOW_SIZE - 1) >> WINDOW_SHIFT;
+			int rows = (height + WINDOW_SIZE - 1) >> WINDOW_SHIFT;
+			
+			int[] row = new int[width];
+			referenceLuma = new int[width * height];
+			long[] sums = new long[columns * rows];
+			long[] squareSums = new long[columns * rows];
+			for (int y = 0; y < height; y++) {
+				referenceImage.getRows(y, 1, row);
+				for (int x = 0; x < width; x++) {
+					int luma = luma(row[x]);
+					int window = (y >> WINDOW_SHIFT) * columns + (x >> WINDOW_SHIFT);
+					referenceLuma[y * width + x] = luma;
+					sums[window] += luma;
+					squareSums[window] += luma * luma;
+				}
+			}
+			means = new double[columns * rows];
+			variances = new double[columns * rows];
+			for (int window = 0; window < means.length; window++) {
+				int n = windowPixels(window % columns, window / columns);
+				means[window] = (double) sums[window] / n;
+				variances[window] = (double) squareSums[window] / n - means[window] * means[window];
+			}
+		}
+		
+		private int windowPixels(int column, int row) {
+			int windowWidth = Math.min(WINDOW_SIZE, width - (column << WINDOW_SHIFT));
+			int windowHeight = Math.min(WINDOW_SIZE, height - (row << WINDOW_SHIFT));
+			return windowWidth * windowHeight;
+		}
+		
+		@Override
+		public long difference(int[] pixels, int x0, int y0, int x1, int y1) {
+			if(((x0 | y0) & (WINDOW_SIZE - 1)) != 0 || ((x1 & (WINDOW_SIZE - 1)) != 0 && x1 != width)
+					|| ((y1 & (WINDOW_SIZE - 1)) != 0 && y1 != height)) {
+				throw new IllegalArgumentException("Rectangle " + x0 + "," + y0 + "-" + x1 + "," + y1 
+						+ " is not aligned with the SSIM windows!");
+			}
+			int firstColumn = x0 >> WINDOW_SHIFT;
+			int regionColumns = ((x1 + WINDOW_SIZE - 1) >> WINDOW_SHIFT) - firstColumn;
+			// Sums of every window in a row of windows, at most 64 pixels of 255 each, all 0 between rows
+			int[][] buffers = takeSumBuffers();
+			int[] sums = buffers[0];
+			int[] squareSums = buffers[1];
+			int[] productSums = buffers[2];
+			long difference = 0;
+			for (int windowY = y0; windowY < y1; windowY += WINDOW_SIZE) {
+				for (int y = windowY; y < Math.min(y1, windowY + WINDOW_SIZE); y++) {
+					for (int x = x0, i = y * width + x0; x < x1; x++, i++) {
+						int luma = luma(pixels[i]);
+						int column = (x - x0) >> WINDOW_SHIFT;
+						sums[column] += luma;
+						squareSums[column] += luma * luma;
+						productSums[column] += luma * referenceLuma[i];
+					}
+				}
+				int row = windowY >> WINDOW_SHIFT;
+				for (int column = 0; column < regionColumns; column++) {
+					int window = row * columns + firstColumn + column;
+					int n = windowPixels(firstColumn + column, row);
+					double mean = (double) sums[column] / n;
+					double variance = (double) squareSums[column] / n - mean * mean;
+					double covariance = (double) productSums[column] / n - mean * means[window];
+					double ssim = (2 * mean * means[window] + C1) * (2 * covariance + C2)
+							/ ((mean * mean + means[window] * means[window] + C1) * (variance + variances[window] + C2));
+					difference += (long) ((1 - ssim) * 0.5 * n * SCALE + 0.5);
+					sums[column] = 0;
+					squareSums[column] = 0;
+					productSums[column] = 0;
+				}
+			}
+			sumBuffers.add(buffers);
+			return difference;
+		}
+		
+		private int[][] takeSumBuffers() {
+			int[][] buffers = sumBuffers.poll();
+			if(buffers == null) {
+				buffers = new int[][] {new int[columns], new int[columns], new int[columns]};
+			}
+			return buffers;
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package com.github.boemma.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An image stored off the heap, in a memory-mapped temporary file, so that
+ * reference images of many megapixels neither need a heap of their size nor
+ * burden the garbage collector. The operating system pages the file in and out
+ * as needed.
+ *
+ * The pixels are stored in square tiles of {@value #TILE_SIZE} pixels, each
+ * tile row by row in one contiguous block, so that a tile is read with a single
+ * bulk copy and a rendered tile and its reference fit in the CPU caches together.
+ * Tiles on the right and bottom edges are cut to the size of the image.
+ *
+ * The pixels are written once, band by band while the image is decoded, see
+ * {@link #setRows(int, int, int[])}, and can then be read from any thread,
+ * tile by tile or row by row. There is no array of all pixels.
+ *
+ * @author BoEmma
+ *
+ */
+public class TiledPixelImage implements ImageSource {
+
+	/** Width and height of a tile in pixels, a multiple of the tiles of {@link IncrementalRender} */
+	public static final int TILE_SIZE = 256;
+
+	private final int width;
+	private final int height;
+	/** The rows of tiles, each mapped on its own so that no mapping exceeds 2 GB */
+	private final IntBuffer[] bands;
+
+	/**
+	 * Create a new tiled image of the given size, with all pixels 0.
+	 * @param width - width in pixels
+	 * @param height - height in pixels
+	 * @throws IOException if the temporary file can not be created and mapped
+	 */
+	public TiledPixelImage(int width, int height) throws IOException {
+		if(width < 1 || height < 1) {
+			throw new IllegalArgumentException("Invalid image size " + width + "x" + height + "!");
+		}
+		this.width = width;
+		this.height = height;
+		bands = new IntBuffer[getTileRows()];
+		File file = File.createTempFile("reference", ".tiles");
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+			FileChannel channel = randomAccessFile.getChannel();
+			long offset = 0;
+			for (int tileY = 0; tileY < bands.length; tileY++) {
+				long size = 4L * width * getTileHeight(tileY);
+				bands[tileY] = channel.map(FileChannel.MapMode.READ_WRITE, offset, size).order(ByteOrder.nativeOrder()).asIntBuffer();
+				offset += size;
+			}
+		} finally {
+			// The mappings stay valid without the file, until they are garbage collected.
+			// Where open files can not be deleted, it is deleted when the JVM exits.
+			if(!file.delete()) {
+				file.deleteOnExit();
+			}
+		}
+	}
+
+	/**
+	 * Writes whole rows of pixels.
+	 * @param y - first row
+	 * @param rowCount - number of rows
+	 * @param pixels - pixels packed as ARGB, row by row, the width of this image each
+	 */
+	public void setRows(int y, int rowCount, int[] pixels) {
+		if(y < 0 || rowCount < 0 || y + rowCount > height || pixels.length < rowCount * width) {
+			throw new IllegalArgumentException("Rows " + y + " to " + (y + rowCount) + " do not fit the image!");
+		}
+		for (int row = y; row < y + rowCount; row++) {
+			int tileY = row / TILE_SIZE;
+			IntBuffer band = bands[tileY].duplicate();
+			int tileHeight = getTileHeight(tileY);
+			for (int x = 0; x < width; x += TILE_SIZE) {
+				int tileWidth = Math.min(TILE_SIZE, width - x);
+				// The cast keeps the Java 8 signature of position when compiled on later JDKs
+				((Buffer) band).position(x * tileHeight + (row % TILE_SIZE) * tileWidth);
+				band.put(pixels, (row - y) * width + x, tileWidth);
+			}
+		}
+	}
+
+	@Override
+	public void getRows(int y, int rowCount, int[] pixels) {
+		if(y < 0 || rowCount < 0 || y + rowCount > height || pixels.length < rowCount * width) {
+			throw new IllegalArgumentException("Rows " + y + " to " + (y + rowCount) + " do not fit the image!");
+		}
+		for (int row = y; row < y + rowCount; row++) {
+			int tileY = row / TILE_SIZE;
+			IntBuffer band = bands[tileY].duplicate();
+			int tileHeight = getTileHeight(tileY);
+			for (int x = 0; x < width; x += TILE_SIZE) {
+				int tileWidth = Math.min(TILE_SIZE, width - x);
+				((Buffer) band).position(x * tileHeight + (row % TILE_SIZE) * tileWidth);
+				band.get(pixels, (row - y) * width + x, tileWidth);
+			}
+		}
+	}
+
+	/**
+	 * Copies the pixels of a tile into the given buffer, row by row,
+	 * as wide as the tile. Can be called from any thread.
+	 * @param tileX - column of the tile
+	 * @param tileY - row of the tile
+	 * @param tilePixels - buffer for the pixels, at least as large as the tile
+	 */
+	public void getTile(int tileX, int tileY, int[] tilePixels) {
+		IntBuffer band = bands[tileY].duplicate();
+		int tileHeight = getTileHeight(tileY);
+		((Buffer) band).position(tileX * TILE_SIZE * tileHeight);
+		band.get(tilePixels, 0, getTileWidth(tileX) * tileHeight);
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the number of columns of tiles.
+	 * @return tile columns
+	 */
+	public int getTileColumns() {
+		return (width + TILE_SIZE - 1) / TILE_SIZE;
+	}
+
+	/**
+	 * Returns the number of rows of tiles.
+	 * @return tile rows
+	 */
+	public int getTileRows() {
+		return (height + TILE_SIZE - 1) / TILE_SIZE;
+	}
+
+	/**
+	 * Returns the width of the tiles in the given column, less than the tile size on the right edge.
+	 * @param tileX - column of the tile
+	 * @return width in pixels
+	 */
+	public int getTileWidth(int tileX) {
+		return Math.min(TILE_SIZE, width - tileX * TILE_SIZE);
+	}
+
+	/**
+	 * Returns the height of the tiles in the given row, less than the tile size on the bottom edge.
+	 * @param tileY - row of the tile
+	 * @return height in pixels
+	 */
+	public int getTileHeight(int tileY) {
+		return Math.min(TILE_SIZE, height - tileY * TILE_SIZE);
+	}
+}
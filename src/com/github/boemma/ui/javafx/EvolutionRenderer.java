@@ -0,0 +1,101 @@
+package com.github.boemma.ui.javafx;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.github.boemma.genetic.algorithm.population.ShapeImage;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.control.Label;
+
+/**
+ * Shows the progress of an evolution running on another thread, at most a given
+ * number of times per second. The evolution thread publishes the fittest shape image
+ * after every generation with {@link #publish(ShapeImage, long)}, which only replaces
+ * the latest published state, so it never waits for the UI. On every frame, the 
+ * latest state is shown, and the canvas is only repainted if the fittest shape image
+ * has changed since the last frame.
+ * 
+ * @author BoEmma
+ *
+ */
+public class EvolutionRenderer extends AnimationTimer {
+
+	private final Canvas canvas;
+	private final Label generationLabel;
+	private final Label similarityLabel;
+	private final long frameIntervalNanos;
+	
+	/** Latest state published by the evolution thread, null until the first generation */
+	private final AtomicReference<Progress> latest = new AtomicReference<>();
+	
+	/** State shown on the last frame, only used on the UI thread */
+	private Progress shown;
+	private long lastFrameNanos;
+	
+	/**
+	 * Create a new renderer. Call {@link #start()} on the UI thread to start showing progress.
+	 * @param canvas - canvas to paint the fittest shape image on
+	 * @param generationLabel - label showing the generation count
+	 * @param similarityLabel - label showing the similarity of the fittest shape image
+	 * @param maxFramesPerSecond - maximum number of frames per second
+	 */
+	public EvolutionRenderer(Canvas canvas, Label generationLabel, Label similarityLabel, int maxFramesPerSecond) {
+		if(maxFramesPerSecond < 1) {
+			throw new IllegalArgumentException("Frame rate " + maxFramesPerSecond + " must be at least 1!");
+		}
+		this.canvas = canvas;
+		this.generationLabel = generationLabel;
+		this.similarityLabel = similarityLabel;
+		this.frameIntervalNanos = 1000000000L / maxFramesPerSecond;
+	}
+	
+	/**
+	 * Publishes the state of the evolution after a generation. Can be called from any thread.
+	 * @param fittest - fittest shape image after the generation
+	 * @param generation - number of generations run
+	 */
+	public void publish(ShapeImage fittest, long generation) {
+		latest.set(new Progress(fittest, generation));
+	}
+	
+	@Override
+	public void handle(long now) {
+		if(now - lastFrameNanos < frameIntervalNanos) {
+			return;
+		}
+		lastFrameNanos = now;
+		show();
+	}
+	
+	/**
+	 * Shows the latest published state right away. Must be called on the UI thread.
+	 */
+	public void show() {
+		Progress progress = latest.get();
+		if(progress == null || progress == shown) {
+			return;
+		}
+		if(shown == null || progress.fittest != shown.fittest) {
+			JavaFXPaintUtils.paintShapeImageOnJavaFXCanvas(progress.fittest, canvas, true);
+			double roundedSimilarity = Math.round(progress.fittest.getFitness() * 100.0) / 100.0;
+			similarityLabel.setText(Double.toString(roundedSimilarity));
+		}
+		generationLabel.setText(Long.toString(progress.generation));
+		shown = progress;
+	}
+	
+	/**
+	 * State of the evolution after a generation.
+	 */
+	private static class Progress {
+		
+		private final ShapeImage fittest;
+		private final long generation;
+		
+		private Progress(ShapeImage fittest, long generation) {
+			this.fittest = fittest;
+			this.generation = generation;
+		}
+	}
+}
@@ -1,7 +1,10 @@
 package com.github.boemma.ui.javafx;
 
+import com.github.boemma.image.FitnessReference;
+import com.github.boemma.image.ImageSource;
+import com.github.boemma.image.PixelImage;
+
 import javafx.scene.image.Image;
-import javafx.scene.paint.Color;
 
 /**
  * Utility class for simple comparison of JavaFX images.
@@ -13,35 +16,35 @@ public class JavaFXImageComparator {
 
 	/**
 	 * Compare the given image with the currently selected reference
-	 * image, looking at the RGB value differences for each pixel.
+	 * image, with the fitness function of the reference image.
 	 * @param image - image to compare with reference image
 	 * 
 	 * @return similarity between image and reference image in percent
 	 */
 	public static double compareWithReferenceImage(Image image) {
+		PixelImage pixelImage = ReferenceImage.toPixelImage(image);
+		return compareWithReferenceImage(pixelImage.getPixels(), pixelImage.getWidth(), pixelImage.getHeight());
+	}
+	
+	/**
+	 * Compare the given packed ARGB pixels with the currently selected reference
+	 * image, with the fitness function of the reference image.
+	 * @param pixels - pixels packed as ARGB, row by row
+	 * @param width - width of the image the pixels belong to
+	 * @param height - height of the image the pixels belong to
+	 * 
+	 * @return similarity between pixels and reference image in percent
+	 * @throws IllegalArgumentException if the size differs from the reference image
+	 */
+	public static double compareWithReferenceImage(int[] pixels, int width, int height) {
 		
-		Image referenceImage = ReferenceImage.getInstance().getImage();
+		FitnessReference reference = ReferenceImage.getInstance().getFitnessReference();
+		ImageSource referenceImage = reference.getImage();
 		
-		if(image.getHeight() != referenceImage.getHeight()||image.getWidth() != referenceImage.getWidth()) {
-			//TODO: Replace
-			 System.err.println("Error: Images dimensions mismatch");
-		     System.exit(1);
+		if(height != referenceImage.getHeight() || width != referenceImage.getWidth()) {
+			throw new IllegalArgumentException("Images dimensions mismatch!");
 		}
 		
-		double difference = 0;
-	    for (int y = 0; y < image.getHeight(); y++) {
-	      for (int x = 0; x < image.getWidth(); x++) {
-	        Color rgb1 = image.getPixelReader().getColor(x, y);
-	        Color rgb2 = referenceImage.getPixelReader().getColor(x, y);
-	        difference += Math.abs(rgb1.getRed()   - rgb2.getRed());
-	        difference += Math.abs(rgb1.getGreen() - rgb2.getGreen());
-	        difference += Math.abs(rgb1.getBlue()  - rgb2.getBlue());
-	      }
-	    }
-	    
-	    double n  = image.getWidth() * image.getHeight() * 3;
-	    double p1 = difference / n;
-	   
-	    return 100 - (p1 * 100.0);
+		return reference.compare(pixels);
 	}
 }
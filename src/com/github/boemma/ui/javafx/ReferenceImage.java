@@ -1,9 +1,20 @@
 package com.github.boemma.ui.javafx;
 
+import com.github.boemma.image.FitnessFunction;
+import com.github.boemma.image.FitnessFunctions;
+import com.github.boemma.image.FitnessReference;
+import com.github.boemma.image.ImagePyramid;
+import com.github.boemma.image.PixelImage;
+
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
 
 /**
  * Singleton class containing a JavaFX reference image.
+ * The image is also decoded once into packed ARGB pixels, 
+ * which are used when comparing images, and downsampled into
+ * a resolution pyramid for coarse to fine evaluation, and prepared
+ * for the selected fitness function.
  * 
  * @author BoEmma
  *
@@ -13,6 +24,10 @@ public class ReferenceImage {
 	private static final ReferenceImage instance = new ReferenceImage();
 	
 	private Image image;
+	private PixelImage pixelImage;
+	private ImagePyramid pyramid;
+	private FitnessFunction fitnessFunction = FitnessFunctions.getDefault();
+	private FitnessReference fitnessReference;
     
     private ReferenceImage(){}
 
@@ -21,11 +36,26 @@ public class ReferenceImage {
     }
     
     /**
-     * Set the JavaFX reference image.
+     * Set the JavaFX reference image, and decode its pixels.
      * @param image - image to be set as reference image
      */
     public void setImage(Image image) {
     	this.image = image;
+    	this.pixelImage = toPixelImage(image);
+    	this.pyramid = new ImagePyramid(pixelImage);
+    	this.fitnessReference = fitnessFunction.prepare(pixelImage);
+    }
+    
+    /**
+     * Set the reference image from already decoded pixels, without a JavaFX image,
+     * for example in benchmarks.
+     * @param pixelImage - pixels to be set as reference image
+     */
+    public void setPixelImage(PixelImage pixelImage) {
+    	this.image = null;
+    	this.pixelImage = pixelImage;
+    	this.pyramid = new ImagePyramid(pixelImage);
+    	this.fitnessReference = fitnessFunction.prepare(pixelImage);
     }
     
     /**
@@ -36,12 +66,59 @@ public class ReferenceImage {
     	return image;
     }
     
+    /**
+     * Get the pixels of the reference image.
+     * @return reference image as packed ARGB pixels
+     */
+    public PixelImage getPixelImage() {
+    	return pixelImage;
+    }
+    
+    /**
+     * Get the resolution pyramid of the reference image, with the levels 
+     * 1/8, 1/4, 1/2 and full resolution precomputed.
+     * @return resolution pyramid
+     */
+    public ImagePyramid getPyramid() {
+    	return pyramid;
+    }
+    
+    /**
+     * Set the fitness function images are compared with, and prepare
+     * the reference image for it if one is set.
+     * @param fitnessFunction - fitness function to use
+     */
+    public void setFitnessFunction(FitnessFunction fitnessFunction) {
+    	if(fitnessFunction == null) {
+    		throw new IllegalArgumentException("Fitness function can not be null!");
+    	}
+    	this.fitnessFunction = fitnessFunction;
+    	this.fitnessReference = pixelImage == null ? null : fitnessFunction.prepare(pixelImage);
+    }
+    
+    /**
+     * Get the fitness function images are compared with.
+     * @return fitness function
+     */
+    public FitnessFunction getFitnessFunction() {
+    	return fitnessFunction;
+    }
+    
+    /**
+     * Get the reference image prepared for the fitness function, with
+     * the data the function needs from it computed once.
+     * @return prepared reference image
+     */
+    public FitnessReference getFitnessReference() {
+    	return fitnessReference;
+    }
+    
     /**
      * Get the height of the JavaFX reference image.
      * @return height
      */
     public int getImageHeight() {
-    	return (int) Math.round(image.getHeight());
+    	return pixelImage.getHeight();
     }
     
     /**
@@ -49,6 +126,19 @@ public class ReferenceImage {
      * @return width
      */
     public int getImageWidth() {
-    	return (int) Math.round(image.getWidth());
+    	return pixelImage.getWidth();
+    }
+    
+    /**
+     * Decodes the given JavaFX image into packed ARGB pixels.
+     * @param image - image to decode
+     * @return decoded image
+     */
+    public static PixelImage toPixelImage(Image image) {
+    	int width = (int) Math.round(image.getWidth());
+    	int height = (int) Math.round(image.getHeight());
+    	int[] pixels = new int[width * height];
+    	image.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+    	return new PixelImage(width, height, pixels);
     }
 }